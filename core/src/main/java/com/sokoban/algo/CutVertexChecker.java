@@ -46,7 +46,7 @@ public class CutVertexChecker {
         // 吐槽一下，AI 写的时候把坐标弄反了，请留意下面的坐标表述
 
         // 确保空地
-        if (subMap.getObjectLayer()[y][x] != ObjectType.Air) {
+        if (subMap.getObject(x, y) != ObjectType.Air) {
             return false;
         }
 
@@ -66,7 +66,7 @@ public class CutVertexChecker {
         for (int i = 0; i < 4; i++) {
             int ny = y + DY[i];
             int nx = x + DX[i];
-            if (isValid(ny, nx) && subMap.getObjectLayer()[ny][nx] == ObjectType.Air) {
+            if (isValid(ny, nx) && subMap.getObject(nx, ny) == ObjectType.Air) {
                 startY = ny;
                 startX = nx;
                 break;
@@ -82,7 +82,7 @@ public class CutVertexChecker {
         int connectedComponents = 0;
         for (int i = 0; i < rows; i++) {
             for (int j = 0; j < cols; j++) {
-                if (!visited[i][j] && subMap.getObjectLayer()[i][j] == ObjectType.Air && !(i == y && j == x)) {
+                if (!visited[i][j] && subMap.getObject(j, i) == ObjectType.Air && !(i == y && j == x)) {
                     connectedComponents++;
                 }
             }
@@ -104,7 +104,7 @@ public class CutVertexChecker {
             int ny = x + DY[i];
 
             // 跳过箱子位置和非法位置
-            if (!isValid(nx, ny) || subMap.getObjectLayer()[nx][ny] != ObjectType.Air || (nx == boxY && ny == boxX)) continue;
+            if (!isValid(nx, ny) || subMap.getObject(ny, nx) != ObjectType.Air || (nx == boxY && ny == boxX)) continue;
 
             // 跳过父节点
             if (nx == parentY && ny == parentX) continue; 
@@ -3,8 +3,11 @@ package com.sokoban.algo;
 import java.util.Arrays;
 import java.util.Set;
 
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.ObjectClassMapper;
 import com.sokoban.core.logic.ObjectType;
 import com.sokoban.core.logic.PlayerCoreUtils;
+import com.sokoban.core.map.MapLayer;
 import com.sokoban.core.map.SubMapData;
 
 /**
@@ -14,6 +17,8 @@ import com.sokoban.core.map.SubMapData;
  * @author Life_Checkpoint
  */
 public class DeadLockTest {
+    /** 按顺时针排列的方向，相邻两项构成一个角 */
+    private static final Direction[] CLOCKWISE = {Direction.Up, Direction.Right, Direction.Down, Direction.Left};
 
     /**
      * 检测地图对应位置是否为角落死锁
@@ -23,38 +28,28 @@ public class DeadLockTest {
      * @return 是否为角落死锁
      */
     public static boolean cornerLockTest(SubMapData subMap, int x, int y, boolean boxAsAir) {
-        ObjectType[][] objectLayer = subMap.getObjectLayer();
-        ObjectType[][] objectLayerWithoutBox = new ObjectType[subMap.height][subMap.width];
-        if (subMap.getTargetLayer()[y][x] == ObjectType.BoxTarget) return false;
-
-        int[][] deltaPoses = new int[][] {{0, 1}, {1, 0}, {0, -1}, {-1, 0}};
-        boolean[] lockPos = new boolean[4];
-
-        if (boxAsAir) {
-            for (int yy = 0; yy < subMap.height; yy++) {
-                for (int xx = 0; xx < subMap.width; xx++) {
-                    if (PlayerCoreUtils.isBox(objectLayer[yy][xx])) objectLayerWithoutBox[yy][xx] = ObjectType.Air;
-                    else if (PlayerCoreUtils.isPlayer(objectLayer[yy][xx])) objectLayerWithoutBox[yy][xx] = ObjectType.Air;
-                    else objectLayerWithoutBox[yy][xx] = objectLayer[yy][xx];
-                }
-            }
-        } else {
-            for (int yy = 0; yy < subMap.height; yy++) {
-                for (int xx = 0; xx < subMap.width; xx++) {
-                    objectLayerWithoutBox[yy][xx] = objectLayer[yy][xx];
-                }
+        if (subMap.getTarget(x, y) == ObjectType.BoxTarget) return false;
+
+        int lockMask = 0; // 第 i 位表示 CLOCKWISE[i] 方向受阻
+
+        for (int directionIndex = 0; directionIndex < CLOCKWISE.length; directionIndex++) {
+            int newX = x + CLOCKWISE[directionIndex].dx, newY = y + CLOCKWISE[directionIndex].dy;
+
+            // 越界视为阻挡
+            if (newX < 0 || newY < 0 || newX >= subMap.width || newY >= subMap.height) {
+                lockMask |= 1 << directionIndex;
+                continue;
             }
-        }
-        
-        for (int directionIndex = 0; directionIndex < 4; directionIndex++) {
-            int[] deltaPos = deltaPoses[directionIndex];
-            int newX = x + deltaPos[0], newY = y + deltaPos[1];
-            
-            lockPos[directionIndex] = !PlayerCoreUtils.isWalkable(objectLayerWithoutBox[newY][newX]);
+
+            // 箱子视为空气时，箱子与玩家都不构成阻挡
+            ObjectType object = subMap.getObject(newX, newY);
+            if (boxAsAir && (PlayerCoreUtils.isBox(object) || PlayerCoreUtils.isPlayer(object))) object = ObjectType.Air;
+            if (!PlayerCoreUtils.isWalkable(object)) lockMask |= 1 << directionIndex;
         }
 
-        boolean res = (lockPos[0] && lockPos[1]) || (lockPos[1] && lockPos[2]) || (lockPos[2] && lockPos[3]) || (lockPos[3] && lockPos[0]);
-        return res;
+        // 任意两个相邻方向同时受阻即为角落，将掩码循环右移一位后与自身相与
+        int rotated = (lockMask >> 1) | ((lockMask & 1) << 3);
+        return (lockMask & rotated) != 0;
     }
 
     /**
@@ -65,7 +60,6 @@ public class DeadLockTest {
      */
     public static int[][] getConnectedLabel(SubMapData subMap, boolean boxAsAir) {
         int[][] labels = new int[subMap.height][subMap.width];
-        ObjectType[][] objectLayer = subMap.getObjectLayer();        
         for (int i = 0; i < labels.length; i++) Arrays.fill(labels[i], -1); // 全部初始化为 -1
 
         int currentTag = 1;
@@ -74,7 +68,7 @@ public class DeadLockTest {
 
                 // 为所有还未被染色的连通块染色
                 if (labels[y][x] == -1) {
-                    labeling(labels, objectLayer, currentTag, x, y, boxAsAir);
+                    labeling(labels, subMap, currentTag, x, y, boxAsAir);
                     currentTag += 1;
                 }
             }
@@ -88,25 +82,24 @@ public class DeadLockTest {
      * @param labels 连通块数组
      * @param labelValue 当前连通块标记值
      */
-    private static void labeling(int[][] labels, ObjectType[][] objectMap, int labelValue, int x, int y, boolean boxAsAir) {
-        int[][] deltaPoses = new int[][] {{0, 1}, {0, -1}, {-1, 0}, {1, 0}};
-        
-        for (int[] deltaPos : deltaPoses) {
-            int newX = x + deltaPos[0], newY = y + deltaPos[1];
+    private static void labeling(int[][] labels, SubMapData subMap, int labelValue, int x, int y, boolean boxAsAir) {
+        for (Direction direction : CLOCKWISE) {
+            int newX = x + direction.dx, newY = y + direction.dy;
 
-            if (outRange(objectMap, newX, newY) || labels[newY][newX] != -1) continue; // 越界或者已被标记，跳过
+            if (outRange(subMap, newX, newY) || labels[newY][newX] != -1) continue; // 越界或者已被标记，跳过
 
-            if (PlayerCoreUtils.isWalkable(objectMap[newY][newX]) || (boxAsAir && PlayerCoreUtils.isBox(objectMap[newY][newX]))) { // 空快
+            ObjectType object = subMap.getObject(newX, newY);
+            if (PlayerCoreUtils.isWalkable(object) || (boxAsAir && PlayerCoreUtils.isBox(object))) { // 空快
                 labels[newY][newX] = labels[y][x]; // 对节点进行染色
-                labeling(labels, objectMap, labelValue, newX, newY, boxAsAir); // 拓展标记
+                labeling(labels, subMap, labelValue, newX, newY, boxAsAir); // 拓展标记
             } else {
                 labels[newY][newX] = 0; // 非空块
             }
         }
     }
 
-    private static <T> boolean outRange(T[][] array, int x, int y) {
-        return y < 0 || x < 0 || y >= array.length || x >= array[0].length; 
+    private static boolean outRange(SubMapData subMap, int x, int y) {
+        return y < 0 || x < 0 || y >= subMap.height || x >= subMap.width;
     }
 
     /**
@@ -115,18 +108,29 @@ public class DeadLockTest {
      * @return 是否存在死锁
      */
     public static boolean lockTest(SubMapData subMap) {
-        ObjectType[][] objectLayer = subMap.getObjectLayer();
-        for (int y = 0; y < subMap.height; y++) {
-            for (int x = 0; x < subMap.width; x++) {
-                if (PlayerCoreUtils.isBox(objectLayer[y][x])) {
-                    // 死锁判断
-                    if (cornerLockTest(subMap, x, y, true)) return true; // 角落死锁
-                }
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) {
+            if (ObjectClassMapper.isBox(objectLayer.get(cell))) {
+                // 死锁判断
+                if (cornerLockTest(subMap, cell % subMap.width, cell / subMap.width, true)) return true; // 角落死锁
             }
         }
         return false;
     }
 
+    /**
+     * 判断给定箱子中是否存在死锁箱，箱子位置由逻辑核心的箱子索引给出，无需扫描地图
+     * @param subMap 子地图
+     * @param boxCells 箱子所在格子下标 y * width + x
+     * @return 是否存在死锁
+     */
+    public static boolean lockTest(SubMapData subMap, int[] boxCells) {
+        for (int cell : boxCells) {
+            if (cornerLockTest(subMap, cell % subMap.width, cell / subMap.width, true)) return true; // 角落死锁
+        }
+        return false;
+    }
+
     /**
      * 判断地图中是否存在死锁箱
      * @param subMap 子地图
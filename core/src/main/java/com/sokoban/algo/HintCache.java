@@ -0,0 +1,124 @@
+package com.sokoban.algo;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.logic.ZobristHash;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 提示缓存
+ * <br><br>
+ * 以 (子地图目标点布局, 子地图物体层 Zobrist 哈希) 为键缓存已经求出的移动序列，
+ * 后台预求解与自动演算共享同一份缓存，命中时可以直接给出提示。
+ * 物体层哈希直接取逻辑核心增量维护的值，目标点层为稀疏存储，构造键的代价与目标点数成正比，可以在渲染线程中调用
+ */
+public class HintCache {
+    public static final int MAX_ENTRIES = 64;
+
+    private static final Map<Key, List<Direction>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, List<Direction>> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** 缓存键，玩家位置不做规范化，因为解中包含玩家的行走 */
+    public static final class Key {
+        public final long layoutHash; // 尺寸与目标点布局，游戏过程中不变
+        public final long positionHash; // 子地图物体层（墙、箱子、玩家）的 Zobrist 哈希
+
+        public Key(long layoutHash, long positionHash) {
+            this.layoutHash = layoutHash;
+            this.positionHash = positionHash;
+        }
+
+        /**
+         * 逻辑核心中子地图当前局面的键
+         * @param playerCore 逻辑核心
+         * @param subMapIndex 子地图索引
+         * @return 缓存键
+         */
+        public static Key of(PlayerCore playerCore, int subMapIndex) {
+            return new Key(layoutHash(playerCore.getSubmap(subMapIndex)), playerCore.getSubmapHash(subMapIndex));
+        }
+
+        /**
+         * 子地图数据的键，需要完整计算一次物体层哈希，适合在后台线程中使用
+         * @param subMapIndex 子地图索引
+         * @param subMap 子地图
+         * @return 缓存键，与逻辑核心载入同一地图后 of(playerCore, subMapIndex) 相等
+         */
+        public static Key of(int subMapIndex, SubMapData subMap) {
+            return new Key(layoutHash(subMap), ZobristHash.hash(subMapIndex, subMap));
+        }
+
+        private static long layoutHash(SubMapData subMap) {
+            return ((long) subMap.width << 48) ^ ((long) subMap.height << 32) ^ (subMap.getMapLayer(SubMapData.LAYER_TARGET).contentHash() & 0xffffffffL);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) return false;
+            Key another = (Key) obj;
+            return layoutHash == another.layoutHash && positionHash == another.positionHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(layoutHash * 31 + positionHash);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toHexString(layoutHash) + ":" + Long.toHexString(positionHash);
+        }
+    }
+
+    /**
+     * 查询局面的解
+     * @param key 缓存键
+     * @return 移动序列副本，未缓存返回 null
+     */
+    public static List<Direction> get(Key key) {
+        synchronized (cache) {
+            List<Direction> moves = cache.get(key);
+            return moves == null ? null : new ArrayList<>(moves);
+        }
+    }
+
+    /**
+     * 缓存局面的解
+     * @param key 缓存键
+     * @param moves 从该局面出发的移动序列
+     */
+    public static void put(Key key, List<Direction> moves) {
+        synchronized (cache) {
+            cache.put(key, new ArrayList<>(moves));
+        }
+    }
+
+    public static boolean contains(Key key) {
+        synchronized (cache) {
+            return cache.containsKey(key);
+        }
+    }
+
+    /** 缓存条目数 */
+    public static int size() {
+        synchronized (cache) {
+            return cache.size();
+        }
+    }
+
+    /** 清空缓存 */
+    public static void clear() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+}
@@ -6,11 +6,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
+import com.sokoban.core.game.Logger;
 import com.sokoban.core.logic.Direction;
 import com.sokoban.core.logic.ObjectType;
 import com.sokoban.core.logic.PlayerCore;
 import com.sokoban.core.logic.PlayerCoreUtils;
-import com.sokoban.core.logic.Pos;
 import com.sokoban.core.map.MapData;
 import com.sokoban.core.map.SubMapData;
 
@@ -24,12 +24,15 @@ public class IDAStar {
     private PlayerCore playerCore; // 逻辑核心
     private IDAState goalState = null;  // 添加成员变量存储目标状态
     private int boxNum = 0;
+    private PushLevel pushLevel; // 推动层面的静态关卡
+    private PatternDatabase patternDatabase; // 模式数据库，后台构建
     public volatile boolean exit = false;
 
     // 采用邻接矩阵 + 表双用存储箱子目标点，采用表存储玩家目标点
     private Set<int[]> boxTargetList; // 箱子目标点表
 
     private static final int LAMBDA_DEEPIN = 1;
+    private static final int PATTERN_WEIGHT = 4; // 模式数据库下界的权重
 
     /** 在 IDA* 中性能高一些的状态类 */
     public static class IDAState {
@@ -91,11 +94,22 @@ public class IDAStar {
         int loss = 10 * boxNum;
 
         SubMapData tempSubMap = subMapWithoutBox.deepCopy();
-        for (int[] box : state.boxesPos) tempSubMap.getObjectLayer()[box[1]][box[0]] = ObjectType.Box;
+        for (int[] box : state.boxesPos) tempSubMap.setObject(box[0], box[1], ObjectType.Box);
         
         // 如果有箱子陷入死角，直接置为大数
         if (DeadLockTest.lockTest(tempSubMap, state.boxesPos, true)) return 114514;
 
+        // 模式数据库给出的推动数下界，就绪前为 0
+        if (patternDatabase != null && patternDatabase.isReady()) {
+            int[] boxCells = new int[state.boxesPos.size()];
+            int boxIndex = 0;
+            for (int[] box : state.boxesPos) boxCells[boxIndex++] = box[1] * pushLevel.width + box[0];
+
+            int patternBound = patternDatabase.lowerBound(boxCells);
+            if (patternBound == PushLevel.UNREACHABLE) return 114514; // 某组目标点已经不可能被填满
+            loss += PATTERN_WEIGHT * patternBound;
+        }
+
         // 计算所有箱子到所有目标点的曼哈顿距离
         for (int[] box : state.boxesPos) {
             for (int[] boxTarget : boxTargetList) {
@@ -109,10 +123,10 @@ public class IDAStar {
         // 如果进入一个较大块的区域，认为可能是一个比较好的解法
         int areaMinus = 0;
         for (int[] box : state.boxesPos) {
-            if (box[1] > 0) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObjectLayer()[box[1] - 1][box[0]]) ? 1 : 0;
-            if (box[1] < tempSubMap.height - 1) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObjectLayer()[box[1] + 1][box[0]]) ? 1 : 0;
-            if (box[0] > 0) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObjectLayer()[box[1]][box[0] - 1]) ? 1 : 0;
-            if (box[0] < tempSubMap.width - 1) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObjectLayer()[box[1]][box[0] + 1]) ? 1 : 0;
+            if (box[1] > 0) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObject(box[0], box[1] - 1)) ? 1 : 0;
+            if (box[1] < tempSubMap.height - 1) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObject(box[0], box[1] + 1)) ? 1 : 0;
+            if (box[0] > 0) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObject(box[0] - 1, box[1])) ? 1 : 0;
+            if (box[0] < tempSubMap.width - 1) areaMinus += PlayerCoreUtils.isWalkable(tempSubMap.getObject(box[0] + 1, box[1])) ? 1 : 0;
         }
         loss -= areaMinus * 6;
 
@@ -153,42 +167,53 @@ public class IDAStar {
         return path;
     }
 
-    /** 获得初始状态 */
+    /**
+     * 获得初始状态
+     * <br><br>
+     * 玩家无法离开所在的子地图，组合状态中其它子地图不会变化，因此只搜索玩家所在子地图，
+     * 其它子地图必须已经完成
+     * @return 初始状态，没有玩家或其它子地图未完成时返回 null
+     */
     private IDAState findStartState() {
         // 找到玩家位置
         subMapIndex = playerCore.setMap(map); // 设置逻辑核心地图
-        Pos playerPos = playerCore.findPlayerPosition(subMapIndex);
+        if (subMapIndex < 0) return null;
+        for (int otherIndex = 0; otherIndex < map.allMaps.size(); otherIndex++) {
+            if (otherIndex != subMapIndex && !playerCore.isSubmapSolved(otherIndex)) {
+                Logger.info("IDAStar", String.format("Sub map #%d is unsolved and has no player", otherIndex));
+                return null;
+            }
+        }
         subMap = map.allMaps.get(subMapIndex);
 
         // 获得没有箱子和人的空地图
         SubMapData tempSubMap = subMap.deepCopy();
         for (int y = 0; y < tempSubMap.height; y++) for (int x = 0; x < tempSubMap.width; x++)
-            if (PlayerCoreUtils.isBox(tempSubMap.getObjectLayer()[y][x]) || PlayerCoreUtils.isPlayer(tempSubMap.getObjectLayer()[y][x])) {
+            if (PlayerCoreUtils.isBox(tempSubMap.getObject(x, y)) || PlayerCoreUtils.isPlayer(tempSubMap.getObject(x, y))) {
                 boxNum += 1;
-                tempSubMap.getObjectLayer()[y][x] = ObjectType.Air;
+                tempSubMap.setObject(x, y, ObjectType.Air);
             }
         subMapWithoutBox = tempSubMap;
 
         // 找到箱子位置
         Set<int[]> boxes = new HashSet<>();
-        subMap = map.allMaps.get(subMapIndex);
-        for (int y = 0; y < subMap.height; y++) {
-            for (int x = 0; x < subMap.width; x++) {
-                if (PlayerCoreUtils.isBox(subMap.getObjectLayer()[y][x])) boxes.add(new int[] {x, y});
-            }
-        }
+        for (int boxCell : playerCore.getBoxCells(subMapIndex)) boxes.add(new int[] {boxCell % subMap.width, boxCell / subMap.width});
 
         // 找到目标点位置
         Set<int[]> targets = new HashSet<>();
         subMap = map.allMaps.get(subMapIndex);
         for (int y = 0; y < subMap.height; y++) {
             for (int x = 0; x < subMap.width; x++) {
-                if (subMap.getTargetLayer()[y][x] == ObjectType.BoxTarget) targets.add(new int[] {x, y});
+                if (subMap.getTarget(x, y) == ObjectType.BoxTarget) targets.add(new int[] {x, y});
             }
         }
         boxTargetList = targets;
 
-        IDAState initState = new IDAState(playerPos.getX(), playerPos.getY(), boxes);
+        // 请求模式数据库，首次遇到该关卡时会在后台构建
+        pushLevel = new PushLevel(subMap);
+        patternDatabase = PatternDatabase.request(pushLevel, PatternDatabase.defaultPath(map.mapFileInfo));
+
+        IDAState initState = new IDAState(playerCore.getPlayerX(), playerCore.getPlayerY(), boxes);
         return initState;
     }
 
@@ -198,33 +223,33 @@ public class IDAStar {
         List<IDAState> successors = new ArrayList<>();
 
         SubMapData tempSubMap = subMapWithoutBox.deepCopy();
-        for (int[] box : state.boxesPos) tempSubMap.getObjectLayer()[box[1]][box[0]] = ObjectType.Box;
-        tempSubMap.getObjectLayer()[state.playerY][state.playerX] = ObjectType.Player;
+        for (int[] box : state.boxesPos) tempSubMap.setObject(box[0], box[1], ObjectType.Box);
+        tempSubMap.setObject(state.playerX, state.playerY, ObjectType.Player);
         
         for (Direction direction : Direction.values()) {
             if (direction == Direction.None) continue;
 
-            Pos newPos = new Pos(state.playerX, state.playerY).add(PlayerCoreUtils.getDeltaPos(direction));
-            if (!playerCore.outOfBound(subMapIndex, newPos.getX(), newPos.getY())) {
+            int newX = state.playerX + direction.dx, newY = state.playerY + direction.dy;
+            if (!playerCore.outOfBound(subMapIndex, newX, newY)) {
                 // 找到所有合法行动
 
                 // 空
-                if (PlayerCoreUtils.isWalkable(tempSubMap.getObjectLayer()[newPos.getY()][newPos.getX()])) {
-                    successors.add(new IDAState(newPos.getX(), newPos.getY(), state.boxesPos));
+                if (PlayerCoreUtils.isWalkable(tempSubMap.getObject(newX, newY))) {
+                    successors.add(new IDAState(newX, newY, state.boxesPos));
                 }
 
                 // 有箱子
-                if (PlayerCoreUtils.isBox(tempSubMap.getObjectLayer()[newPos.getY()][newPos.getX()])) {
+                if (PlayerCoreUtils.isBox(tempSubMap.getObject(newX, newY))) {
                     // 如果能推动
-                    Pos newBoxPos = newPos.add(PlayerCoreUtils.getDeltaPos(direction));
-                    if (PlayerCoreUtils.isWalkable(tempSubMap.getObjectLayer()[newBoxPos.getY()][newBoxPos.getX()])) {
+                    int newBoxX = newX + direction.dx, newBoxY = newY + direction.dy;
+                    if (!playerCore.outOfBound(subMapIndex, newBoxX, newBoxY) && PlayerCoreUtils.isWalkable(tempSubMap.getObject(newBoxX, newBoxY))) {
                         // 复制箱子位置集并更新对应箱子坐标
                         Set<int[]> newBoxPoses = new HashSet<>();
                         for (int[] bp : state.boxesPos) {
-                            if (bp[0] == newPos.getX() && bp[1] == newPos.getY()) newBoxPoses.add(new int[] {newBoxPos.getX(), newBoxPos.getY()});
+                            if (bp[0] == newX && bp[1] == newY) newBoxPoses.add(new int[] {newBoxX, newBoxY});
                             else newBoxPoses.add(bp);
                         }
-                        successors.add(new IDAState(newPos.getX(), newPos.getY(), newBoxPoses));
+                        successors.add(new IDAState(newX, newY, newBoxPoses));
                     }
                 }
             }
@@ -297,6 +322,7 @@ public class IDAStar {
     public List<IDAState> solve() {
         // 找到初始玩家和箱子位置
         IDAState startState = findStartState();
+        if (startState == null) return null;
         // 调用 IDA* 算法
         List<IDAState> solution = IDAStarFind(startState);
         return solution;
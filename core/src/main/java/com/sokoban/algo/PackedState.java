@@ -0,0 +1,85 @@
+package com.sokoban.algo;
+
+import java.util.Arrays;
+
+/**
+ * 紧凑的推箱子状态编码
+ * <br><br>
+ * 一个状态被编码为 int[]：下标 0 为规范化后的玩家位置（玩家可达区域中最小的格子），
+ * 其余为升序排列的箱子格子。同一推动状态下玩家在可达区域内的任意位置都视为同一状态
+ */
+public class PackedState {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    /**
+     * 打包状态
+     * @param normalizedPlayer 规范化玩家位置
+     * @param boxes 箱子位置，无需有序
+     * @return 打包结果
+     */
+    public static int[] pack(int normalizedPlayer, int[] boxes) {
+        int[] packed = new int[boxes.length + 1];
+        packed[0] = normalizedPlayer;
+        System.arraycopy(boxes, 0, packed, 1, boxes.length);
+        Arrays.sort(packed, 1, packed.length);
+        return packed;
+    }
+
+    /** 取出箱子部分 */
+    public static int[] boxes(int[] packed) {
+        return Arrays.copyOfRange(packed, 1, packed.length);
+    }
+
+    /** 64 位状态哈希 */
+    public static long hash(int[] packed) {
+        long hash = packed.length;
+        for (int value : packed) hash = mix(hash ^ (value * GOLDEN));
+        return hash;
+    }
+
+    /**
+     * 状态所属的工作者，用于哈希分区
+     * <br><br>
+     * 按箱子部分进行分区，同一箱子布局下的所有玩家位置都落在同一个工作者上，
+     * 规范化玩家位置可以交给所属工作者在展开时再计算
+     * @param boxes 升序箱子位置
+     * @param workerNum 工作者数量
+     * @return 工作者索引
+     */
+    public static int ownerOfBoxes(int[] boxes, int workerNum) {
+        long hash = boxes.length;
+        for (int value : boxes) hash = mix(hash ^ (value * GOLDEN));
+        return (int) Long.remainderUnsigned(hash, workerNum);
+    }
+
+    /** splitmix64 末尾混合 */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /** 可作为 HashMap 键的打包状态 */
+    public static class Key {
+        public final int[] packed;
+        private final int hash;
+
+        public Key(int[] packed) {
+            this.packed = packed;
+            long longHash = PackedState.hash(packed);
+            this.hash = (int) (longHash ^ (longHash >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof Key)) return false;
+            return Arrays.equals(packed, ((Key) obj).packed);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package com.sokoban.algo;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.sokoban.core.game.Logger;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.gamedefault.SokobanLevels;
+import com.sokoban.utils.FilePathUtils;
+
+/**
+ * 加性模式数据库启发
+ * <br><br>
+ * 将目标点划分为若干个小组，对每组在只有该组箱子的地图上从目标点反向拉箱子，
+ * 得到任意 k 个箱子位置推满该组目标点的精确推动数，以 byte[] 紧凑存储。
+ * 搜索时每组取当前箱子中代价最小的 k 个子集再相加，各组推动互不重叠，因此结果仍是下界
+ * <br><br>
+ * 表按关卡在后台线程中懒构建，并持久化到关卡文件旁的 .pdb 文件中。
+ * 内存中只保留最近使用的若干关卡，被淘汰的关卡若仍在构建则中止构建
+ */
+public class PatternDatabase {
+    public static final int PATTERN_SIZE = 2; // 每组目标点数量
+    private static final long MAX_TABLE_SIZE = 1L << 22; // 单表最大条目数，超出时缩小分组
+    private static final long MAX_VISITED_BITS = 1L << 28; // 构建时访问标记的最大位数（32MB），超出时缩小分组
+    private static final int MAX_DATABASES = 4; // 内存中保留的关卡数
+    private static final int MAGIC = 0x53504442; // "SPDB"
+    private static final int VERSION = 1;
+    private static final int UNREACHABLE_COST = 0xFF;
+    private static final int MAX_COST = 0xFE;
+    private static final String FILE_EXTENSION = ".pdb";
+    private static final String DEFAULT_MAPS_DIRECTORY = "./bin/maps";
+
+    private static final Map<Long, PatternDatabase> databases = new LinkedHashMap<>(8, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, PatternDatabase> eldest) {
+            if (size() <= MAX_DATABASES) return false;
+            eldest.getValue().cancelled = true;
+            return true;
+        }
+    };
+
+    private final PushLevel level;
+    private final long levelHash;
+    private final int[] floorIndex; // 格子 -> 紧凑地面索引，非地面为 -1
+    private final int floorNum;
+    private int[][] groups; // 每组的目标点
+    private byte[][] tables; // 每组的代价表，按组合数排名索引
+    private long[][] binomial;
+    private volatile boolean ready = false;
+    private volatile boolean cancelled = false; // 已被淘汰，中止构建
+
+    private PatternDatabase(PushLevel level) {
+        this.level = level;
+        this.levelHash = level.contentHash();
+        this.floorIndex = new int[level.cellNum];
+
+        int count = 0;
+        for (int cell = 0; cell < level.cellNum; cell++) floorIndex[cell] = level.isFloor(cell) ? count++ : -1;
+        this.floorNum = count;
+    }
+
+    /**
+     * 获取关卡对应的模式数据库，不存在时在后台开始构建
+     * @param level 静态关卡
+     * @param persistPath 持久化文件路径，为 null 时不持久化
+     * @return 模式数据库，构建完成前 isReady() 为 false
+     */
+    public static PatternDatabase request(PushLevel level, String persistPath) {
+        synchronized (databases) {
+            return databases.computeIfAbsent(level.contentHash(), hash -> {
+                PatternDatabase database = new PatternDatabase(level);
+                Thread builder = new Thread(() -> database.loadOrBuild(persistPath), "pattern-database-builder");
+                builder.setDaemon(true);
+                builder.setPriority(Thread.MIN_PRIORITY);
+                builder.start();
+                return database;
+            });
+        }
+    }
+
+    /** 释放所有关卡的模式数据库，正在进行的构建会中止 */
+    public static void clear() {
+        synchronized (databases) {
+            for (PatternDatabase database : databases.values()) database.cancelled = true;
+            databases.clear();
+        }
+    }
+
+    /**
+     * 关卡文件旁的持久化路径
+     * @param mapFileInfo 地图文件信息
+     * @return 持久化路径，无法确定关卡时返回 null
+     */
+    public static String defaultPath(MapFileInfo mapFileInfo) {
+        if (mapFileInfo == null || mapFileInfo.level == null || mapFileInfo.map == null || mapFileInfo.level == SokobanLevels.None) return null;
+        return FilePathUtils.combine(DEFAULT_MAPS_DIRECTORY, mapFileInfo.level.toString(), mapFileInfo.map.getMapName() + FILE_EXTENSION);
+    }
+
+    /** 表是否已经可用 */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 计算箱子布局的推动数下界
+     * @param boxes 箱子格子
+     * @return 推动数下界，表未就绪返回 0，存在某组无法被填满返回 PushLevel.UNREACHABLE
+     */
+    public int lowerBound(int[] boxes) {
+        if (!ready) return 0;
+
+        int[] indices = new int[boxes.length];
+        for (int i = 0; i < boxes.length; i++) {
+            indices[i] = floorIndex[boxes[i]];
+            if (indices[i] == -1) return 0; // 箱子不在玩家可达区域内，无法给出有效下界
+        }
+        Arrays.sort(indices);
+
+        int bound = 0;
+        for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
+            int best = minSubsetCost(tables[groupIndex], groups[groupIndex].length, indices);
+            if (best == UNREACHABLE_COST) return PushLevel.UNREACHABLE;
+            bound += best;
+        }
+        return bound;
+    }
+
+    /** 在所有 k 子集中取表中最小代价 */
+    private int minSubsetCost(byte[] table, int k, int[] indices) {
+        if (indices.length < k) return 0;
+
+        int[] choose = new int[k];
+        for (int i = 0; i < k; i++) choose[i] = i;
+
+        int best = UNREACHABLE_COST;
+        while (true) {
+            long rank = 0;
+            for (int i = 0; i < k; i++) rank += binomial[indices[choose[i]]][i + 1];
+            best = Math.min(best, table[(int) rank] & 0xFF);
+            if (best == 0) return 0;
+
+            // 下一个组合
+            int position = k - 1;
+            while (position >= 0 && choose[position] == indices.length - k + position) position--;
+            if (position < 0) return best;
+            choose[position]++;
+            for (int i = position + 1; i < k; i++) choose[i] = choose[i - 1] + 1;
+        }
+    }
+
+    /** 读取持久化数据，失败则重新构建并保存 */
+    private void loadOrBuild(String persistPath) {
+        long startTime = System.currentTimeMillis();
+        if (persistPath != null && FilePathUtils.exists(persistPath) && load(persistPath)) {
+            ready = true;
+            Logger.info("PatternDatabase", "Loaded pattern database from " + persistPath);
+            return;
+        }
+
+        if (!build()) {
+            Logger.info("PatternDatabase", "Pattern database build cancelled");
+            return;
+        }
+        ready = true;
+        Logger.info("PatternDatabase", String.format("Built %d pattern tables in %dms", groups.length, System.currentTimeMillis() - startTime));
+
+        if (persistPath != null) save(persistPath);
+    }
+
+    /**
+     * 划分目标点并构建所有表
+     * @return 是否完成，被淘汰时返回 false
+     */
+    private boolean build() {
+        int k = PATTERN_SIZE;
+        initBinomial(k);
+        while (k > 1 && (binomial[floorNum][k] > MAX_TABLE_SIZE || binomial[floorNum][k] * floorNum > MAX_VISITED_BITS)) k--;
+        if (binomial[floorNum][k] * floorNum > MAX_VISITED_BITS) {
+            // 地面过大，不使用模式数据库，下界恒为 0
+            Logger.warning("PatternDatabase", String.format("Too many floor cells (%d) for a pattern database", floorNum));
+            groups = new int[0][];
+            tables = new byte[0][];
+            return true;
+        }
+
+        // 贪心地把相近的目标点分到一组
+        int targetNum = level.targets.length;
+        boolean[] assigned = new boolean[targetNum];
+        groups = new int[(targetNum + k - 1) / k][];
+        for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
+            int first = 0;
+            while (assigned[first]) first++;
+            assigned[first] = true;
+
+            int size = Math.min(k, targetNum - groupIndex * k);
+            int[] group = new int[size];
+            group[0] = level.targets[first];
+            for (int member = 1; member < size; member++) {
+                int nearest = -1;
+                for (int candidate = 0; candidate < targetNum; candidate++) {
+                    if (assigned[candidate]) continue;
+                    if (nearest == -1 || manhattan(group[0], level.targets[candidate]) < manhattan(group[0], level.targets[nearest])) nearest = candidate;
+                }
+                assigned[nearest] = true;
+                group[member] = level.targets[nearest];
+            }
+            groups[groupIndex] = group;
+        }
+
+        byte[][] builtTables = new byte[groups.length][];
+        for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
+            builtTables[groupIndex] = buildTable(groups[groupIndex]);
+            if (builtTables[groupIndex] == null) return false;
+        }
+        tables = builtTables;
+        return true;
+    }
+
+    /**
+     * 在只有本组箱子的地图上，从目标点反向 BFS 拉箱子
+     * <br><br>
+     * 状态 (箱子集合, 规范化玩家位置) 以 排名 * 地面数 + 玩家地面索引 编号，访问标记为该编号上的位图
+     * @param group 本组目标点
+     * @return 代价表，被淘汰时返回 null
+     */
+    private byte[] buildTable(int[] group) {
+        int k = group.length;
+        byte[] table = new byte[(int) binomial[floorNum][k]];
+        Arrays.fill(table, (byte) UNREACHABLE_COST);
+
+        boolean[] occupied = new boolean[level.cellNum];
+        ReachabilityMap reach = new ReachabilityMap(level);
+        long[] visited = new long[(int) ((binomial[floorNum][k] * floorNum + 63) >>> 6)];
+        int[] rankIndices = new int[k];
+
+        // 队列中每个状态占 k + 2 个 int：箱子、玩家、代价
+        int stride = k + 2;
+        int[] queue = new int[stride * 1024];
+        int head = 0, tail = 0;
+
+        // 起点：箱子在目标点上，玩家位于剩余地面的任意连通区域
+        for (int cell : group) occupied[cell] = true;
+        boolean[] seenRegion = new boolean[level.cellNum];
+        for (int cell = 0; cell < level.cellNum; cell++) {
+            if (!level.isFloor(cell) || occupied[cell] || seenRegion[cell]) continue;
+            reach.compute(cell, occupied);
+            for (int other = cell; other < level.cellNum; other++) if (reach.isReachable(other)) seenRegion[other] = true;
+
+            if (tail + stride > queue.length) queue = Arrays.copyOf(queue, queue.length * 2);
+            for (int i = 0; i < k; i++) queue[tail + i] = group[i];
+            queue[tail + k] = cell;
+            queue[tail + k + 1] = 0;
+            tail += stride;
+        }
+        for (int cell : group) occupied[cell] = false;
+
+        int[] boxes = new int[k];
+        while (head < tail) {
+            if (cancelled) return null;
+            System.arraycopy(queue, head, boxes, 0, k);
+            int player = queue[head + k];
+            int cost = queue[head + k + 1];
+            head += stride;
+
+            for (int box : boxes) occupied[box] = true;
+            int normalized = reach.compute(player, occupied);
+
+            long rank = rank(boxes, rankIndices);
+            long state = rank * floorNum + floorIndex[normalized];
+            if ((visited[(int) (state >>> 6)] & 1L << state) != 0) {
+                for (int box : boxes) occupied[box] = false;
+                continue;
+            }
+            visited[(int) (state >>> 6)] |= 1L << state;
+            if ((table[(int) rank] & 0xFF) == UNREACHABLE_COST) table[(int) rank] = (byte) Math.min(cost, MAX_COST);
+
+            // 拉动：玩家站在箱子的 direction 一侧，向 direction 退一步，箱子跟随一格
+            for (int boxIndex = 0; boxIndex < k; boxIndex++) {
+                int box = boxes[boxIndex];
+                for (int direction = 0; direction < PushLevel.DIRECTION_NUM; direction++) {
+                    int playerFrom = level.neighbor(box, direction);
+                    if (playerFrom == -1 || !reach.isReachable(playerFrom)) continue;
+                    int playerTo = level.neighbor(playerFrom, direction);
+                    if (playerTo == -1 || occupied[playerTo]) continue;
+
+                    if (tail + stride > queue.length) {
+                        // 压缩已出队部分，必要时扩容
+                        System.arraycopy(queue, head, queue, 0, tail - head);
+                        tail -= head;
+                        head = 0;
+                        if (tail + stride > queue.length) queue = Arrays.copyOf(queue, queue.length * 2);
+                    }
+                    for (int i = 0; i < k; i++) queue[tail + i] = boxes[i];
+                    queue[tail + boxIndex] = playerFrom;
+                    queue[tail + k] = playerTo;
+                    queue[tail + k + 1] = cost + 1;
+                    tail += stride;
+                }
+            }
+            for (int box : boxes) occupied[box] = false;
+        }
+
+        return table;
+    }
+
+    /**
+     * 箱子集合的组合数排名（colex 序）
+     * @param boxes 箱子格子
+     * @param indices 与 boxes 等长的临时数组
+     */
+    private long rank(int[] boxes, int[] indices) {
+        for (int i = 0; i < boxes.length; i++) indices[i] = floorIndex[boxes[i]];
+        Arrays.sort(indices);
+
+        long rank = 0;
+        for (int i = 0; i < indices.length; i++) rank += binomial[indices[i]][i + 1];
+        return rank;
+    }
+
+    private void initBinomial(int k) {
+        binomial = new long[floorNum + 1][k + 1];
+        for (int n = 0; n <= floorNum; n++) {
+            binomial[n][0] = 1;
+            for (int r = 1; r <= Math.min(n, k); r++) binomial[n][r] = binomial[n - 1][r - 1] + (r <= n - 1 ? binomial[n - 1][r] : 0);
+        }
+    }
+
+    private int manhattan(int a, int b) {
+        return Math.abs(level.x(a) - level.x(b)) + Math.abs(level.y(a) - level.y(b));
+    }
+
+    /** 保存到文件 */
+    private void save(String path) {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(path))))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(levelHash);
+            out.writeInt(groups.length);
+            for (int groupIndex = 0; groupIndex < groups.length; groupIndex++) {
+                out.writeInt(groups[groupIndex].length);
+                for (int target : groups[groupIndex]) out.writeInt(target);
+                out.writeInt(tables[groupIndex].length);
+                out.write(tables[groupIndex]);
+            }
+        } catch (IOException e) {
+            Logger.warning("PatternDatabase", "Can't save pattern database: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 从文件读取
+     * @return 是否成功，关卡内容不匹配视为失败
+     */
+    private boolean load(String path) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(Path.of(path))))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != levelHash) return false;
+
+            int[][] loadedGroups = new int[in.readInt()][];
+            byte[][] loadedTables = new byte[loadedGroups.length][];
+            int maxK = 1;
+            for (int groupIndex = 0; groupIndex < loadedGroups.length; groupIndex++) {
+                loadedGroups[groupIndex] = new int[in.readInt()];
+                for (int i = 0; i < loadedGroups[groupIndex].length; i++) loadedGroups[groupIndex][i] = in.readInt();
+                loadedTables[groupIndex] = new byte[in.readInt()];
+                in.readFully(loadedTables[groupIndex]);
+                maxK = Math.max(maxK, loadedGroups[groupIndex].length);
+            }
+
+            initBinomial(maxK);
+            groups = loadedGroups;
+            tables = loadedTables;
+            return true;
+        } catch (IOException e) {
+            Logger.warning("PatternDatabase", "Can't load pattern database: " + e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.sokoban.algo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 以推动为单位的单线程 A* 求解器
+ * <br><br>
+ * 状态为 (规范化玩家位置, 箱子集合)，代价为推动次数，启发为每个箱子到最近目标点的推动距离之和。
+ * 解以方向索引序列返回，包括推动之间玩家的行走
+ */
+public class PushAStar {
+    private final PushLevel level;
+    private static final long PAUSE_SLEEP_MILLIS = 10;
+    private int nodeLimit = Integer.MAX_VALUE; // 最多展开节点数
+    public volatile boolean exit = false;
+    public volatile boolean paused = false; // 暂停时搜索线程让出 CPU
+
+    /** 搜索节点，通过父节点还原路径 */
+    private static class Node {
+        final int g, f, player;
+        final int[] boxes;
+        final Node parent;
+        final byte[] moves; // 从父节点到达本节点的行走与推动
+
+        Node(int g, int f, int player, int[] boxes, Node parent, byte[] moves) {
+            this.g = g;
+            this.f = f;
+            this.player = player;
+            this.boxes = boxes;
+            this.parent = parent;
+            this.moves = moves;
+        }
+    }
+
+    public PushAStar(PushLevel level) {
+        this.level = level;
+    }
+
+    /** 设置最多展开节点数，超出视为无解 */
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /** 从关卡初始状态求解 */
+    public byte[] solve() {
+        return solve(level.initialPlayer, level.initialBoxes);
+    }
+
+    /**
+     * 从指定状态求解
+     * @param player 玩家位置
+     * @param boxes 箱子位置
+     * @return 方向索引序列，无解、超限或取消返回 null
+     */
+    public byte[] solve(int player, int[] boxes) {
+        int[] startBoxes = boxes.clone();
+        Arrays.sort(startBoxes);
+        int h = level.simpleLowerBound(startBoxes);
+        if (player < 0 || h == PushLevel.UNREACHABLE) return null;
+
+        PriorityQueue<Node> open = new PriorityQueue<>((a, b) -> a.f != b.f ? Integer.compare(a.f, b.f) : Integer.compare(b.g, a.g));
+        Map<PackedState.Key, Integer> closed = new HashMap<>();
+        boolean[] occupied = new boolean[level.cellNum];
+        ReachabilityMap reach = new ReachabilityMap(level);
+        PushSuccessors successors = new PushSuccessors(level);
+
+        open.add(new Node(0, h, player, startBoxes, null, new byte[0]));
+        int expanded = 0;
+
+        while (!open.isEmpty() && !exit) {
+            if (paused) waitWhilePaused();
+            Node node = open.poll();
+            for (int box : node.boxes) occupied[box] = true;
+            int normalized = reach.compute(node.player, occupied);
+
+            PackedState.Key key = new PackedState.Key(PackedState.pack(normalized, node.boxes));
+            Integer closedG = closed.get(key);
+            if (closedG != null && closedG <= node.g) {
+                for (int box : node.boxes) occupied[box] = false;
+                continue;
+            }
+            closed.put(key, node.g);
+
+            if (isGoal(node.boxes)) return reconstructPath(node);
+            if (++expanded > nodeLimit) return null;
+
+            successors.reset(node.boxes, occupied, reach);
+            while (successors.next()) {
+                byte[] walk = reach.pathTo(successors.playerSide);
+                byte[] moves = Arrays.copyOf(walk, walk.length + 1);
+                moves[walk.length] = (byte) successors.direction;
+                open.add(new Node(node.g + 1, node.g + 1 + successors.h, successors.box, successors.childBoxes, node, moves));
+            }
+            for (int box : node.boxes) occupied[box] = false;
+        }
+        return null;
+    }
+
+    /** 暂停期间休眠，直到恢复或取消 */
+    private void waitWhilePaused() {
+        while (paused && !exit) {
+            try {
+                Thread.sleep(PAUSE_SLEEP_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                exit = true;
+            }
+        }
+    }
+
+    private boolean isGoal(int[] boxes) {
+        for (int box : boxes) if (!level.isTarget(box)) return false;
+        return true;
+    }
+
+    /** 拼接各节点的行走与推动 */
+    private byte[] reconstructPath(Node node) {
+        int length = 0;
+        for (Node current = node; current != null; current = current.parent) length += current.moves.length;
+
+        byte[] path = new byte[length];
+        for (Node current = node; current != null; current = current.parent) {
+            length -= current.moves.length;
+            System.arraycopy(current.moves, 0, path, length, current.moves.length);
+        }
+        return path;
+    }
+}
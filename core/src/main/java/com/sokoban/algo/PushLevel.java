@@ -0,0 +1,274 @@
+package com.sokoban.algo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.ObjectType;
+import com.sokoban.core.logic.ObjectClassMapper;
+import com.sokoban.core.map.ChunkedLayer;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 以推动为单位的静态关卡描述
+ * <br><br>
+ * 对外使用一维格子索引 cell = y * width + x，玩家无法到达的格子一律视为墙。
+ * 求解器只关心墙、箱子目标点以及初始的箱子与玩家位置，这些数据在搜索过程中不会改变
+ * <br><br>
+ * 内部数据按地面编号存储，格子到地面编号的映射与 ChunkedLayer 一样按 32x32 分块、只为含有地面的块分配，
+ * 内存只与玩家可到达的地面格子数有关，与地图宽高无关
+ */
+public class PushLevel {
+    public static final int DIRECTION_NUM = 4;
+
+    /** 方向索引与标准方向的对应，Up 为 y + 1 */
+    public static final Direction[] DIRECTIONS = {Direction.Up, Direction.Down, Direction.Left, Direction.Right};
+
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private static final int CHUNK_SHIFT = ChunkedLayer.CHUNK_SHIFT;
+    private static final int CHUNK_MASK = ChunkedLayer.CHUNK_SIZE - 1;
+
+    public final int width, height, cellNum;
+    public final int floorNum; // 玩家可以到达的格子数
+    public final int[] targets; // 箱子目标点
+    public final int[] initialBoxes; // 初始箱子位置，升序
+    public final int initialPlayer; // 初始玩家位置
+
+    private final int chunkCols;
+    private final int[][] floorIndexChunks; // 块 -> 块内格子的地面编号，非地面为 -1，没有地面的块为 null
+    private final int[] floorCells; // 地面编号 -> 格子，按洪水填充顺序
+    private final int[] neighbors; // 地面编号 * 4 + direction -> 相邻地面格子，越界或非地面为 -1
+    private final int[][] targetDistance; // [目标点][地面编号] -> 不考虑其它箱子时推到该目标点的最少推动数
+    private final int[] minDistance; // 地面编号 -> 推到任意目标点的最少推动数
+
+    /**
+     * 从子地图构建静态关卡
+     * @param subMap 子地图
+     */
+    public PushLevel(SubMapData subMap) {
+        width = subMap.width;
+        height = subMap.height;
+        cellNum = width * height;
+
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        MapLayer targetLayer = subMap.getMapLayer(SubMapData.LAYER_TARGET);
+
+        int player = -1;
+        List<Integer> boxes = new ArrayList<>();
+        List<Integer> targetList = new ArrayList<>();
+
+        // 玩家与箱子都在非空格子上，只遍历非空格子，分块存储的超大地图上只访问已分配的块
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) {
+            byte object = objectLayer.get(cell);
+            if (ObjectClassMapper.isPlayer(object) && player == -1) player = cell;
+            if (ObjectClassMapper.isBox(object)) boxes.add(cell);
+        }
+        for (int cell = targetLayer.nextCell(0); cell != -1; cell = targetLayer.nextCell(cell + 1)) {
+            if (SubMapData.typeOf(targetLayer.get(cell)) == ObjectType.BoxTarget) targetList.add(cell);
+        }
+        initialPlayer = player;
+
+        // 只有玩家能走到的格子才算地面，地图外围的空气不参与搜索
+        // 洪水填充时按需读取格子并分配地面编号，队列即为地面编号到格子的映射，按需扩容
+        chunkCols = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        floorIndexChunks = new int[chunkCols * ((height + CHUNK_MASK) >> CHUNK_SHIFT)][];
+        int[] queue = new int[64];
+        int count = 0;
+        if (player != -1) {
+            int head = 0;
+            setFloorIndex(player, count);
+            queue[count++] = player;
+            while (head < count) {
+                int cell = queue[head++];
+                for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+                    int next = rawNeighbor(cell, direction);
+                    if (next == -1 || floorIndex(next) != -1 || !isPassable(objectLayer.get(next))) continue;
+                    if (count == queue.length) queue = Arrays.copyOf(queue, count * 2);
+                    setFloorIndex(next, count);
+                    queue[count++] = next;
+                }
+            }
+        }
+        floorNum = count;
+        floorCells = Arrays.copyOf(queue, floorNum);
+
+        // 只为地面格子计算相邻关系
+        neighbors = new int[floorNum * DIRECTION_NUM];
+        Arrays.fill(neighbors, -1);
+        for (int index = 0; index < floorNum; index++) {
+            for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+                int next = rawNeighbor(floorCells[index], direction);
+                if (next != -1 && floorIndex(next) != -1) neighbors[index * DIRECTION_NUM + direction] = next;
+            }
+        }
+
+        initialBoxes = boxes.stream().mapToInt(Integer::intValue).sorted().toArray();
+        targets = targetList.stream().mapToInt(Integer::intValue).sorted().toArray();
+
+        // 从每个目标点出发反向拉箱子，得到推动距离
+        targetDistance = new int[targets.length][];
+        minDistance = new int[floorNum];
+        Arrays.fill(minDistance, UNREACHABLE);
+        int[] pullQueue = new int[floorNum];
+        for (int targetIndex = 0; targetIndex < targets.length; targetIndex++) {
+            targetDistance[targetIndex] = pullDistance(targets[targetIndex], pullQueue);
+            for (int index = 0; index < floorNum; index++) minDistance[index] = Math.min(minDistance[index], targetDistance[targetIndex][index]);
+        }
+    }
+
+    /** 记录格子的地面编号，所在块第一次出现地面时分配 */
+    private void setFloorIndex(int cell, int index) {
+        int x = cell % width, y = cell / width;
+        int chunkIndex = (y >> CHUNK_SHIFT) * chunkCols + (x >> CHUNK_SHIFT);
+        int[] chunk = floorIndexChunks[chunkIndex];
+        if (chunk == null) {
+            chunk = new int[ChunkedLayer.CHUNK_SIZE * ChunkedLayer.CHUNK_SIZE];
+            Arrays.fill(chunk, -1);
+            floorIndexChunks[chunkIndex] = chunk;
+        }
+        chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)] = index;
+    }
+
+    /**
+     * 获得格子的地面编号
+     * @param cell 格子
+     * @return 地面编号，范围 [0, floorNum)；非地面返回 -1
+     */
+    public int floorIndex(int cell) {
+        int x = cell % width, y = cell / width;
+        int[] chunk = floorIndexChunks[(y >> CHUNK_SHIFT) * chunkCols + (x >> CHUNK_SHIFT)];
+        return chunk == null ? -1 : chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)];
+    }
+
+    /** 地面编号对应的格子 */
+    public int floorCell(int index) {
+        return floorCells[index];
+    }
+
+    /** 玩家能否到达该格子 */
+    public boolean isFloor(int cell) {
+        return floorIndex(cell) != -1;
+    }
+
+    /** 玩家能否站在该物体所在的格子上（箱子可以被推走，因此也算可通行） */
+    private static boolean isPassable(byte object) {
+        return !ObjectClassMapper.isSolid(object) && object != SubMapData.codeOf(ObjectType.Unknown);
+    }
+
+    /** 不检查地面的相邻格子 */
+    private int rawNeighbor(int cell, int direction) {
+        int x = cell % width + DIRECTIONS[direction].dx, y = cell / width + DIRECTIONS[direction].dy;
+        if (x < 0 || y < 0 || x >= width || y >= height) return -1;
+        return y * width + x;
+    }
+
+    /**
+     * 在没有其它箱子的地图上，从目标点反向计算每个格子推到该点所需的最少推动数
+     * @param target 目标点
+     * @param queue 队列缓冲，长度为 floorNum
+     * @return 按地面编号存储的推动距离，无法到达为 UNREACHABLE
+     */
+    private int[] pullDistance(int target, int[] queue) {
+        int[] distance = new int[floorNum];
+        Arrays.fill(distance, UNREACHABLE);
+        int targetIndex = floorIndex(target);
+        if (targetIndex == -1) return distance;
+
+        int head = 0, tail = 0;
+        queue[tail++] = target;
+        distance[targetIndex] = 0;
+
+        while (head < tail) {
+            int box = queue[head++];
+            int boxDistance = distance[floorIndex(box)];
+            for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+                // 箱子从 box 沿 direction 的反方向被拉回一格，玩家需要站在更后面一格
+                int from = neighbor(box, direction);
+                if (from == -1) continue;
+                int playerSide = neighbor(from, direction);
+                int fromIndex = floorIndex(from);
+                if (playerSide == -1 || distance[fromIndex] != UNREACHABLE) continue;
+                distance[fromIndex] = boxDistance + 1;
+                queue[tail++] = from;
+            }
+        }
+        return distance;
+    }
+
+    /**
+     * 获得相邻格子
+     * @param cell 格子
+     * @param direction 方向索引
+     * @return 相邻地面格子，越界或非地面返回 -1
+     */
+    public int neighbor(int cell, int direction) {
+        int index = floorIndex(cell);
+        return index == -1 ? -1 : neighbors[index * DIRECTION_NUM + direction];
+    }
+
+    /** 反方向索引 */
+    public static int opposite(int direction) {
+        return direction ^ 1;
+    }
+
+    public int x(int cell) {
+        return cell % width;
+    }
+
+    public int y(int cell) {
+        return cell / width;
+    }
+
+    /** 是否为箱子目标点 */
+    public boolean isTarget(int cell) {
+        return Arrays.binarySearch(targets, cell) >= 0;
+    }
+
+    /** 不考虑其它箱子时，从 cell 推到 targets[targetIndex] 的最少推动数 */
+    public int targetDistance(int targetIndex, int cell) {
+        int index = floorIndex(cell);
+        return index == -1 ? UNREACHABLE : targetDistance[targetIndex][index];
+    }
+
+    /** 不考虑其它箱子时，从 cell 推到任意目标点的最少推动数 */
+    public int minPushDistance(int cell) {
+        int index = floorIndex(cell);
+        return index == -1 ? UNREACHABLE : minDistance[index];
+    }
+
+    /** 箱子进入后再也无法到达任何目标点的格子 */
+    public boolean isDeadCell(int cell) {
+        return minPushDistance(cell) == UNREACHABLE;
+    }
+
+    /**
+     * 静态关卡内容哈希，只与尺寸、地面和目标点有关，可用于校验持久化的预计算数据
+     * @return 64 位哈希
+     */
+    public long contentHash() {
+        long hash = 1469598103934665603L;
+        hash = (hash ^ width) * 1099511628211L;
+        hash = (hash ^ height) * 1099511628211L;
+        for (int cell = 0; cell < cellNum; cell++) hash = (hash ^ (isFloor(cell) ? 1 : 0)) * 1099511628211L;
+        for (int target : targets) hash = (hash ^ target) * 1099511628211L;
+        return hash;
+    }
+
+    /**
+     * 简单下界：每个箱子到最近目标点的推动数之和
+     * @param boxes 箱子位置
+     * @return 下界，存在死格返回 UNREACHABLE
+     */
+    public int simpleLowerBound(int[] boxes) {
+        int bound = 0;
+        for (int box : boxes) {
+            int distance = minPushDistance(box);
+            if (distance == UNREACHABLE) return UNREACHABLE;
+            bound += distance;
+        }
+        return bound;
+    }
+}
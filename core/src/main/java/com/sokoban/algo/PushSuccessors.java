@@ -0,0 +1,78 @@
+package com.sokoban.algo;
+
+import java.util.Arrays;
+
+/**
+ * 推动后继生成，PushAStar 与 HDA* 工作者共用
+ * <br><br>
+ * 以迭代方式依次给出当前状态下所有合法推动：玩家能走到箱子背面、推动目标格子为空且不是死格、
+ * 推动后的箱子布局仍可能推满目标点。每次 next() 返回 true 后，公共字段描述这次推动
+ * <pre>
+ * successors.reset(boxes, occupied, reach);
+ * while (successors.next()) { ... successors.childBoxes ... }
+ * </pre>
+ */
+public class PushSuccessors {
+    private final PushLevel level;
+
+    private int[] boxes;
+    private boolean[] occupied;
+    private ReachabilityMap reach;
+    private int boxIndex, nextDirection;
+
+    // 当前推动
+    public int box; // 被推动箱子原来的格子，也是推动后玩家所在的格子
+    public int direction; // 推动方向索引
+    public int playerSide; // 推动前玩家站立的格子
+    public int[] childBoxes; // 推动后的升序箱子位置，每次推动都是新数组
+    public int h; // 推动后布局的简单下界
+
+    public PushSuccessors(PushLevel level) {
+        this.level = level;
+    }
+
+    /**
+     * 开始枚举一个状态的后继
+     * @param boxes 升序箱子位置
+     * @param occupied 被箱子占用的格子，枚举期间不能修改
+     * @param reach 已按当前玩家位置计算好的可达区域
+     */
+    public void reset(int[] boxes, boolean[] occupied, ReachabilityMap reach) {
+        this.boxes = boxes;
+        this.occupied = occupied;
+        this.reach = reach;
+        boxIndex = 0;
+        nextDirection = 0;
+    }
+
+    /**
+     * 前进到下一个合法推动
+     * @return 是否还有推动
+     */
+    public boolean next() {
+        for (; boxIndex < boxes.length; boxIndex++, nextDirection = 0) {
+            int current = boxes[boxIndex];
+            while (nextDirection < PushLevel.DIRECTION_NUM) {
+                int pushDirection = nextDirection++;
+                int side = level.neighbor(current, PushLevel.opposite(pushDirection));
+                int destination = level.neighbor(current, pushDirection);
+                if (side == -1 || destination == -1) continue;
+                if (!reach.isReachable(side) || occupied[destination] || level.isDeadCell(destination)) continue;
+
+                int[] pushed = boxes.clone();
+                pushed[boxIndex] = destination;
+                Arrays.sort(pushed);
+                int bound = level.simpleLowerBound(pushed);
+                if (bound == PushLevel.UNREACHABLE) continue;
+
+                box = current;
+                direction = pushDirection;
+                playerSide = side;
+                childBoxes = pushed;
+                h = bound;
+                return true;
+            }
+        }
+        return false;
+    }
+}
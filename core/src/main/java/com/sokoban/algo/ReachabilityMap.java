@@ -0,0 +1,108 @@
+package com.sokoban.algo;
+
+import java.util.Arrays;
+
+/**
+ * 玩家可达区域
+ * <br><br>
+ * 在给定箱子占用下从玩家位置进行 BFS，记录每个格子的来向以便还原行走路径。
+ * 缓冲区按地面编号分配并在多次计算之间复用，通过时间戳避免每次清空数组
+ */
+public class ReachabilityMap {
+    private final PushLevel level;
+    private final int[] stamp; // 地面编号 -> 访问时间戳
+    private final byte[] parentDirection; // 地面编号 -> 到达该格子时走的方向
+    private final int[] queue;
+    private int currentStamp = 0;
+    private int normalized = -1; // 可达区域中最小的格子
+    private int origin = -1;
+
+    public ReachabilityMap(PushLevel level) {
+        this.level = level;
+        this.stamp = new int[level.floorNum];
+        this.parentDirection = new byte[level.floorNum];
+        this.queue = new int[level.floorNum];
+    }
+
+    /**
+     * 计算玩家可达区域
+     * @param player 玩家位置
+     * @param occupied 被箱子占用的格子
+     * @return 规范化玩家位置
+     */
+    public int compute(int player, boolean[] occupied) {
+        return compute(player, occupied, null);
+    }
+
+    /**
+     * 计算玩家可达区域，箱子占用按二分查找判断
+     * <br><br>
+     * 适合只计算一次的场合，不需要按地图大小分配占用数组
+     * @param player 玩家位置
+     * @param boxes 升序箱子位置
+     * @return 规范化玩家位置
+     */
+    public int compute(int player, int[] boxes) {
+        return compute(player, null, boxes);
+    }
+
+    /** occupied 为 null 时在 boxes 中查找占用 */
+    private int compute(int player, boolean[] occupied, int[] boxes) {
+        if (++currentStamp == Integer.MAX_VALUE) {
+            Arrays.fill(stamp, 0);
+            currentStamp = 1;
+        }
+
+        int head = 0, tail = 0;
+        queue[tail++] = player;
+        int playerIndex = level.floorIndex(player);
+        stamp[playerIndex] = currentStamp;
+        parentDirection[playerIndex] = -1;
+        origin = player;
+        normalized = player;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            for (int direction = 0; direction < PushLevel.DIRECTION_NUM; direction++) {
+                int next = level.neighbor(cell, direction);
+                if (next == -1 || (occupied != null ? occupied[next] : Arrays.binarySearch(boxes, next) >= 0)) continue;
+                int nextIndex = level.floorIndex(next);
+                if (stamp[nextIndex] == currentStamp) continue;
+                stamp[nextIndex] = currentStamp;
+                parentDirection[nextIndex] = (byte) direction;
+                queue[tail++] = next;
+                if (next < normalized) normalized = next;
+            }
+        }
+        return normalized;
+    }
+
+    /** 格子是否可达 */
+    public boolean isReachable(int cell) {
+        int index = level.floorIndex(cell);
+        return index != -1 && stamp[index] == currentStamp;
+    }
+
+    /** 最近一次计算得到的规范化玩家位置 */
+    public int getNormalized() {
+        return normalized;
+    }
+
+    /**
+     * 从最近一次计算的起点行走到目标格子的最短路径
+     * @param cell 目标格子
+     * @return 方向索引序列，不可达返回 null
+     */
+    public byte[] pathTo(int cell) {
+        if (!isReachable(cell)) return null;
+
+        int length = 0;
+        for (int current = cell; current != origin; current = level.neighbor(current, PushLevel.opposite(parentDirection[level.floorIndex(current)]))) length++;
+
+        byte[] path = new byte[length];
+        for (int current = cell; current != origin; current = level.neighbor(current, PushLevel.opposite(parentDirection[level.floorIndex(current)]))) {
+            path[--length] = parentDirection[level.floorIndex(current)];
+        }
+        return path;
+    }
+}
@@ -0,0 +1,158 @@
+package com.sokoban.algo;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 房间划分
+ * <br><br>
+ * 在无箱子的地面图上求割点，割点视为连接房间的门或走廊，
+ * 去掉所有割点后剩下的每个连通块是一个房间
+ */
+public class RoomDecomposer {
+
+    /** 房间 */
+    public static class Room {
+        public final int id;
+        public final int[] cells; // 房间内的格子
+        public final int[] doors; // 与房间相邻的割点
+        public final int[] boxes; // 房间内的初始箱子
+        public final int[] targets; // 房间内的目标点
+
+        Room(int id, int[] cells, int[] doors, int[] boxes, int[] targets) {
+            this.id = id;
+            this.cells = cells;
+            this.doors = doors;
+            this.boxes = boxes;
+            this.targets = targets;
+        }
+
+        /** 箱子数与目标点数一致时，房间可以独立求解 */
+        public boolean isBalanced() {
+            return boxes.length == targets.length;
+        }
+    }
+
+    private final PushLevel level;
+    private final boolean[] articulation; // 是否为割点
+    private final int[] roomOf; // 格子所属房间，割点与非地面为 -1
+    private final List<Room> rooms = new ArrayList<>();
+
+    public RoomDecomposer(PushLevel level) {
+        this.level = level;
+        this.articulation = new boolean[level.cellNum];
+        this.roomOf = new int[level.cellNum];
+        Arrays.fill(roomOf, -1);
+
+        findArticulationPoints();
+        labelRooms();
+    }
+
+    /** 迭代版 Tarjan 割点算法，避免大地图递归栈溢出 */
+    private void findArticulationPoints() {
+        int cellNum = level.cellNum;
+        int[] dfn = new int[cellNum];
+        int[] low = new int[cellNum];
+        int[] parent = new int[cellNum];
+        int[] nextDirection = new int[cellNum];
+        int[] stack = new int[cellNum];
+        int time = 0;
+
+        for (int root = 0; root < cellNum; root++) {
+            if (!level.isFloor(root) || dfn[root] != 0) continue;
+
+            int top = 0, rootChildren = 0;
+            stack[top++] = root;
+            parent[root] = -1;
+            dfn[root] = low[root] = ++time;
+            nextDirection[root] = 0;
+
+            while (top > 0) {
+                int cell = stack[top - 1];
+                if (nextDirection[cell] < PushLevel.DIRECTION_NUM) {
+                    int next = level.neighbor(cell, nextDirection[cell]++);
+                    if (next == -1 || next == parent[cell]) continue;
+
+                    if (dfn[next] == 0) {
+                        parent[next] = cell;
+                        dfn[next] = low[next] = ++time;
+                        nextDirection[next] = 0;
+                        stack[top++] = next;
+                        if (cell == root) rootChildren++;
+                    } else {
+                        low[cell] = Math.min(low[cell], dfn[next]);
+                    }
+                } else {
+                    // 回溯
+                    top--;
+                    int father = parent[cell];
+                    if (father != -1) {
+                        low[father] = Math.min(low[father], low[cell]);
+                        if (father != root && low[cell] >= dfn[father]) articulation[father] = true;
+                    }
+                }
+            }
+
+            if (rootChildren > 1) articulation[root] = true;
+        }
+    }
+
+    /** 去掉割点后对剩余地面进行连通块标记 */
+    private void labelRooms() {
+        int[] queue = new int[level.cellNum];
+
+        for (int start = 0; start < level.cellNum; start++) {
+            if (!level.isFloor(start) || articulation[start] || roomOf[start] != -1) continue;
+
+            int id = rooms.size();
+            int head = 0, tail = 0;
+            queue[tail++] = start;
+            roomOf[start] = id;
+
+            List<Integer> doors = new ArrayList<>();
+            while (head < tail) {
+                int cell = queue[head++];
+                for (int direction = 0; direction < PushLevel.DIRECTION_NUM; direction++) {
+                    int next = level.neighbor(cell, direction);
+                    if (next == -1) continue;
+                    if (articulation[next]) {
+                        if (!doors.contains(next)) doors.add(next);
+                    } else if (roomOf[next] == -1) {
+                        roomOf[next] = id;
+                        queue[tail++] = next;
+                    }
+                }
+            }
+
+            int[] cells = Arrays.copyOf(queue, tail);
+            Arrays.sort(cells);
+            rooms.add(new Room(
+                id, cells,
+                doors.stream().mapToInt(Integer::intValue).sorted().toArray(),
+                Arrays.stream(level.initialBoxes).filter(box -> roomOf[box] == id).toArray(),
+                Arrays.stream(level.targets).filter(target -> roomOf[target] == id).toArray()
+            ));
+        }
+    }
+
+    public List<Room> getRooms() {
+        return rooms;
+    }
+
+    /** 格子所属房间，割点与非地面为 -1 */
+    public int roomOf(int cell) {
+        return roomOf[cell];
+    }
+
+    public boolean isArticulation(int cell) {
+        return articulation[cell];
+    }
+
+    /** 是否有箱子或目标点落在割点上，此时房间之间必须传递箱子 */
+    public boolean hasObjectsOnDoors() {
+        for (int box : level.initialBoxes) if (articulation[box]) return true;
+        for (int target : level.targets) if (articulation[target]) return true;
+        return false;
+    }
+}
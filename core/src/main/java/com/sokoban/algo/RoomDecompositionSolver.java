@@ -0,0 +1,516 @@
+package com.sokoban.algo;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sokoban.algo.RoomDecomposer.Room;
+import com.sokoban.core.game.Logger;
+import com.sokoban.core.game.Logger.LogLevel;
+import com.sokoban.core.logic.BoxPushPlanner;
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.ObjectType;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.logic.WalkDistanceField;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 多房间关卡的分解求解器
+ * <br><br>
+ * 先用割点把关卡划分为房间，房间之间经由门（割点组成的走廊）相连。协调搜索分两层：
+ * <ul>
+ * <li>传递阶段：宏观状态为各房间的箱子数与走廊上的箱子，每一步把一个箱子从某个房间（或走廊）
+ * 经某个门推入离缺箱房间更近的相邻房间，具体推动由 BoxPushPlanner 规划。
+ * 以传递次数做迭代加深，启发值为多余箱子数与走廊箱子数之和</li>
+ * <li>房间阶段：所有房间平衡后，每个房间对每个可用入口（任意一个门或玩家所在位置）作为独立子问题并行求解，
+ * 再搜索房间的处理顺序与入口，在房间之间补上玩家的行走路径</li>
+ * </ul>
+ * 所有移动都在 PlayerCore 上执行，失败时撤销回溯，房间阶段走不通会回到传递阶段尝试其它传递。
+ * 只有目标点位于门上、箱子数与目标点数不一致、只有一个房间需要处理或协调搜索耗尽预算时，才退回整图求解
+ */
+public class RoomDecompositionSolver {
+    private static final int MAX_TRANSFERS = 32; // 最多在房间之间传递的箱子次数
+    private static final int COORDINATION_NODE_LIMIT = 5_000; // 传递阶段最多展开的宏观状态数
+    private static final byte[] NO_PLAN = new byte[0]; // 房间子问题无解的缓存标记
+
+    /** 房间之间的通道：箱子从 from 经门 door 所在的走廊进入 to，landings 为 to 中紧挨走廊的落点 */
+    private static class Passage {
+        final int from, to;
+        final int door;
+        final int[] landings;
+
+        Passage(int from, int to, int door, int[] landings) {
+            this.from = from;
+            this.to = to;
+            this.door = door;
+            this.landings = landings;
+        }
+    }
+
+    private final MapData map;
+    private int nodeLimit = 2_000_000; // 每次 PushAStar 搜索（单个房间或整图）最多展开节点数
+    private int transferNum = -1;
+    private final Set<PushAStar> activeSolvers = ConcurrentHashMap.newKeySet(); // 正在运行的搜索，暂停与取消时一并通知
+    private volatile boolean paused = false;
+    public volatile boolean exit = false;
+
+    // 单次求解的上下文
+    private PushLevel level;
+    private RoomDecomposer decomposer;
+    private List<Room> rooms;
+    private int subMapIndex;
+    private PlayerCore playerCore; // 协调搜索在其上执行与撤销移动
+    private final List<Direction> plan = new ArrayList<>(); // 与 playerCore 中已执行的移动一一对应
+    private BoxPushPlanner pushPlanner;
+    private WalkDistanceField walkField;
+    private ReachabilityMap reach;
+    private boolean[] occupied;
+    private List<List<Passage>> passages; // 房间编号 -> 从该房间出发的通道
+    private Map<String, Future<byte[]>> roomPlans; // (房间, 入口, 房间内箱子) -> 房间子问题的解
+    private Set<PackedState.Key> failedStates; // 房间阶段已确认无法完成的状态
+    private ExecutorService executor;
+    private int coordinationNodes;
+    private boolean cutoff; // 本轮迭代加深是否有分支被传递次数限制剪掉
+
+    public RoomDecompositionSolver(MapData map) {
+        this.map = map;
+    }
+
+    /** 设置每次 PushAStar 搜索的节点上限，房间子问题与退回整图求解共用 */
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /** 暂停或恢复搜索 */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        for (PushAStar solver : activeSolvers) solver.paused = paused;
+    }
+
+    /** 取消搜索 */
+    public void cancel() {
+        exit = true;
+        for (PushAStar solver : activeSolvers) solver.exit = true;
+    }
+
+    /** 最近一次求解在房间之间传递箱子的次数，退回整图求解或无解时为 -1 */
+    public int getTransferNum() {
+        return transferNum;
+    }
+
+    /**
+     * 求解
+     * @return 经 PlayerCore 校验的移动序列，无解返回 null
+     */
+    public List<Direction> solve() {
+        transferNum = -1;
+        playerCore = new PlayerCore();
+        subMapIndex = playerCore.setMap(map.deepCopy());
+        if (subMapIndex < 0) return null;
+
+        level = new PushLevel(map.allMaps.get(subMapIndex));
+        decomposer = new RoomDecomposer(level);
+        rooms = decomposer.getRooms();
+
+        String reason = checkDecomposable();
+        if (reason == null) {
+            List<Direction> moves = solveByRooms();
+            if (moves != null && verify(moves)) return moves;
+            reason = moves == null ? "coordination found no plan" : "combined room plan failed verification";
+            transferNum = -1;
+        }
+        Logger.info("RoomDecompositionSolver", "Fallback to whole level search: " + reason);
+
+        // 退回整图搜索
+        byte[] path = search(new PushAStar(level));
+        if (path == null) return null;
+        List<Direction> moves = toDirections(path);
+        return verify(moves) ? moves : null;
+    }
+
+    /**
+     * 检查关卡能否分房间求解
+     * @return 不能分解的原因，可以分解时返回 null
+     */
+    private String checkDecomposable() {
+        for (int target : level.targets) {
+            if (decomposer.isArticulation(target)) return "target on a door";
+        }
+        if (level.initialBoxes.length != level.targets.length) return "box count differs from target count";
+
+        int pendingNum = 0, corridorNum = 0;
+        for (Room room : rooms) if (!isRoomSolved(room, level.initialBoxes)) pendingNum++;
+        for (int box : level.initialBoxes) if (decomposer.roomOf(box) == -1) corridorNum++;
+        Logger.info("RoomDecompositionSolver", String.format("Found %d rooms, %d need solving, %d boxes in corridors", rooms.size(), pendingNum, corridorNum));
+
+        if (pendingNum < 2 && corridorNum == 0) return "only one room needs solving";
+        return null;
+    }
+
+    /** 房间内箱子数与目标点数一致且全部在目标点上 */
+    private boolean isRoomSolved(Room room, int[] boxes) {
+        int boxNum = 0;
+        for (int box : boxes) {
+            if (decomposer.roomOf(box) != room.id) continue;
+            if (!level.isTarget(box)) return false;
+            boxNum++;
+        }
+        return boxNum == room.targets.length;
+    }
+
+    /**
+     * 协调搜索：以传递次数做迭代加深
+     * @return 完整移动序列，无法协调返回 null
+     */
+    private List<Direction> solveByRooms() {
+        pushPlanner = new BoxPushPlanner();
+        walkField = new WalkDistanceField();
+        reach = new ReachabilityMap(level);
+        occupied = new boolean[level.cellNum];
+        roomPlans = new HashMap<>();
+        failedStates = new HashSet<>();
+        plan.clear();
+        coordinationNodes = 0;
+        buildPassages();
+        executor = Executors.newFixedThreadPool(Math.max(1, Math.min(rooms.size(), Runtime.getRuntime().availableProcessors())));
+
+        try {
+            int[] boxes = currentBoxes();
+            for (int limit = imbalance(boxes, roomCounts(boxes)); limit <= MAX_TRANSFERS && !exit; limit++) {
+                cutoff = false;
+                if (transfer(0, limit, new HashMap<>())) return new ArrayList<>(plan);
+                // 没有分支被剪掉说明更深的迭代也不会有新结果
+                if (!cutoff || coordinationNodes > COORDINATION_NODE_LIMIT) break;
+            }
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            Logger.error("RoomDecompositionSolver", "Room search failed: " + e.getMessage());
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 传递阶段
+     * @param depth 已传递的箱子数
+     * @param limit 本轮最多传递的箱子数
+     * @param visited 本轮访问过的状态 -> 最小传递数
+     * @return 是否找到完整方案，找到时 plan 即为完整移动序列
+     */
+    private boolean transfer(int depth, int limit, Map<PackedState.Key, Integer> visited) throws InterruptedException, ExecutionException {
+        if (exit || ++coordinationNodes > COORDINATION_NODE_LIMIT) return false;
+
+        int[] boxes = currentBoxes();
+        int[] counts = roomCounts(boxes);
+        int h = imbalance(boxes, counts);
+        if (h == 0) {
+            if (!solveRooms()) return false;
+            transferNum = depth;
+            return true;
+        }
+        if (depth + h > limit) {
+            cutoff = true;
+            return false;
+        }
+
+        PackedState.Key key = stateKey(boxes);
+        Integer visitedDepth = visited.get(key);
+        if (visitedDepth != null && visitedDepth <= depth) return false;
+        visited.put(key, depth);
+
+        int[] distance = deficitDistance(counts);
+        for (int box : boxes) {
+            // 平衡房间的箱子也可以顺着房间图推向缺箱房间，为后面的箱子让出走廊
+            int from = decomposer.roomOf(box);
+            List<Passage> candidates = from == -1 ? findPassages(box, -1) : passages.get(from);
+
+            for (Passage passage : candidates) {
+                // 只朝缺箱房间推进，避免在房间之间来回搬运
+                if (distance[passage.to] == PushLevel.UNREACHABLE) continue;
+                if (from != -1 && distance[passage.to] >= distance[from]) continue;
+
+                for (int landing : passage.landings) {
+                    if (Arrays.binarySearch(boxes, landing) >= 0) continue;
+                    Direction[] moves = pushPlanner.plan(playerCore, level.x(box), level.y(box), level.x(landing), level.y(landing));
+                    if (moves == null) continue;
+
+                    int mark = plan.size();
+                    if (apply(moves)) {
+                        if (Logger.screenLevel(LogLevel.DEBUG)) Logger.debug("RoomDecompositionSolver", String.format(
+                            "Transfer box (%d, %d) from room #%d to room #%d via door (%d, %d)",
+                            level.x(box), level.y(box), from, passage.to, level.x(passage.door), level.y(passage.door)
+                        ));
+                        if (transfer(depth + 1, limit, visited)) return true;
+                    }
+                    rollback(mark);
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 房间阶段：所有房间已经平衡，搜索房间的处理顺序与入口
+     * @return 是否完成全部房间
+     */
+    private boolean solveRooms() throws InterruptedException, ExecutionException {
+        if (playerCore.isGameWin()) return true;
+        if (exit) return false;
+
+        int[] boxes = currentBoxes();
+        PackedState.Key key = stateKey(boxes);
+        if (failedStates.contains(key)) return false;
+
+        // 当前可以开始处理的 (房间, 入口)，子问题全部提交后并行求解
+        walkField.update(playerCore);
+        int player = playerCell();
+        List<Room> optionRooms = new ArrayList<>();
+        List<Integer> optionEntries = new ArrayList<>();
+        List<Future<byte[]>> optionPlans = new ArrayList<>();
+        for (Room room : rooms) {
+            if (isRoomSolved(room, boxes)) continue;
+            for (int entry : entriesOf(room, player)) {
+                if (!walkField.isReachable(level.x(entry), level.y(entry))) continue;
+                optionRooms.add(room);
+                optionEntries.add(entry);
+                optionPlans.add(roomPlan(room, entry, boxes));
+            }
+        }
+
+        for (int i = 0; i < optionPlans.size() && !exit; i++) {
+            byte[] roomPath = optionPlans.get(i).get();
+            if (roomPath == NO_PLAN) continue;
+
+            // 回溯后局面不变，距离场直接复用缓存
+            int entry = optionEntries.get(i);
+            walkField.update(playerCore);
+            Direction[] walk = walkField.pathTo(level.x(entry), level.y(entry));
+
+            int mark = plan.size();
+            if (walk != null && apply(walk) && apply(toDirections(roomPath).toArray(new Direction[0]))) {
+                if (Logger.screenLevel(LogLevel.DEBUG)) Logger.debug("RoomDecompositionSolver", String.format(
+                    "Solve room #%d from (%d, %d) in %d moves", optionRooms.get(i).id, level.x(entry), level.y(entry), roomPath.length
+                ));
+                if (solveRooms()) return true;
+            }
+            rollback(mark);
+        }
+
+        failedStates.add(key);
+        return false;
+    }
+
+    /** 房间的候选入口：所有门，玩家在房间内时再加上玩家位置 */
+    private int[] entriesOf(Room room, int player) {
+        if (decomposer.roomOf(player) != room.id) return room.doors;
+        int[] entries = Arrays.copyOf(room.doors, room.doors.length + 1);
+        entries[room.doors.length] = player;
+        return entries;
+    }
+
+    /** 获得房间子问题的解，尚未求解时提交到线程池 */
+    private Future<byte[]> roomPlan(Room room, int entry, int[] boxes) {
+        int[] roomBoxes = Arrays.stream(boxes).filter(box -> decomposer.roomOf(box) == room.id).toArray();
+        String key = room.id + ":" + entry + ":" + Arrays.toString(roomBoxes);
+
+        return roomPlans.computeIfAbsent(key, k -> {
+            PushAStar roomSolver = new PushAStar(new PushLevel(buildRoomSubMap(room, roomBoxes, entry)));
+            return executor.submit(() -> {
+                byte[] path = search(roomSolver);
+                if (path == null) Logger.debug("RoomDecompositionSolver", String.format("Room #%d has no independent solution from (%d, %d)", room.id, level.x(entry), level.y(entry)));
+                return path == null ? NO_PLAN : path;
+            });
+        });
+    }
+
+    /**
+     * 在节点上限内运行一次 PushAStar，运行期间登记到 activeSolvers 以便接收暂停与取消
+     * @return 推箱路径，无解、超出上限或已取消时返回 null
+     */
+    private byte[] search(PushAStar solver) {
+        solver.setNodeLimit(nodeLimit);
+        activeSolvers.add(solver);
+        try {
+            // 登记之后再读取标志，避免错过登记前的暂停或取消
+            solver.paused = paused;
+            if (exit) return null;
+            return solver.solve();
+        } finally {
+            activeSolvers.remove(solver);
+        }
+    }
+
+    /** 构造只包含房间与其门的子地图，其它格子一律视为墙 */
+    private SubMapData buildRoomSubMap(Room room, int[] roomBoxes, int entry) {
+        SubMapData roomMap = new SubMapData(level.height, level.width);
+        boolean[] inside = new boolean[level.cellNum];
+        for (int cell : room.cells) inside[cell] = true;
+        for (int cell : room.doors) inside[cell] = true;
+
+        for (int cell = 0; cell < level.cellNum; cell++) {
+            int x = level.x(cell), y = level.y(cell);
+            roomMap.setObject(x, y, inside[cell] ? ObjectType.Air : ObjectType.Wall);
+        }
+        for (int box : roomBoxes) roomMap.setObject(level.x(box), level.y(box), ObjectType.Box);
+        for (int target : room.targets) roomMap.setTarget(level.x(target), level.y(target), ObjectType.BoxTarget);
+        roomMap.setObject(level.x(entry), level.y(entry), ObjectType.Player);
+        return roomMap;
+    }
+
+    /** 预先计算每个房间经各个门通往的相邻房间 */
+    private void buildPassages() {
+        passages = new ArrayList<>();
+        for (Room room : rooms) {
+            List<Passage> roomPassages = new ArrayList<>();
+            for (int door : room.doors) roomPassages.addAll(findPassages(door, room.id));
+            passages.add(roomPassages);
+        }
+    }
+
+    /**
+     * 从走廊上的一个格子出发，沿割点组成的走廊找到可以进入的其它房间
+     * @param start 起点，门或走廊上的箱子
+     * @param from 出发的房间，从走廊出发时为 -1
+     * @return 通道，每个可以进入的房间一个
+     */
+    private List<Passage> findPassages(int start, int from) {
+        Map<Integer, Set<Integer>> landings = new TreeMap<>(); // 房间 -> 落点
+        Set<Integer> visited = new HashSet<>();
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        visited.add(start);
+        queue.add(start);
+
+        while (!queue.isEmpty()) {
+            int cell = queue.poll();
+            for (int direction = 0; direction < PushLevel.DIRECTION_NUM; direction++) {
+                int next = level.neighbor(cell, direction);
+                if (next == -1) continue;
+                if (decomposer.isArticulation(next)) {
+                    if (visited.add(next)) queue.add(next);
+                    continue;
+                }
+                int room = decomposer.roomOf(next);
+                if (room == -1 || room == from || level.isDeadCell(next)) continue;
+                landings.computeIfAbsent(room, k -> new TreeSet<>()).add(next);
+            }
+        }
+
+        List<Passage> result = new ArrayList<>();
+        for (Map.Entry<Integer, Set<Integer>> entry : landings.entrySet()) {
+            result.add(new Passage(from, entry.getKey(), start, entry.getValue().stream().mapToInt(Integer::intValue).toArray()));
+        }
+        return result;
+    }
+
+    /** 各房间当前的箱子数 */
+    private int[] roomCounts(int[] boxes) {
+        int[] counts = new int[rooms.size()];
+        for (int box : boxes) {
+            int room = decomposer.roomOf(box);
+            if (room != -1) counts[room]++;
+        }
+        return counts;
+    }
+
+    /** 传递阶段的启发值：多余箱子数与走廊上的箱子数之和，每次传递至多减少 1 */
+    private int imbalance(int[] boxes, int[] counts) {
+        int surplus = 0, inRooms = 0;
+        for (Room room : rooms) {
+            surplus += Math.max(0, counts[room.id] - room.targets.length);
+            inRooms += counts[room.id];
+        }
+        return surplus + boxes.length - inRooms;
+    }
+
+    /** 房间图上每个房间到最近缺箱房间的通道数 */
+    private int[] deficitDistance(int[] counts) {
+        int[] distance = new int[rooms.size()];
+        Arrays.fill(distance, PushLevel.UNREACHABLE);
+        for (Room room : rooms) if (counts[room.id] < room.targets.length) distance[room.id] = 0;
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (List<Passage> roomPassages : passages) {
+                for (Passage passage : roomPassages) {
+                    if (distance[passage.to] == PushLevel.UNREACHABLE || distance[passage.to] + 1 >= distance[passage.from]) continue;
+                    distance[passage.from] = distance[passage.to] + 1;
+                    changed = true;
+                }
+            }
+        }
+        return distance;
+    }
+
+    /** 当前箱子位置，升序 */
+    private int[] currentBoxes() {
+        int[] boxes = playerCore.getBoxCells(subMapIndex);
+        Arrays.sort(boxes);
+        return boxes;
+    }
+
+    private int playerCell() {
+        return playerCore.getPlayerY() * level.width + playerCore.getPlayerX();
+    }
+
+    /** 状态键：箱子位置与玩家可达区域的代表格子 */
+    private PackedState.Key stateKey(int[] boxes) {
+        for (int box : boxes) occupied[box] = true;
+        int normalized = reach.compute(playerCell(), occupied);
+        for (int box : boxes) occupied[box] = false;
+        return new PackedState.Key(PackedState.pack(normalized, boxes));
+    }
+
+    /**
+     * 在逻辑核心上执行一段移动并记入 plan
+     * @return 是否全部执行成功，失败时已执行的部分仍留在 plan 中，由调用方回滚
+     */
+    private boolean apply(Direction[] moves) {
+        for (Direction direction : moves) {
+            if (!playerCore.tryMove(subMapIndex, direction).moved) return false;
+            plan.add(direction);
+        }
+        return true;
+    }
+
+    /** 撤销移动直到 plan 回到 mark 长度 */
+    private void rollback(int mark) {
+        while (plan.size() > mark) {
+            playerCore.undoMove();
+            plan.remove(plan.size() - 1);
+        }
+    }
+
+    private List<Direction> toDirections(byte[] path) {
+        List<Direction> moves = new ArrayList<>(path.length);
+        for (byte direction : path) moves.add(PushLevel.DIRECTIONS[direction]);
+        return moves;
+    }
+
+    /** 通过逻辑核心重放校验 */
+    private boolean verify(List<Direction> moves) {
+        PlayerCore verifyCore = new PlayerCore();
+        verifyCore.setMap(map.deepCopy());
+        for (Direction direction : moves) {
+            if (!verifyCore.move(subMapIndex, direction)) return false;
+        }
+        return verifyCore.isGameWin();
+    }
+}
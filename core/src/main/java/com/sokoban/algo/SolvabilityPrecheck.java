@@ -0,0 +1,156 @@
+package com.sokoban.algo;
+
+import java.util.Arrays;
+
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 搜索前的静态无解检测
+ * <br><br>
+ * 在启动完整搜索前，用若干线性时间的检查快速排除明显无解的局面：
+ * 箱子少于目标点、可用的箱子不足（位于死格）、目标点无法全部匹配到箱子、玩家被围住无法推动任何箱子
+ * <br><br>
+ * 胜利条件是所有目标点上都有箱子，多出来的箱子是合法的，可以一直留在死格中
+ */
+public class SolvabilityPrecheck {
+
+    /** 检测结果 */
+    public static class Result {
+        public final boolean solvable; // 是否可能有解，true 不代表一定有解
+        public final String reason; // 无解原因
+
+        private Result(boolean solvable, String reason) {
+            this.solvable = solvable;
+            this.reason = reason;
+        }
+
+        static Result possible() {
+            return new Result(true, "");
+        }
+
+        static Result unsolvable(String reason) {
+            return new Result(false, reason);
+        }
+
+        @Override
+        public String toString() {
+            return solvable ? "Possibly solvable" : "Unsolvable: " + reason;
+        }
+    }
+
+    /**
+     * 检查整张地图
+     * <br><br>
+     * 玩家只能在所在子地图中移动，其它子地图必须已经完成，之后检查玩家所在子地图
+     * @param map 地图
+     * @return 检测结果
+     */
+    public static Result check(MapData map) {
+        PlayerCore playerCore = new PlayerCore();
+        int subMapIndex = playerCore.setMap(map);
+        if (subMapIndex < 0) return Result.unsolvable("no player");
+        for (int otherIndex = 0; otherIndex < map.allMaps.size(); otherIndex++) {
+            if (otherIndex != subMapIndex && !playerCore.isSubmapSolved(otherIndex)) return Result.unsolvable(String.format("sub map #%d is unsolved and has no player", otherIndex));
+        }
+        return check(map.allMaps.get(subMapIndex));
+    }
+
+    /**
+     * 检查子地图
+     * @param subMap 子地图
+     * @return 检测结果
+     */
+    public static Result check(SubMapData subMap) {
+        return check(new PushLevel(subMap));
+    }
+
+    /**
+     * 检查已构建的静态关卡，调用方之后还要搜索时可以复用同一个 PushLevel
+     * @param level 静态关卡
+     * @return 检测结果
+     */
+    public static Result check(PushLevel level) {
+        if (level.initialPlayer < 0) return Result.unsolvable("no player");
+
+        // 数量检查
+        int boxNum = level.initialBoxes.length, targetNum = level.targets.length;
+        if (boxNum < targetNum) return Result.unsolvable(String.format("%d boxes but %d targets", boxNum, targetNum));
+        if (isSolved(level)) return Result.possible();
+
+        // 死格检查，死格中的箱子只能作为多余的箱子
+        int deadBox = -1, liveNum = 0;
+        for (int box : level.initialBoxes) {
+            if (!level.isDeadCell(box)) liveNum++;
+            else if (deadBox == -1) deadBox = box;
+        }
+        if (liveNum < targetNum) return Result.unsolvable(String.format("box at (%d, %d) can never reach a target", level.x(deadBox), level.y(deadBox)));
+
+        // 箱子与目标点的二分图匹配，每个目标点都需要匹配到箱子
+        int matched = maximumMatching(level);
+        if (matched < targetNum) return Result.unsolvable(String.format("only %d of %d targets can be matched to boxes", matched, targetNum));
+
+        // 玩家是否至少能推动一个箱子
+        if (!canPushAnyBox(level)) return Result.unsolvable("player is enclosed and can't push any box");
+
+        return Result.possible();
+    }
+
+    /** 所有目标点上都有箱子 */
+    private static boolean isSolved(PushLevel level) {
+        for (int target : level.targets) if (!hasBox(level, target)) return false;
+        return true;
+    }
+
+    /** 格子上是否有初始箱子，初始箱子升序排列，不需要按地图大小分配占用数组 */
+    private static boolean hasBox(PushLevel level, int cell) {
+        return Arrays.binarySearch(level.initialBoxes, cell) >= 0;
+    }
+
+    /**
+     * 箱子到目标点的最大匹配（增广路），边表示不考虑其它箱子时箱子能被推到该目标点
+     * @return 匹配数
+     */
+    private static int maximumMatching(PushLevel level) {
+        int boxNum = level.initialBoxes.length;
+        int[] targetMatch = new int[level.targets.length];
+        Arrays.fill(targetMatch, -1);
+        boolean[] visited = new boolean[level.targets.length];
+
+        int matched = 0;
+        for (int boxIndex = 0; boxIndex < boxNum; boxIndex++) {
+            Arrays.fill(visited, false);
+            if (augment(level, boxIndex, targetMatch, visited)) matched++;
+        }
+        return matched;
+    }
+
+    private static boolean augment(PushLevel level, int boxIndex, int[] targetMatch, boolean[] visited) {
+        int box = level.initialBoxes[boxIndex];
+        for (int targetIndex = 0; targetIndex < level.targets.length; targetIndex++) {
+            if (visited[targetIndex] || level.targetDistance(targetIndex, box) == PushLevel.UNREACHABLE) continue;
+            visited[targetIndex] = true;
+            if (targetMatch[targetIndex] == -1 || augment(level, targetMatch[targetIndex], targetMatch, visited)) {
+                targetMatch[targetIndex] = boxIndex;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** 玩家可达区域内是否存在可以推动的箱子 */
+    private static boolean canPushAnyBox(PushLevel level) {
+        ReachabilityMap reach = new ReachabilityMap(level);
+        reach.compute(level.initialPlayer, level.initialBoxes);
+
+        for (int box : level.initialBoxes) {
+            for (int direction = 0; direction < PushLevel.DIRECTION_NUM; direction++) {
+                int playerSide = level.neighbor(box, PushLevel.opposite(direction));
+                int destination = level.neighbor(box, direction);
+                if (playerSide != -1 && destination != -1 && reach.isReachable(playerSide) && !hasBox(level, destination)) return true;
+            }
+        }
+        return false;
+    }
+}
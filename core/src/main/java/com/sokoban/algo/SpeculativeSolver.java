@@ -0,0 +1,137 @@
+package com.sokoban.algo;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.sokoban.core.game.Logger;
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 后台预求解
+ * <br><br>
+ * 关卡载入后以最低优先级在守护线程中求解初始局面，结果写入 {@link HintCache}，
+ * 使第一次请求提示时可以立即给出结果。动画播放期间暂停搜索，避免与渲染线程争用 CPU。
+ * 由多个房间组成的关卡交给 {@link RoomDecompositionSolver} 分房间求解，其余关卡直接整图搜索
+ */
+public class SpeculativeSolver implements Runnable {
+    private static final int NODE_LIMIT = 1_000_000; // 预求解最多展开节点数，超出则放弃
+
+    private final MapData map;
+    private final int subMapIndex;
+    private volatile PushAStar solver;
+    private volatile RoomDecompositionSolver roomSolver;
+    private volatile boolean paused = false;
+    public volatile boolean exit = false;
+
+    /**
+     * @param map 地图，调用方需保证之后不再修改
+     * @param subMapIndex 玩家所在子地图
+     */
+    public SpeculativeSolver(MapData map, int subMapIndex) {
+        this.map = map;
+        this.subMapIndex = subMapIndex;
+    }
+
+    /**
+     * 启动后台预求解线程
+     * @param map 地图，内部会复制一份
+     * @param subMapIndex 玩家所在子地图
+     * @return 预求解器
+     */
+    public static SpeculativeSolver start(MapData map, int subMapIndex) {
+        SpeculativeSolver speculativeSolver = new SpeculativeSolver(map.deepCopy(), subMapIndex);
+        Thread thread = new Thread(speculativeSolver, "SpeculativeSolver");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+        return speculativeSolver;
+    }
+
+    /** 暂停或恢复搜索 */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+        PushAStar current = solver;
+        if (current != null) current.paused = paused;
+        RoomDecompositionSolver currentRooms = roomSolver;
+        if (currentRooms != null) currentRooms.setPaused(paused);
+    }
+
+    /** 取消搜索 */
+    public void cancel() {
+        exit = true;
+        PushAStar current = solver;
+        if (current != null) current.exit = true;
+        RoomDecompositionSolver currentRooms = roomSolver;
+        if (currentRooms != null) currentRooms.cancel();
+    }
+
+    @Override
+    public void run() {
+        SubMapData subMap = map.allMaps.get(subMapIndex);
+        HintCache.Key key = HintCache.Key.of(subMapIndex, subMap);
+        if (HintCache.contains(key)) return;
+        PushLevel level = new PushLevel(subMap);
+        if (!SolvabilityPrecheck.check(level).solvable) return;
+
+        long startTime = System.currentTimeMillis();
+        // 房间分解按整张网格建表，分块存储的大地图不走这条路径
+        List<Direction> moves = !subMap.isChunked() && new RoomDecomposer(level).getRooms().size() > 1
+            ? solveByRooms()
+            : solveWholeLevel(level);
+        if (moves == null || exit) {
+            Logger.info("SpeculativeSolver", "No speculative result");
+            return;
+        }
+
+        if (!verify(moves)) {
+            Logger.warning("SpeculativeSolver", "Speculative result failed verification");
+            return;
+        }
+
+        HintCache.put(key, moves);
+        Logger.info("SpeculativeSolver", String.format("Cached %d moves in %d ms", moves.size(), System.currentTimeMillis() - startTime));
+    }
+
+    /** 整图推箱搜索 */
+    private List<Direction> solveWholeLevel(PushLevel level) {
+        PushAStar current = new PushAStar(level);
+        current.setNodeLimit(NODE_LIMIT);
+        current.paused = paused;
+        solver = current;
+        if (exit) return null;
+
+        byte[] path = current.solve();
+        solver = null;
+        if (path == null) return null;
+        List<Direction> moves = new ArrayList<>(path.length);
+        for (byte direction : path) moves.add(PushLevel.DIRECTIONS[direction]);
+        return moves;
+    }
+
+    /** 分房间求解，协调失败时由房间求解器自行退回整图搜索 */
+    private List<Direction> solveByRooms() {
+        RoomDecompositionSolver current = new RoomDecompositionSolver(map);
+        current.setNodeLimit(NODE_LIMIT);
+        current.setPaused(paused);
+        roomSolver = current;
+        if (exit) return null;
+
+        List<Direction> moves = current.solve();
+        roomSolver = null;
+        if (moves != null) Logger.info("SpeculativeSolver", String.format("Solved by rooms with %d transfers", current.getTransferNum()));
+        return moves;
+    }
+
+    /** 通过逻辑核心重放校验 */
+    private boolean verify(List<Direction> moves) {
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map.deepCopy());
+        for (Direction direction : moves) {
+            if (!playerCore.move(subMapIndex, direction)) return false;
+        }
+        return playerCore.isGameWin();
+    }
+}
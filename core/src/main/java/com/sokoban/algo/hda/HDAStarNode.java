@@ -0,0 +1,50 @@
+package com.sokoban.algo.hda;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * HDA* 搜索节点
+ * <br><br>
+ * 节点保存实际玩家位置（而不是规范化位置）与生成它的推动方向，不携带完整路径。
+ * 推动后玩家站在被推箱子原来的格子上，因此 (player, move) 足以还原父状态，
+ * 找到解后由各状态的所属工作者沿 closed 表逐级回溯推动序列，最后再补上推动之间的行走
+ */
+public class HDAStarNode {
+    public static final byte NO_MOVE = -1; // 初始节点没有生成它的推动
+
+    public int g; // 已推动次数
+    public int f; // g + 启发值
+    public int player; // 实际玩家位置
+    public int[] boxes; // 升序箱子位置
+    public byte move; // 生成该节点的推动方向索引
+
+    public HDAStarNode(int g, int f, int player, int[] boxes, byte move) {
+        this.g = g;
+        this.f = f;
+        this.player = player;
+        this.boxes = boxes;
+        this.move = move;
+    }
+
+    /** 写入数据流，箱子数量由接收方的关卡确定 */
+    public void write(DataOutputStream out) throws IOException {
+        out.writeInt(g);
+        out.writeInt(f);
+        out.writeInt(player);
+        for (int box : boxes) out.writeInt(box);
+        out.writeByte(move);
+    }
+
+    /** 从数据流读取 */
+    public static HDAStarNode read(DataInputStream in, int boxNum) throws IOException {
+        int g = in.readInt();
+        int f = in.readInt();
+        int player = in.readInt();
+        int[] boxes = new int[boxNum];
+        for (int i = 0; i < boxNum; i++) boxes[i] = in.readInt();
+        byte move = in.readByte();
+        return new HDAStarNode(g, f, player, boxes, move);
+    }
+}
@@ -0,0 +1,41 @@
+package com.sokoban.algo.hda;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * HDA* 进程间通信协议
+ * <br><br>
+ * 所有消息都以一个 int 类型码开头，后续字段由类型决定
+ */
+public class HDAStarProtocol {
+    // 工作者 -> 协调者
+    public static final int HELLO = 1; // int 监听端口
+    public static final int STATUS = 2; // boolean 是否空闲, long 已发送节点数, long 已接收节点数
+    public static final int SOLUTION = 3; // int 长度, byte[] 方向索引
+
+    // 协调者 -> 工作者
+    public static final int CONFIG = 10; // int 工作者数, int 自身索引, (String 主机, int 端口) * 工作者数, 地图 Json
+    public static final int STOP = 11;
+
+    // 工作者 -> 工作者
+    public static final int PEER_HELLO = 20; // int 发送方索引
+    public static final int BATCH = 21; // int 节点数, HDAStarNode * 节点数
+    public static final int TRACE = 22; // int 规范化玩家位置, int 箱子 * 箱子数, int 推动数, (int 推动后玩家位置, byte 方向) * 推动数
+
+    /** 写入长字符串，writeUTF 限制为 64KB，地图 Json 可能超出 */
+    public static void writeLongString(DataOutputStream out, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /** 读取长字符串 */
+    public static String readLongString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,306 @@
+package com.sokoban.algo.hda;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sokoban.algo.PushLevel;
+import com.sokoban.core.game.Logger;
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * 哈希分布式 A*（HDA*）协调者
+ * <br><br>
+ * 协调者本身不参与搜索，只负责分发关卡、收集工作者状态、检测终止并校验解。
+ * 默认在本机回环地址上启动 N 个工作者进程，也可以关闭本地启动，
+ * 在其它机器上手动运行 HDAStarWorker 连接到协调者端口
+ */
+public class HDAStarSolver {
+    private static final int ACCEPT_TIMEOUT_MILLIS = 30_000;
+    private static final long TERMINATION_CHECK_MILLIS = 50;
+
+    private final MapData map;
+    private final int workerNum;
+    private boolean spawnLocalWorkers = true;
+    private int port = 0; // 0 表示自动分配
+    private volatile int listeningPort = -1; // 求解期间实际监听的端口
+    private long timeoutMillis = 0; // 0 表示不限时
+    public volatile boolean exit = false;
+
+    /** 工作者上报的最新状态 */
+    private static class WorkerStatus {
+        boolean idle = false;
+        long sent = 0, received = 0;
+    }
+
+    /** 工作者发给协调者的事件 */
+    private static class WorkerEvent {
+        final int worker, type;
+        final boolean idle;
+        final long sent, received;
+        final byte[] path;
+
+        WorkerEvent(int worker, int type, boolean idle, long sent, long received, byte[] path) {
+            this.worker = worker;
+            this.type = type;
+            this.idle = idle;
+            this.sent = sent;
+            this.received = received;
+            this.path = path;
+        }
+    }
+
+    /**
+     * HDA* 求解器构造
+     * @param map 地图
+     * @param workerNum 工作者进程数
+     */
+    public HDAStarSolver(MapData map, int workerNum) {
+        this.map = map;
+        this.workerNum = workerNum;
+    }
+
+    /** 设置是否在本机启动工作者进程，关闭后需要手动启动工作者 */
+    public void setSpawnLocalWorkers(boolean spawnLocalWorkers) {
+        this.spawnLocalWorkers = spawnLocalWorkers;
+    }
+
+    /** 设置协调者监听端口 */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /** 求解期间实际监听的端口，未在监听时返回 -1，用于端口自动分配时手动启动工作者 */
+    public int getListeningPort() {
+        return listeningPort;
+    }
+
+    /** 设置求解时限，超时返回 null */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 进行分布式求解
+     * @return 经 PlayerCore 校验过的移动序列，无解、超时或取消返回 null
+     */
+    public List<Direction> solve() {
+        List<Process> processes = new ArrayList<>();
+        List<Socket> sockets = new ArrayList<>();
+        List<DataOutputStream> outs = new ArrayList<>();
+
+        // 本地模式只监听回环地址
+        try (ServerSocket server = spawnLocalWorkers ? new ServerSocket(port, workerNum, InetAddress.getLoopbackAddress()) : new ServerSocket(port, workerNum)) {
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            listeningPort = server.getLocalPort();
+            Logger.info("HDAStarSolver", String.format("Coordinator listening on port %d, waiting for %d workers", server.getLocalPort(), workerNum));
+
+            if (spawnLocalWorkers) {
+                for (int i = 0; i < workerNum; i++) processes.add(spawnWorker(server.getLocalPort()));
+            }
+
+            // 接收所有工作者，读取其监听端口
+            String[] hosts = new String[workerNum];
+            int[] ports = new int[workerNum];
+            List<DataInputStream> ins = new ArrayList<>();
+            for (int i = 0; i < workerNum; i++) {
+                Socket socket = server.accept();
+                socket.setTcpNoDelay(true);
+                sockets.add(socket);
+
+                DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+                if (in.readInt() != HDAStarProtocol.HELLO) throw new IOException("Expected HELLO message");
+                hosts[i] = socket.getInetAddress().getHostAddress();
+                ports[i] = in.readInt();
+                ins.add(in);
+                outs.add(new DataOutputStream(new BufferedOutputStream(socket.getOutputStream())));
+            }
+
+            // 下发配置
+            String mapJson = MapFileParser.serializeMapData(map);
+            for (int i = 0; i < workerNum; i++) {
+                DataOutputStream out = outs.get(i);
+                out.writeInt(HDAStarProtocol.CONFIG);
+                out.writeInt(workerNum);
+                out.writeInt(i);
+                for (int j = 0; j < workerNum; j++) {
+                    out.writeUTF(hosts[j]);
+                    out.writeInt(ports[j]);
+                }
+                HDAStarProtocol.writeLongString(out, mapJson);
+                out.flush();
+            }
+
+            // 每个工作者一个读线程，统一汇总到事件队列
+            BlockingQueue<WorkerEvent> events = new LinkedBlockingQueue<>();
+            for (int i = 0; i < workerNum; i++) {
+                final int worker = i;
+                final DataInputStream in = ins.get(i);
+                Thread reader = new Thread(() -> readWorker(worker, in, events), "hda-coordinator-reader");
+                reader.setDaemon(true);
+                reader.start();
+            }
+
+            byte[] path = waitForResult(events);
+            if (path == null) return null;
+
+            List<Direction> moves = new ArrayList<>();
+            for (byte direction : path) moves.add(PushLevel.DIRECTIONS[direction]);
+
+            if (!verify(moves)) {
+                Logger.error("HDAStarSolver", "Solution from workers failed PlayerCore verification");
+                return null;
+            }
+            return moves;
+        } catch (SocketTimeoutException e) {
+            Logger.error("HDAStarSolver", "Timed out waiting for workers");
+            return null;
+        } catch (IOException e) {
+            Logger.error("HDAStarSolver", "Distributed solve failed: " + e.getMessage());
+            return null;
+        } finally {
+            listeningPort = -1;
+            for (DataOutputStream out : outs) {
+                try {
+                    out.writeInt(HDAStarProtocol.STOP);
+                    out.flush();
+                } catch (IOException e) {
+                    // 工作者已退出
+                }
+            }
+            for (Socket socket : sockets) {
+                try {
+                    socket.close();
+                } catch (IOException e) {
+                    // 忽略关闭异常
+                }
+            }
+            for (Process process : processes) {
+                try {
+                    if (!process.waitFor(2, TimeUnit.SECONDS)) process.destroyForcibly();
+                } catch (InterruptedException e) {
+                    process.destroyForcibly();
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+    }
+
+    /** 启动本地工作者进程，与当前进程共享 classpath */
+    private Process spawnWorker(int coordinatorPort) throws IOException {
+        String javaBin = Path.of(System.getProperty("java.home"), "bin", "java").toString();
+        ProcessBuilder builder = new ProcessBuilder(
+            javaBin, "-cp", System.getProperty("java.class.path"),
+            HDAStarWorker.class.getName(), InetAddress.getLoopbackAddress().getHostAddress(), String.valueOf(coordinatorPort)
+        );
+        builder.redirectOutput(ProcessBuilder.Redirect.DISCARD);
+        builder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        return builder.start();
+    }
+
+    /** 读取工作者消息 */
+    private void readWorker(int worker, DataInputStream in, BlockingQueue<WorkerEvent> events) {
+        try {
+            while (true) {
+                int type = in.readInt();
+                if (type == HDAStarProtocol.STATUS) {
+                    boolean idle = in.readBoolean();
+                    long sent = in.readLong();
+                    long received = in.readLong();
+                    events.add(new WorkerEvent(worker, type, idle, sent, received, null));
+                } else if (type == HDAStarProtocol.SOLUTION) {
+                    byte[] path = new byte[in.readInt()];
+                    in.readFully(path);
+                    events.add(new WorkerEvent(worker, type, false, 0, 0, path));
+                }
+            }
+        } catch (IOException e) {
+            // 连接关闭
+        }
+    }
+
+    /**
+     * 等待解或全局终止
+     * <br><br>
+     * 所有工作者都空闲且全局发送数等于接收数，并且连续两次检查结果一致时，认为搜索空间已经耗尽
+     * @return 解路径，无解返回 null
+     */
+    private byte[] waitForResult(BlockingQueue<WorkerEvent> events) throws IOException {
+        WorkerStatus[] statuses = new WorkerStatus[workerNum];
+        for (int i = 0; i < workerNum; i++) statuses[i] = new WorkerStatus();
+
+        long startTime = System.currentTimeMillis();
+        long lastTotal = -1;
+        boolean lastQuiet = false;
+
+        while (!exit) {
+            if (timeoutMillis > 0 && System.currentTimeMillis() - startTime > timeoutMillis) {
+                Logger.warning("HDAStarSolver", "Distributed solve timed out");
+                return null;
+            }
+
+            WorkerEvent event;
+            try {
+                event = events.poll(TERMINATION_CHECK_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+
+            if (event != null) {
+                if (event.type == HDAStarProtocol.SOLUTION) {
+                    Logger.info("HDAStarSolver", String.format("Worker #%d found a solution of %d moves", event.worker, event.path.length));
+                    return event.path;
+                }
+                WorkerStatus status = statuses[event.worker];
+                status.idle = event.idle;
+                status.sent = event.sent;
+                status.received = event.received;
+                if (!events.isEmpty()) continue;
+            }
+
+            // 终止检测
+            boolean allIdle = true;
+            long totalSent = 0, totalReceived = 0;
+            for (WorkerStatus status : statuses) {
+                allIdle &= status.idle;
+                totalSent += status.sent;
+                totalReceived += status.received;
+            }
+            boolean quiet = allIdle && totalSent == totalReceived;
+            if (quiet && lastQuiet && totalSent == lastTotal) {
+                Logger.info("HDAStarSolver", "Search space exhausted, no solution");
+                return null;
+            }
+            lastQuiet = quiet;
+            lastTotal = totalSent;
+        }
+        return null;
+    }
+
+    /** 通过逻辑核心重放校验解 */
+    private boolean verify(List<Direction> moves) {
+        PlayerCore playerCore = new PlayerCore();
+        int subMapIndex = playerCore.setMap(map.deepCopy());
+        if (subMapIndex < 0) return false;
+        for (Direction direction : moves) {
+            if (!playerCore.move(subMapIndex, direction)) return false;
+        }
+        return playerCore.isGameWin();
+    }
+}
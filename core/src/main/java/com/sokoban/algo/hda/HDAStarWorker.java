@@ -0,0 +1,470 @@
+package com.sokoban.algo.hda;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sokoban.algo.PackedState;
+import com.sokoban.algo.PushLevel;
+import com.sokoban.algo.PushSuccessors;
+import com.sokoban.algo.ReachabilityMap;
+import com.sokoban.core.game.Logger;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * HDA* 工作者进程
+ * <br><br>
+ * 每个工作者持有自己的 open / closed 表，只展开哈希分区属于自己的状态，
+ * 其它状态按所属工作者分批通过 socket 发送出去
+ * <br><br>
+ * closed 表记录每个状态的 g 与生成它的推动。找到目标状态后不再展开，
+ * 而是把回溯消息交给父状态的所属工作者，逐级追加推动直到初始状态，
+ * 由初始状态的所属工作者补上行走路径并向协调者报告完整的解
+ * <br><br>
+ * 启动参数：协调者主机 协调者端口
+ */
+public class HDAStarWorker {
+    private static final int BATCH_SIZE = 64; // 单批最多发送的节点数
+    private static final int EXPAND_BEFORE_FLUSH = 256; // 展开多少节点后强制发送一次
+    private static final long IDLE_REPORT_INTERVAL_NANOS = 20_000_000L;
+
+    private final String coordinatorHost;
+    private final int coordinatorPort;
+
+    private int workerNum, index;
+    private PushLevel level;
+    private volatile boolean stopped = false;
+
+    private DataOutputStream coordinatorOut;
+    private DataOutputStream[] peerOut;
+    private List<List<HDAStarNode>> outbox;
+
+    private final ConcurrentLinkedQueue<HDAStarNode> inbox = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Trace> traces = new ConcurrentLinkedQueue<>();
+    private final AtomicLong received = new AtomicLong();
+    private long sent = 0;
+
+    private final PriorityQueue<HDAStarNode> open = new PriorityQueue<>((a, b) -> a.f != b.f ? Integer.compare(a.f, b.f) : Integer.compare(b.g, a.g));
+    private final Map<PackedState.Key, Long> closed = new HashMap<>(); // 状态 -> closedEntry 打包的 (g, 玩家位置, 推动方向)
+    private boolean tracing = false; // 已找到解，只负责回溯
+
+    /** 回溯中的推动序列，从目标状态向初始状态追加 */
+    private static class Trace {
+        int normalized; // 待查找状态的规范化玩家位置
+        int[] boxes; // 待查找状态的箱子
+        int[] players = new int[16]; // 每次推动后的玩家位置
+        byte[] directions = new byte[16]; // 每次推动的方向
+        int length = 0;
+
+        Trace(int normalized, int[] boxes) {
+            this.normalized = normalized;
+            this.boxes = boxes;
+        }
+
+        void add(int player, byte direction) {
+            if (length == players.length) {
+                players = Arrays.copyOf(players, length * 2);
+                directions = Arrays.copyOf(directions, length * 2);
+            }
+            players[length] = player;
+            directions[length] = direction;
+            length++;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(normalized);
+            for (int box : boxes) out.writeInt(box);
+            out.writeInt(length);
+            for (int i = 0; i < length; i++) {
+                out.writeInt(players[i]);
+                out.writeByte(directions[i]);
+            }
+        }
+
+        static Trace read(DataInputStream in, int boxNum) throws IOException {
+            int normalized = in.readInt();
+            int[] boxes = new int[boxNum];
+            for (int i = 0; i < boxNum; i++) boxes[i] = in.readInt();
+            Trace trace = new Trace(normalized, boxes);
+            int length = in.readInt();
+            for (int i = 0; i < length; i++) trace.add(in.readInt(), in.readByte());
+            return trace;
+        }
+    }
+
+    public HDAStarWorker(String coordinatorHost, int coordinatorPort) {
+        this.coordinatorHost = coordinatorHost;
+        this.coordinatorPort = coordinatorPort;
+    }
+
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: HDAStarWorker <coordinator host> <coordinator port>");
+            System.exit(1);
+        }
+
+        Logger.loggerLevel = Logger.LogLevel.WARNING;
+        try {
+            new HDAStarWorker(args[0], Integer.parseInt(args[1])).run();
+        } catch (IOException e) {
+            Logger.error("HDAStarWorker", "Worker terminated: " + e.getMessage());
+        }
+        System.exit(0);
+    }
+
+    /** 连接协调者与其它工作者并开始搜索 */
+    public void run() throws IOException {
+        try (ServerSocket peerServer = new ServerSocket(0);
+             Socket coordinator = new Socket(coordinatorHost, coordinatorPort)) {
+
+            coordinator.setTcpNoDelay(true);
+            coordinatorOut = new DataOutputStream(new BufferedOutputStream(coordinator.getOutputStream()));
+            DataInputStream coordinatorIn = new DataInputStream(new BufferedInputStream(coordinator.getInputStream()));
+
+            // 报告自己的监听端口
+            coordinatorOut.writeInt(HDAStarProtocol.HELLO);
+            coordinatorOut.writeInt(peerServer.getLocalPort());
+            coordinatorOut.flush();
+
+            // 读取配置
+            if (coordinatorIn.readInt() != HDAStarProtocol.CONFIG) throw new IOException("Expected CONFIG message");
+            workerNum = coordinatorIn.readInt();
+            index = coordinatorIn.readInt();
+            String[] hosts = new String[workerNum];
+            int[] ports = new int[workerNum];
+            for (int i = 0; i < workerNum; i++) {
+                hosts[i] = coordinatorIn.readUTF();
+                ports[i] = coordinatorIn.readInt();
+            }
+            MapData map = MapFileParser.parseMapData(HDAStarProtocol.readLongString(coordinatorIn));
+            if (map == null) throw new IOException("Can't parse map");
+
+            int subMapIndex = new PlayerCore().setMap(map);
+            if (subMapIndex < 0) throw new IOException("Can't find player in map");
+            level = new PushLevel(map.allMaps.get(subMapIndex));
+
+            connectPeers(peerServer, hosts, ports);
+
+            // 监听停止消息
+            Thread stopListener = new Thread(() -> {
+                try {
+                    while (coordinatorIn.readInt() != HDAStarProtocol.STOP);
+                } catch (IOException e) {
+                    // 协调者断开同样视为停止
+                }
+                stopped = true;
+            }, "hda-stop-listener");
+            stopListener.setDaemon(true);
+            stopListener.start();
+
+            search();
+        }
+    }
+
+    /** 与所有其它工作者建立双向连接 */
+    private void connectPeers(ServerSocket peerServer, String[] hosts, int[] ports) throws IOException {
+        peerOut = new DataOutputStream[workerNum];
+        outbox = new ArrayList<>(workerNum);
+        for (int i = 0; i < workerNum; i++) outbox.add(new ArrayList<>());
+
+        // 接收其它工作者的发送连接
+        Thread acceptor = new Thread(() -> {
+            try {
+                for (int i = 0; i < workerNum - 1; i++) {
+                    Socket socket = peerServer.accept();
+                    Thread reader = new Thread(() -> readPeer(socket), "hda-peer-reader");
+                    reader.setDaemon(true);
+                    reader.start();
+                }
+            } catch (IOException e) {
+                if (!stopped) Logger.error("HDAStarWorker", "Accept peer failed: " + e.getMessage());
+            }
+        }, "hda-peer-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        // 主动连接其它工作者，对方可能还没开始监听，需要重试
+        for (int i = 0; i < workerNum; i++) {
+            if (i == index) continue;
+            Socket socket = null;
+            for (int retry = 0; socket == null; retry++) {
+                try {
+                    socket = new Socket(InetAddress.getByName(hosts[i]), ports[i]);
+                } catch (IOException e) {
+                    if (retry > 100) throw e;
+                    sleep(50);
+                }
+            }
+            socket.setTcpNoDelay(true);
+            peerOut[i] = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            peerOut[i].writeInt(HDAStarProtocol.PEER_HELLO);
+            peerOut[i].writeInt(index);
+            peerOut[i].flush();
+        }
+    }
+
+    /** 读取某个工作者发来的节点批次与回溯消息 */
+    private void readPeer(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            if (in.readInt() != HDAStarProtocol.PEER_HELLO) return;
+            in.readInt(); // 发送方索引
+
+            while (!stopped) {
+                int type = in.readInt();
+                if (type == HDAStarProtocol.BATCH) {
+                    int count = in.readInt();
+                    for (int i = 0; i < count; i++) {
+                        // 先入队再计数，空闲检测依赖这个顺序
+                        inbox.add(HDAStarNode.read(in, level.initialBoxes.length));
+                        received.incrementAndGet();
+                    }
+                } else if (type == HDAStarProtocol.TRACE) {
+                    traces.add(Trace.read(in, level.initialBoxes.length));
+                }
+            }
+        } catch (IOException e) {
+            // 连接关闭，搜索已结束
+        }
+    }
+
+    /** 主搜索循环 */
+    private void search() throws IOException {
+        boolean[] occupied = new boolean[level.cellNum];
+        ReachabilityMap reach = new ReachabilityMap(level);
+        PushSuccessors successors = new PushSuccessors(level);
+        boolean idle = false;
+        long lastReport = 0;
+        int expandedSinceFlush = 0;
+
+        // 初始状态由其所属工作者放入
+        int[] initialBoxes = level.initialBoxes;
+        if (PackedState.ownerOfBoxes(initialBoxes, workerNum) == index && level.simpleLowerBound(initialBoxes) != PushLevel.UNREACHABLE) {
+            open.add(new HDAStarNode(0, level.simpleLowerBound(initialBoxes), level.initialPlayer, initialBoxes, HDAStarNode.NO_MOVE));
+        }
+
+        while (!stopped) {
+            Trace trace;
+            while ((trace = traces.poll()) != null) followTrace(trace, occupied, reach);
+            if (tracing) {
+                // 不再报告空闲，协调者不会在回溯完成前误判搜索空间耗尽
+                sleep(1);
+                continue;
+            }
+
+            HDAStarNode incoming;
+            while ((incoming = inbox.poll()) != null) open.add(incoming);
+
+            if (open.isEmpty()) {
+                flushAll();
+                expandedSinceFlush = 0;
+
+                // 必须先读接收计数再检查收件箱
+                long receivedSnapshot = received.get();
+                if (inbox.isEmpty() && (!idle || System.nanoTime() - lastReport > IDLE_REPORT_INTERVAL_NANOS)) {
+                    reportStatus(true, receivedSnapshot);
+                    idle = true;
+                    lastReport = System.nanoTime();
+                }
+                sleep(1);
+                continue;
+            }
+
+            if (idle) {
+                reportStatus(false, received.get());
+                idle = false;
+            }
+
+            HDAStarNode node = open.poll();
+            for (int box : node.boxes) occupied[box] = true;
+            int normalized = reach.compute(node.player, occupied);
+
+            PackedState.Key key = new PackedState.Key(PackedState.pack(normalized, node.boxes));
+            Long closedEntry = closed.get(key);
+            if (closedEntry != null && entryG(closedEntry) <= node.g) {
+                for (int box : node.boxes) occupied[box] = false;
+                continue;
+            }
+            closed.put(key, closedEntry(node.g, node.player, node.move));
+
+            if (isGoal(node.boxes)) {
+                for (int box : node.boxes) occupied[box] = false;
+                tracing = true;
+                Logger.info("HDAStarWorker", String.format("Worker #%d reached the goal after %d pushes, tracing back", index, node.g));
+                followTrace(new Trace(normalized, node.boxes), occupied, reach);
+                continue;
+            }
+
+            expand(node, occupied, reach, successors);
+            for (int box : node.boxes) occupied[box] = false;
+
+            if (++expandedSinceFlush >= EXPAND_BEFORE_FLUSH) {
+                flushAll();
+                expandedSinceFlush = 0;
+            }
+        }
+
+    }
+
+    /** 生成所有推动后继，后继只携带生成它的推动方向 */
+    private void expand(HDAStarNode node, boolean[] occupied, ReachabilityMap reach, PushSuccessors successors) throws IOException {
+        successors.reset(node.boxes, occupied, reach);
+        while (successors.next()) {
+            int[] childBoxes = successors.childBoxes;
+            HDAStarNode child = new HDAStarNode(node.g + 1, node.g + 1 + successors.h, successors.box, childBoxes, (byte) successors.direction);
+            int owner = PackedState.ownerOfBoxes(childBoxes, workerNum);
+            if (owner == index) {
+                open.add(child);
+            } else {
+                outbox.get(owner).add(child);
+                if (outbox.get(owner).size() >= BATCH_SIZE) flush(owner);
+            }
+        }
+    }
+
+    /**
+     * 沿本工作者的 closed 表回溯，父状态属于其它工作者时把回溯消息转交出去
+     * @param trace 回溯消息，状态属于本工作者
+     * @param occupied 全部为 false 的占用数组，用完后恢复
+     * @param reach 可达区域缓冲
+     */
+    private void followTrace(Trace trace, boolean[] occupied, ReachabilityMap reach) throws IOException {
+        while (true) {
+            Long entry = closed.get(new PackedState.Key(PackedState.pack(trace.normalized, trace.boxes)));
+            if (entry == null) {
+                Logger.error("HDAStarWorker", "Trace reached a state missing from the closed table");
+                return;
+            }
+
+            byte move = entryMove(entry);
+            if (move == HDAStarNode.NO_MOVE) {
+                reportSolution(rebuildPath(trace));
+                return;
+            }
+
+            // 还原父状态：被推动的箱子回到推动后玩家所在的格子，父状态的玩家在箱子背面
+            int player = entryPlayer(entry);
+            trace.add(player, move);
+            int[] parentBoxes = trace.boxes.clone();
+            parentBoxes[Arrays.binarySearch(parentBoxes, level.neighbor(player, move))] = player;
+            Arrays.sort(parentBoxes);
+
+            for (int box : parentBoxes) occupied[box] = true;
+            trace.normalized = reach.compute(level.neighbor(player, PushLevel.opposite(move)), occupied);
+            for (int box : parentBoxes) occupied[box] = false;
+            trace.boxes = parentBoxes;
+
+            int owner = PackedState.ownerOfBoxes(parentBoxes, workerNum);
+            if (owner != index) {
+                DataOutputStream out = peerOut[owner];
+                out.writeInt(HDAStarProtocol.TRACE);
+                trace.write(out);
+                out.flush();
+                return;
+            }
+        }
+    }
+
+    /** 从初始状态按推动序列重放，补上推动之间的行走，得到完整的移动序列 */
+    private byte[] rebuildPath(Trace trace) {
+        boolean[] occupied = new boolean[level.cellNum];
+        for (int box : level.initialBoxes) occupied[box] = true;
+        ReachabilityMap reach = new ReachabilityMap(level);
+        int player = level.initialPlayer;
+
+        byte[] path = new byte[trace.length * 4];
+        int length = 0;
+        for (int i = trace.length - 1; i >= 0; i--) {
+            int box = trace.players[i];
+            byte direction = trace.directions[i];
+            reach.compute(player, occupied);
+            byte[] walk = reach.pathTo(level.neighbor(box, PushLevel.opposite(direction)));
+
+            if (length + walk.length + 1 > path.length) path = Arrays.copyOf(path, Math.max(path.length * 2, length + walk.length + 1));
+            System.arraycopy(walk, 0, path, length, walk.length);
+            length += walk.length;
+            path[length++] = direction;
+
+            occupied[box] = false;
+            occupied[level.neighbor(box, direction)] = true;
+            player = box;
+        }
+        return Arrays.copyOf(path, length);
+    }
+
+    /** 打包 closed 表条目：g 占高 24 位，玩家位置占中间 32 位，推动方向占低 8 位 */
+    private static long closedEntry(int g, int player, byte move) {
+        return (long) g << 40 | (player & 0xFFFFFFFFL) << 8 | (move & 0xFF);
+    }
+
+    private static int entryG(long entry) {
+        return (int) (entry >>> 40);
+    }
+
+    private static int entryPlayer(long entry) {
+        return (int) (entry >>> 8);
+    }
+
+    private static byte entryMove(long entry) {
+        return (byte) entry;
+    }
+
+    private boolean isGoal(int[] boxes) {
+        for (int box : boxes) if (!level.isTarget(box)) return false;
+        return true;
+    }
+
+    /** 发送所有待发批次 */
+    private void flushAll() throws IOException {
+        for (int i = 0; i < workerNum; i++) if (i != index && !outbox.get(i).isEmpty()) flush(i);
+    }
+
+    /** 发送指定工作者的待发批次 */
+    private void flush(int owner) throws IOException {
+        List<HDAStarNode> batch = outbox.get(owner);
+        DataOutputStream out = peerOut[owner];
+        out.writeInt(HDAStarProtocol.BATCH);
+        out.writeInt(batch.size());
+        for (HDAStarNode node : batch) node.write(out);
+        out.flush();
+        sent += batch.size();
+        batch.clear();
+    }
+
+    private void reportStatus(boolean idle, long receivedSnapshot) throws IOException {
+        coordinatorOut.writeInt(HDAStarProtocol.STATUS);
+        coordinatorOut.writeBoolean(idle);
+        coordinatorOut.writeLong(sent);
+        coordinatorOut.writeLong(receivedSnapshot);
+        coordinatorOut.flush();
+    }
+
+    private void reportSolution(byte[] path) throws IOException {
+        coordinatorOut.writeInt(HDAStarProtocol.SOLUTION);
+        coordinatorOut.writeInt(path.length);
+        coordinatorOut.write(path);
+        coordinatorOut.flush();
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
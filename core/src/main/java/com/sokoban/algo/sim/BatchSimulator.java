@@ -0,0 +1,234 @@
+package com.sokoban.algo.sim;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sokoban.algo.PushLevel;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 批量推箱子模拟器
+ * <br><br>
+ * 同一关卡的 N 个棋盘以数组结构存储：玩家格子为 int[]，箱子占用为每个棋盘一段 long 位图。
+ * 一次 step 调用对所有棋盘各执行一个动作，按棋盘区间分给多个线程并行处理，
+ * 返回每个棋盘的奖励与结束标记。推动规则与 PlayerCore 一致，箱子可以连成一串一起推动
+ * <br><br>
+ * 动作使用 PushLevel 的方向索引 0..3（Up, Down, Left, Right），其它值表示原地不动。
+ * 只处理箱子目标点，玩家目标点不参与胜利判定
+ */
+public class BatchSimulator implements AutoCloseable {
+    public static final float STEP_REWARD = -0.1f; // 每一步的代价
+    public static final float BOX_ON_TARGET_REWARD = 1f; // 箱子推上目标点
+    public static final float BOX_OFF_TARGET_REWARD = -1f; // 箱子推离目标点
+    public static final float SOLVED_REWARD = 10f; // 完成关卡
+    public static final float DEADLOCK_REWARD = -10f; // 箱子进入死格
+    private static final int MIN_BOARDS_PER_TASK = 1024; // 每个线程至少处理的棋盘数
+
+    public final PushLevel level;
+    public final int boardNum;
+    public final int words; // 每个棋盘位图的 long 数
+    public final int maxSteps; // 单局最多步数，达到后视为结束，0 表示不限
+
+    public final int[] playerCells; // 每个棋盘的玩家格子
+    public final long[] boxBits; // 箱子位图，棋盘 b 占 [b * words, (b + 1) * words)
+    public final int[] boxesOnTargets; // 每个棋盘在目标点上的箱子数
+    public final int[] stepCounts; // 每个棋盘本局已走步数
+    private final long[] initialBoxBits;
+    private final int initialBoxesOnTargets;
+    private final boolean[] targetCell; // 格子 -> 是否为目标点
+    private final boolean[] deadCell; // 格子 -> 箱子进入后无解且不是目标点
+
+    private boolean autoReset = true;
+    private final ExecutorService executor;
+    private final List<Callable<Void>> tasks = new ArrayList<>();
+
+    // 当前 step 的参数，提交任务前写入
+    private int[] currentActions;
+    private float[] currentRewards;
+    private boolean[] currentDones;
+
+    /**
+     * 构造批量模拟器
+     * @param subMap 关卡子地图
+     * @param boardNum 棋盘数
+     * @param maxSteps 单局最多步数，0 表示不限
+     * @param threadNum 线程数，1 表示在调用线程中执行
+     */
+    public BatchSimulator(SubMapData subMap, int boardNum, int maxSteps, int threadNum) {
+        this.level = new PushLevel(subMap);
+        this.boardNum = boardNum;
+        this.maxSteps = maxSteps;
+        this.words = (level.cellNum + 63) >>> 6;
+
+        playerCells = new int[boardNum];
+        boxBits = new long[boardNum * words];
+        boxesOnTargets = new int[boardNum];
+        stepCounts = new int[boardNum];
+
+        targetCell = new boolean[level.cellNum];
+        deadCell = new boolean[level.cellNum];
+        for (int target : level.targets) targetCell[target] = true;
+        for (int cell = 0; cell < level.cellNum; cell++) deadCell[cell] = level.isFloor(cell) && !targetCell[cell] && level.isDeadCell(cell);
+
+        initialBoxBits = new long[words];
+        int onTargets = 0;
+        for (int box : level.initialBoxes) {
+            initialBoxBits[box >>> 6] |= 1L << box;
+            if (targetCell[box]) onTargets++;
+        }
+        initialBoxesOnTargets = onTargets;
+
+        // 按棋盘区间划分任务
+        int taskNum = Math.max(1, Math.min(threadNum, (boardNum + MIN_BOARDS_PER_TASK - 1) / MIN_BOARDS_PER_TASK));
+        for (int task = 0; task < taskNum; task++) {
+            int from = (int) ((long) boardNum * task / taskNum), to = (int) ((long) boardNum * (task + 1) / taskNum);
+            tasks.add(() -> {
+                stepRange(from, to, currentActions, currentRewards, currentDones);
+                return null;
+            });
+        }
+        executor = taskNum > 1 ? Executors.newFixedThreadPool(taskNum, runnable -> {
+            Thread thread = new Thread(runnable, "batch-simulator");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+
+        resetAll();
+    }
+
+    /** 设置结束的棋盘是否在 step 返回前自动重置，默认开启 */
+    public void setAutoReset(boolean autoReset) {
+        this.autoReset = autoReset;
+    }
+
+    /** 重置所有棋盘 */
+    public void resetAll() {
+        for (int board = 0; board < boardNum; board++) reset(board);
+    }
+
+    /** 重置指定棋盘到关卡初始状态 */
+    public void reset(int board) {
+        playerCells[board] = level.initialPlayer;
+        System.arraycopy(initialBoxBits, 0, boxBits, board * words, words);
+        boxesOnTargets[board] = initialBoxesOnTargets;
+        stepCounts[board] = 0;
+    }
+
+    /** 指定棋盘的格子上是否有箱子 */
+    public boolean hasBox(int board, int cell) {
+        return (boxBits[board * words + (cell >>> 6)] & (1L << cell)) != 0;
+    }
+
+    /** 指定棋盘是否已完成 */
+    public boolean isSolved(int board) {
+        return boxesOnTargets[board] == level.targets.length;
+    }
+
+    /**
+     * 对所有棋盘各执行一个动作
+     * @param actions 每个棋盘的动作，长度为 boardNum
+     * @param rewards 输出，每个棋盘本步的奖励
+     * @param dones 输出，每个棋盘本局是否结束；开启自动重置时棋盘已经回到初始状态
+     */
+    public void step(int[] actions, float[] rewards, boolean[] dones) {
+        if (executor == null) {
+            stepRange(0, boardNum, actions, rewards, dones);
+            return;
+        }
+
+        currentActions = actions;
+        currentRewards = rewards;
+        currentDones = dones;
+        try {
+            for (Future<Void> future : executor.invokeAll(tasks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Batch step failed", e.getCause());
+        } finally {
+            currentActions = null;
+            currentRewards = null;
+            currentDones = null;
+        }
+    }
+
+    /** 处理 [from, to) 区间内的棋盘 */
+    private void stepRange(int from, int to, int[] actions, float[] rewards, boolean[] dones) {
+        int targetNum = level.targets.length;
+        for (int board = from; board < to; board++) {
+            float reward = STEP_REWARD;
+            boolean deadlock = false;
+            int action = actions[board];
+
+            if (action >= 0 && action < PushLevel.DIRECTION_NUM) {
+                int base = board * words;
+                int next = level.neighbor(playerCells[board], action);
+                if (next != -1) {
+                    if ((boxBits[base + (next >>> 6)] & (1L << next)) == 0) {
+                        playerCells[board] = next;
+                    } else {
+                        // 沿方向找到箱子串后的第一个格子
+                        int end = level.neighbor(next, action);
+                        while (end != -1 && (boxBits[base + (end >>> 6)] & (1L << end)) != 0) end = level.neighbor(end, action);
+
+                        // 整串箱子前移一格，等价于第一个箱子移到串尾
+                        if (end != -1) {
+                            boxBits[base + (next >>> 6)] &= ~(1L << next);
+                            boxBits[base + (end >>> 6)] |= 1L << end;
+                            playerCells[board] = next;
+
+                            if (targetCell[next]) {
+                                boxesOnTargets[board]--;
+                                reward += BOX_OFF_TARGET_REWARD;
+                            }
+                            if (targetCell[end]) {
+                                boxesOnTargets[board]++;
+                                reward += BOX_ON_TARGET_REWARD;
+                            }
+                            deadlock = deadCell[end];
+                        }
+                    }
+                }
+            }
+
+            stepCounts[board]++;
+            boolean solved = boxesOnTargets[board] == targetNum;
+            if (solved) reward += SOLVED_REWARD;
+            else if (deadlock) reward += DEADLOCK_REWARD;
+
+            boolean done = solved || deadlock || (maxSteps > 0 && stepCounts[board] >= maxSteps);
+            rewards[board] = reward;
+            dones[board] = done;
+            if (done && autoReset) reset(board);
+        }
+    }
+
+    /**
+     * 导出指定棋盘的箱子格子
+     * @param board 棋盘
+     * @return 箱子格子，升序
+     */
+    public int[] getBoxes(int board) {
+        int[] boxes = new int[level.initialBoxes.length];
+        int count = 0;
+        for (int word = 0; word < words; word++) {
+            long bits = boxBits[board * words + word];
+            while (bits != 0) {
+                boxes[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+        return count == boxes.length ? boxes : Arrays.copyOf(boxes, count);
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) executor.shutdownNow();
+    }
+}
@@ -0,0 +1,113 @@
+package com.sokoban.algo.sim;
+
+import java.nio.ByteBuffer;
+
+import com.sokoban.core.logic.ObjectClassMapper;
+import com.sokoban.core.logic.ObjectType;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 棋盘观测导出
+ * <br><br>
+ * 每个棋盘导出为 PLANE_NUM 个 height * width 的 one-hot 平面（墙、箱子、目标点、玩家），每格一个字节，
+ * 平面内下标为 y * width + x。多个棋盘在缓冲中首尾相接，棋盘 i 从 i * boardBytes 开始，
+ * 外部使用者可以直接映射整段内存而无需复制。导出过程不创建任何对象
+ * <br><br>
+ * 墙与目标点在构造时从子地图各层读出作为模板，每次导出先整体写入模板，再写入箱子与玩家
+ */
+public class ObservationExporter {
+    public static final int PLANE_WALL = 0;
+    public static final int PLANE_BOX = 1;
+    public static final int PLANE_TARGET = 2;
+    public static final int PLANE_PLAYER = 3;
+    public static final int PLANE_NUM = 4;
+
+    public final int width, height;
+    public final int planeBytes; // 单个平面的字节数
+    public final int boardBytes; // 单个棋盘的字节数
+    private final byte[] template; // 只含墙与目标点的棋盘
+
+    /**
+     * 构造观测导出
+     * @param subMap 关卡子地图，墙与目标点取自其物体层与目标层
+     */
+    public ObservationExporter(SubMapData subMap) {
+        this.width = subMap.width;
+        this.height = subMap.height;
+        this.planeBytes = width * height;
+        this.boardBytes = PLANE_NUM * planeBytes;
+
+        template = new byte[boardBytes];
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) {
+            if (ObjectClassMapper.isSolid(objectLayer.get(cell))) template[PLANE_WALL * planeBytes + cell] = 1;
+        }
+        MapLayer targetLayer = subMap.getMapLayer(SubMapData.LAYER_TARGET);
+        for (int cell = targetLayer.nextCell(0); cell != -1; cell = targetLayer.nextCell(cell + 1)) {
+            if (SubMapData.typeOf(targetLayer.get(cell)) == ObjectType.BoxTarget) template[PLANE_TARGET * planeBytes + cell] = 1;
+        }
+    }
+
+    /**
+     * 分配能容纳指定数量棋盘的直接缓冲
+     * @param boardNum 棋盘数
+     * @return 直接缓冲
+     */
+    public ByteBuffer allocate(int boardNum) {
+        return ByteBuffer.allocateDirect(boardNum * boardBytes);
+    }
+
+    /**
+     * 将批量模拟器中 [fromBoard, toBoard) 的棋盘写入缓冲
+     * <br><br>
+     * 棋盘 fromBoard 写在缓冲下标 0 处，不使用也不修改缓冲的 position，
+     * 因此可以把同一个缓冲的不同切片交给多个线程分别导出
+     * @param simulator 批量模拟器，需与构造时的子地图为同一关卡
+     * @param buffer 输出缓冲，容量至少为 (toBoard - fromBoard) * boardBytes
+     * @param fromBoard 起始棋盘
+     * @param toBoard 结束棋盘（不含）
+     */
+    public void export(BatchSimulator simulator, ByteBuffer buffer, int fromBoard, int toBoard) {
+        if (simulator.level.width != width || simulator.level.height != height) throw new IllegalArgumentException("Simulator level doesn't match the exporter");
+        if ((long) (toBoard - fromBoard) * boardBytes > buffer.capacity()) throw new IllegalArgumentException("Buffer is too small for " + (toBoard - fromBoard) + " boards");
+
+        int words = simulator.words;
+        for (int board = fromBoard; board < toBoard; board++) {
+            int offset = (board - fromBoard) * boardBytes;
+            buffer.put(offset, template);
+
+            // 箱子
+            int boxOffset = offset + PLANE_BOX * planeBytes;
+            for (int word = 0; word < words; word++) {
+                long bits = simulator.boxBits[board * words + word];
+                while (bits != 0) {
+                    buffer.put(boxOffset + (word << 6) + Long.numberOfTrailingZeros(bits), (byte) 1);
+                    bits &= bits - 1;
+                }
+            }
+
+            // 玩家
+            int player = simulator.playerCells[board];
+            if (player >= 0) buffer.put(offset + PLANE_PLAYER * planeBytes + player, (byte) 1);
+        }
+    }
+
+    /**
+     * 将一张子地图的当前状态写入缓冲，供基于 PlayerCore 的单局使用
+     * @param subMap 子地图，尺寸需与构造时一致
+     * @param buffer 输出缓冲
+     * @param offset 写入位置
+     */
+    public void export(SubMapData subMap, ByteBuffer buffer, int offset) {
+        if (subMap.width != width || subMap.height != height) throw new IllegalArgumentException("Sub map doesn't match the exporter");
+
+        buffer.put(offset, template);
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) {
+            byte object = objectLayer.get(cell);
+            if (ObjectClassMapper.isBox(object)) buffer.put(offset + PLANE_BOX * planeBytes + cell, (byte) 1);
+            if (ObjectClassMapper.isPlayer(object)) buffer.put(offset + PLANE_PLAYER * planeBytes + cell, (byte) 1);
+        }
+    }
+}
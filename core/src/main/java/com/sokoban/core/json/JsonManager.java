@@ -3,7 +3,10 @@ package com.sokoban.core.json;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.sokoban.core.game.Logger;
+import com.sokoban.core.map.MoveEventBuffer;
 import com.sokoban.core.map.SubMapData;
+import com.sokoban.core.map.serialize.MoveEventBufferDeserializer;
+import com.sokoban.core.map.serialize.MoveEventBufferSerializer;
 import com.sokoban.core.map.serialize.SubMapDataDeserializer;
 import com.sokoban.core.map.serialize.SubMapDataSerializer;
 
@@ -60,6 +63,8 @@ public class JsonManager {
     public void registerSerializers() {
         module = module.addSerializer(SubMapData.class, new SubMapDataSerializer());
         module = module.addDeserializer(SubMapData.class, new SubMapDataDeserializer());
+        module = module.addSerializer(MoveEventBuffer.class, new MoveEventBufferSerializer());
+        module = module.addDeserializer(MoveEventBuffer.class, new MoveEventBufferDeserializer());
         objectMapper = objectMapper.registerModule(module);
     }
 
@@ -0,0 +1,280 @@
+package com.sokoban.core.logic;
+
+import java.util.Arrays;
+
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 单箱推动规划，用于拖动箱子
+ * <br><br>
+ * 其它箱子视为固定不动，在 (箱子格子, 玩家所在的一侧) 状态上做广度优先搜索，得到把指定箱子推到目标格子所需推动数最少的方案，
+ * 再补上推动之间玩家的行走路径，输出完整的移动序列。状态编号为 cell * 4 + 方向索引，表示箱子在 cell、玩家站在可以向该方向推动的一侧。
+ * <br><br>
+ * 玩家能否从一侧绕到另一侧只与箱子所在格子有关：对每个访问到的箱子格子做一次（按需提前结束的）洪水填充，
+ * 把四个侧面划分为连通组并缓存，同一组内的侧面之间可以免费切换。
+ * 所有队列与标记数组按格子数分配后复用，用代数标记代替清空，规划代价只与实际搜索到的区域有关
+ */
+public class BoxPushPlanner {
+    public static final int DIRECTION_NUM = 4;
+
+    /** 方向索引与标准方向的对应 */
+    private static final Direction[] DIRECTIONS = {Direction.Up, Direction.Down, Direction.Left, Direction.Right};
+
+    private int width, height, cellNum;
+    private boolean[] free = new boolean[0]; // 拿走被拖动的箱子后，玩家与箱子可以占据的格子
+
+    // 侧面连通组：[cell * 4 + 方向] -> 组编号（该组中最小的方向索引），侧面不可站立为 -1，sideStamp 不等于 generation 时未计算
+    private byte[] sideGroup = new byte[0];
+    private int[] sideStamp = new int[0];
+
+    // 状态搜索
+    private int[] stateStamp = new int[0];
+    private int[] stateParent = new int[0];
+    private int[] stateQueue = new int[0];
+    private int generation = 0;
+
+    // 格子洪水填充
+    private int[] cellStamp = new int[0];
+    private byte[] cellFrom = new byte[0]; // 走到该格子的方向索引，用于回溯路径
+    private int[] cellQueue = new int[0];
+    private final int[] pendingCells = new int[DIRECTION_NUM];
+    private int visitGeneration = 0;
+
+    // 输出
+    private int[] pushStates = new int[16];
+    private Direction[] moves = new Direction[64];
+    private int moveNum = 0, pushNum = 0;
+
+    /**
+     * 规划把玩家所在子地图中的一个箱子推到目标格子
+     * @param playerCore 逻辑核心，不会被修改
+     * @param boxX 箱子横坐标
+     * @param boxY 箱子纵坐标
+     * @param targetX 目标横坐标
+     * @param targetY 目标纵坐标
+     * @return 移动序列（含行走与推动），箱子已在目标格子时为空数组；该格子没有箱子或无法推到时返回 null
+     */
+    public Direction[] plan(PlayerCore playerCore, int boxX, int boxY, int targetX, int targetY) {
+        moveNum = pushNum = 0;
+        int subMapIndex = playerCore.getPlayerSubmap();
+        if (subMapIndex == -1) return null;
+        SubMapData subMap = playerCore.getSubmap(subMapIndex);
+        if (boxX < 0 || boxY < 0 || boxX >= subMap.width || boxY >= subMap.height) return null;
+        if (targetX < 0 || targetY < 0 || targetX >= subMap.width || targetY >= subMap.height) return null;
+
+        prepare(subMap);
+        int box = boxY * width + boxX, target = targetY * width + targetX;
+        int player = playerCore.getPlayerY() * width + playerCore.getPlayerX();
+        if (playerCore.boxAt(subMapIndex, box) == -1) return null;
+
+        // 可占据的格子：空地、玩家所在格子与被拖动箱子所在格子
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        for (int cell = 0; cell < cellNum; cell++) free[cell] = ObjectClassMapper.isWalkable(objectLayer.get(cell));
+        free[player] = true;
+        free[box] = true;
+        if (!free[target]) return null;
+        if (target == box) return new Direction[0];
+
+        int goal = search(box, target, player);
+        if (goal == -1) return null;
+        buildMoves(goal, box, player);
+        return Arrays.copyOf(moves, moveNum);
+    }
+
+    /** 最近一次规划的推动数 */
+    public int getPushNum() {
+        return pushNum;
+    }
+
+    /** 最近一次规划的移动数（含行走） */
+    public int getMoveNum() {
+        return moveNum;
+    }
+
+    /** 按子地图尺寸准备缓冲，尺寸不变时复用 */
+    private void prepare(SubMapData subMap) {
+        width = subMap.width;
+        height = subMap.height;
+        cellNum = width * height;
+        if (free.length < cellNum) {
+            free = new boolean[cellNum];
+            sideGroup = new byte[cellNum * DIRECTION_NUM];
+            sideStamp = new int[cellNum];
+            stateStamp = new int[cellNum * DIRECTION_NUM];
+            stateParent = new int[cellNum * DIRECTION_NUM];
+            stateQueue = new int[cellNum * DIRECTION_NUM];
+            cellStamp = new int[cellNum];
+            cellFrom = new byte[cellNum];
+            cellQueue = new int[cellNum];
+            generation = visitGeneration = 0;
+        }
+        if (++generation == 0) {
+            // 代数回绕，清空标记
+            Arrays.fill(sideStamp, 0);
+            Arrays.fill(stateStamp, 0);
+            generation = 1;
+        }
+    }
+
+    /** 相邻格子，越界返回 -1 */
+    private int neighbor(int cell, int direction) {
+        int x = cell % width + DIRECTIONS[direction].dx, y = cell / width + DIRECTIONS[direction].dy;
+        if (x < 0 || y < 0 || x >= width || y >= height) return -1;
+        return y * width + x;
+    }
+
+    /**
+     * 以推动数为代价搜索状态
+     * @return 箱子到达目标格子时的状态，无法到达返回 -1
+     */
+    private int search(int box, int target, int player) {
+        int head = 0, tail = 0;
+
+        // 初始状态：玩家在箱子不动时能走到的侧面
+        floodFill(player, box, -1);
+        for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+            int side = neighbor(box, direction ^ 1); // 向 direction 推动时玩家站在反方向一侧
+            if (side != -1 && cellStamp[side] == visitGeneration) {
+                int state = box * DIRECTION_NUM + direction;
+                stateStamp[state] = generation;
+                stateParent[state] = -1;
+                stateQueue[tail++] = state;
+            }
+        }
+
+        while (head < tail) {
+            int state = stateQueue[head++];
+            int cell = state / DIRECTION_NUM, direction = state % DIRECTION_NUM;
+
+            // 推动一格
+            int next = neighbor(cell, direction);
+            if (next == -1 || !free[next]) continue;
+            int pushed = next * DIRECTION_NUM + direction;
+            if (stateStamp[pushed] == generation) continue;
+            stateStamp[pushed] = generation;
+            stateParent[pushed] = state;
+            if (next == target) return pushed;
+            stateQueue[tail++] = pushed;
+
+            // 同一连通组内的其它侧面不需要额外推动
+            computeSideGroups(next);
+            int group = sideGroup[pushed];
+            for (int other = 0; other < DIRECTION_NUM; other++) {
+                int otherState = next * DIRECTION_NUM + other;
+                if (other == direction || sideGroup[otherState] != group || stateStamp[otherState] == generation) continue;
+                stateStamp[otherState] = generation;
+                stateParent[otherState] = pushed;
+                stateQueue[tail++] = otherState;
+            }
+        }
+        return -1;
+    }
+
+    /** 计算箱子在 box 时四个侧面的连通组 */
+    private void computeSideGroups(int box) {
+        if (sideStamp[box] == generation) return;
+        sideStamp[box] = generation;
+
+        int base = box * DIRECTION_NUM;
+        for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+            int side = neighbor(box, direction ^ 1);
+            sideGroup[base + direction] = (byte) (side != -1 && free[side] ? DIRECTION_NUM : -1); // DIRECTION_NUM 表示待分组
+        }
+
+        for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+            if (sideGroup[base + direction] != DIRECTION_NUM) continue;
+            sideGroup[base + direction] = (byte) direction;
+
+            // 其它待分组的侧面都找到后提前结束
+            int pending = 0;
+            for (int other = direction + 1; other < DIRECTION_NUM; other++) if (sideGroup[base + other] == DIRECTION_NUM) pending |= 1 << other;
+            if (pending == 0) continue;
+            floodFill(neighbor(box, direction ^ 1), box, pending);
+            for (int other = direction + 1; other < DIRECTION_NUM; other++) {
+                if ((pending & 1 << other) != 0 && cellStamp[neighbor(box, other ^ 1)] == visitGeneration) sideGroup[base + other] = (byte) direction;
+            }
+        }
+    }
+
+    /**
+     * 从 from 出发在可占据格子上洪水填充，blocked 视为障碍
+     * @param pendingSides 箱子在 blocked 时需要找到的侧面方向掩码，全部找到后提前结束；-1 表示完整填充
+     */
+    private void floodFill(int from, int blocked, int pendingSides) {
+        if (++visitGeneration == 0) {
+            Arrays.fill(cellStamp, 0);
+            visitGeneration = 1;
+        }
+        int head = 0, tail = 0;
+        cellQueue[tail++] = from;
+        cellStamp[from] = visitGeneration;
+
+        // 待找到的侧面格子
+        int pendingNum = 0;
+        if (pendingSides > 0) {
+            for (int side = 0; side < DIRECTION_NUM; side++) if ((pendingSides & 1 << side) != 0) pendingCells[pendingNum++] = neighbor(blocked, side ^ 1);
+        }
+
+        while (head < tail) {
+            int cell = cellQueue[head++];
+            int x = cell % width, y = cell / width;
+            for (int direction = 0; direction < DIRECTION_NUM; direction++) {
+                int nextX = x + DIRECTIONS[direction].dx, nextY = y + DIRECTIONS[direction].dy;
+                if (nextX < 0 || nextY < 0 || nextX >= width || nextY >= height) continue;
+                int next = nextY * width + nextX;
+                if (next == blocked || !free[next] || cellStamp[next] == visitGeneration) continue;
+                cellStamp[next] = visitGeneration;
+                cellFrom[next] = (byte) direction;
+                cellQueue[tail++] = next;
+
+                if (pendingNum > 0) {
+                    for (int i = 0; i < pendingNum; i++) {
+                        if (pendingCells[i] == next) pendingCells[i--] = pendingCells[--pendingNum];
+                    }
+                    if (pendingNum == 0) return;
+                }
+            }
+        }
+    }
+
+    /** 回溯状态链，生成行走与推动的完整移动序列 */
+    private void buildMoves(int goal, int box, int player) {
+        // 只保留发生推动的状态，按时间顺序排列
+        pushNum = 0;
+        for (int state = goal; stateParent[state] != -1; state = stateParent[state]) {
+            int parent = stateParent[state];
+            if (parent / DIRECTION_NUM == state / DIRECTION_NUM) continue; // 同一格子换侧面，只是行走
+            if (pushNum == pushStates.length) pushStates = Arrays.copyOf(pushStates, pushNum * 2);
+            pushStates[pushNum++] = parent;
+        }
+
+        moveNum = 0;
+        for (int i = pushNum - 1; i >= 0; i--) {
+            int cell = pushStates[i] / DIRECTION_NUM, direction = pushStates[i] % DIRECTION_NUM;
+            appendWalk(player, neighbor(cell, direction ^ 1), cell);
+            appendMove(DIRECTIONS[direction]);
+            player = cell;
+        }
+    }
+
+    /** 追加玩家在箱子位于 box 时从 from 走到 to 的最短路径 */
+    private void appendWalk(int from, int to, int box) {
+        if (from == to) return;
+        floodFill(from, box, -1);
+
+        // 从终点回溯，先倒序写入再原地反转
+        int start = moveNum;
+        for (int cell = to; cell != from; cell = neighbor(cell, cellFrom[cell] ^ 1)) appendMove(DIRECTIONS[cellFrom[cell]]);
+        for (int i = start, j = moveNum - 1; i < j; i++, j--) {
+            Direction swap = moves[i];
+            moves[i] = moves[j];
+            moves[j] = swap;
+        }
+    }
+
+    private void appendMove(Direction direction) {
+        if (moveNum == moves.length) moves = Arrays.copyOf(moves, moveNum * 2);
+        moves[moveNum++] = direction;
+    }
+}
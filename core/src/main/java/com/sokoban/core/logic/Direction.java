@@ -1,8 +1,44 @@
 package com.sokoban.core.logic;
 
+/**
+ * 移动方向
+ * <br><br>
+ * 每个方向自带坐标增量，地图纵向翻转，Up 为 y + 1
+ */
 public enum Direction {
-    None("none"), Right("right"), Down("down"), Left("left"), Up("up");
+    None("none", 0, 0), Right("right", 1, 0), Down("down", 0, -1), Left("left", -1, 0), Up("up", 0, 1);
     private String value;
-    Direction(String value) {this.value = value;}
+    public final int dx, dy; // 坐标增量
+
+    Direction(String value, int dx, int dy) {
+        this.value = value;
+        this.dx = dx;
+        this.dy = dy;
+    }
+
     public String getDirection() {return value;}
-}
\ No newline at end of file
+
+    /**
+     * 一维格子下标 cell = y * width + x 上的增量
+     * @param width 子地图宽
+     * @return 格子下标增量
+     */
+    public int cellOffset(int width) {
+        return dy * width + dx;
+    }
+
+    /**
+     * 给定坐标增量，给出方向
+     * @return 对应方向，不是单位增量返回 None
+     */
+    public static Direction fromDelta(int dx, int dy) {
+        if (dx == 0) {
+            if (dy == 1) return Up;
+            if (dy == -1) return Down;
+        } else if (dy == 0) {
+            if (dx == 1) return Right;
+            if (dx == -1) return Left;
+        }
+        return None;
+    }
+}
@@ -0,0 +1,44 @@
+package com.sokoban.core.logic;
+
+import com.sokoban.core.map.MoveEventBuffer;
+
+/**
+ * 一次移动的变化描述
+ * <br><br>
+ * 由逻辑核心在每次移动后填写并复用，调用方据此决定是否记录历史、播放动画与检查胜负，
+ * 无需复制或比较整张地图。需要保留时请自行复制所需字段
+ */
+public class MoveResult {
+    public boolean moved; // 是否发生移动
+    public int subMapIndex; // 发生移动的子地图
+    public Direction direction; // 移动方向
+    public int pushedBoxNum; // 本次推动的箱子数，0 表示只是玩家行走
+    public int targetDelta; // 在目标点上的箱子数变化
+    public boolean win; // 移动后是否胜利
+    public MoveEventBuffer events; // 本次移动的位移事件，引用逻辑核心内部缓冲
+
+    public MoveResult() {
+        reset(0, Direction.None);
+    }
+
+    /** 开始新一次移动前重置 */
+    void reset(int subMapIndex, Direction direction) {
+        this.moved = false;
+        this.subMapIndex = subMapIndex;
+        this.direction = direction;
+        this.pushedBoxNum = 0;
+        this.targetDelta = 0;
+        this.win = false;
+    }
+
+    /** 是否有箱子发生移动，只有这种移动才可能产生新的死锁 */
+    public boolean isPush() {
+        return moved && pushedBoxNum > 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("MoveResult(moved = %b, subMap = %d, direction = %s, pushed = %d, targetDelta = %d, win = %b)",
+            moved, subMapIndex, direction, pushedBoxNum, targetDelta, win);
+    }
+}
@@ -5,10 +5,38 @@ import com.sokoban.core.map.SubMapData;
 /**
  * 将不同形态的物件映射到统一类别，便于逻辑管理
  * <br><br>
- * 设计的时候保持为 ObjectType 不变
+ * 设计的时候保持为 ObjectType 不变。
+ * 类别与标志位按 ObjectType 序号预先计算成表，热点路径可以直接用序号或 SubMapData 中的 byte 编码查询
  */
 public class ObjectClassMapper {
-    public static ObjectType typeClass(ObjectType object) {
+    public static final byte FLAG_SOLID = 1; // 墙等不可移动的阻挡物
+    public static final byte FLAG_BOX = 1 << 1; // 箱子
+    public static final byte FLAG_PLAYER = 1 << 2; // 玩家
+    public static final byte FLAG_WALKABLE = 1 << 3; // 可以被占据
+    public static final byte FLAG_TARGET = 1 << 4; // 目标点
+
+    private static final ObjectType[] TYPES = ObjectType.values();
+    private static final ObjectType[] TYPE_CLASS = new ObjectType[TYPES.length]; // 序号 -> 类别
+    private static final byte[] FLAGS = new byte[TYPES.length]; // 序号 -> 标志位
+    private static final byte[] LAYER_INDEX = new byte[TYPES.length]; // 序号 -> 所在层
+
+    static {
+        for (ObjectType type : TYPES) {
+            ObjectType typeClass = computeTypeClass(type);
+            TYPE_CLASS[type.ordinal()] = typeClass;
+            LAYER_INDEX[type.ordinal()] = (byte) computeLayerIndex(typeClass);
+
+            byte flags = 0;
+            if (typeClass == ObjectType.Wall) flags |= FLAG_SOLID;
+            if (typeClass == ObjectType.Box) flags |= FLAG_BOX;
+            if (typeClass == ObjectType.Player) flags |= FLAG_PLAYER;
+            if (type == ObjectType.Air) flags |= FLAG_WALKABLE;
+            if (typeClass == ObjectType.BoxTarget || typeClass == ObjectType.PlayerTarget) flags |= FLAG_TARGET;
+            FLAGS[type.ordinal()] = flags;
+        }
+    }
+
+    private static ObjectType computeTypeClass(ObjectType object) {
         if (object == ObjectType.BoxGreen) return ObjectType.Box;
         if (object == ObjectType.BoxBlue) return ObjectType.Box;
         if (object == ObjectType.GroundDarkGray) return ObjectType.Ground;
@@ -16,17 +44,59 @@ public class ObjectClassMapper {
         return object;
     }
 
+    private static int computeLayerIndex(ObjectType typeClass) {
+        return switch (typeClass) {
+            case ObjectType.Wall, ObjectType.Player, ObjectType.Box -> SubMapData.LAYER_OBJECT;
+            case ObjectType.BoxTarget, ObjectType.PlayerTarget -> SubMapData.LAYER_TARGET;
+            case ObjectType.Ground -> SubMapData.LAYER_DECORATION;
+            default -> 0;
+        };
+    }
+
+    public static ObjectType typeClass(ObjectType object) {
+        return TYPE_CLASS[object.ordinal()];
+    }
+
     /**
      * 获得 ObjectType 地图数据的物件类型
      * @param obj ObjectType 物体数据
      * @return 对应物体层
      */
     public static int mapObjectTypeToLayerIndex(ObjectType obj) {
-        return switch (typeClass(obj)) {
-            case ObjectType.Wall, ObjectType.Player, ObjectType.Box -> SubMapData.LAYER_OBJECT;
-            case ObjectType.BoxTarget, ObjectType.PlayerTarget -> SubMapData.LAYER_TARGET;
-            case ObjectType.Ground -> SubMapData.LAYER_DECORATION;
-            default -> 0;
-        };
+        return LAYER_INDEX[obj.ordinal()];
+    }
+
+    /**
+     * 获得序号对应的标志位
+     * @param code ObjectType 序号或 SubMapData 中的编码
+     * @return 标志位组合
+     */
+    public static byte flags(int code) {
+        return FLAGS[code];
+    }
+
+    public static boolean isSolid(int code) {
+        return (FLAGS[code] & FLAG_SOLID) != 0;
+    }
+
+    public static boolean isBox(int code) {
+        return (FLAGS[code] & FLAG_BOX) != 0;
+    }
+
+    public static boolean isPlayer(int code) {
+        return (FLAGS[code] & FLAG_PLAYER) != 0;
+    }
+
+    public static boolean isWalkable(int code) {
+        return (FLAGS[code] & FLAG_WALKABLE) != 0;
+    }
+
+    public static boolean isTarget(int code) {
+        return (FLAGS[code] & FLAG_TARGET) != 0;
+    }
+
+    /** 序号对应的所在层 */
+    public static int layerIndex(int code) {
+        return LAYER_INDEX[code];
     }
 }
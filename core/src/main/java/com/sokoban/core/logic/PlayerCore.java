@@ -1,10 +1,14 @@
 package com.sokoban.core.logic;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import com.sokoban.core.game.Logger;
+import com.sokoban.core.map.ChunkedLayer;
 import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.MoveEventBuffer;
+import com.sokoban.core.map.MoveListParser;
 import com.sokoban.core.map.SubMapData;
 import com.sokoban.utils.DeepClonable;
 
@@ -14,10 +18,45 @@ import com.sokoban.utils.DeepClonable;
  * @author Life_Checkpoint
  */
 public class PlayerCore implements DeepClonable<PlayerCore> {
-    private Pos playerPos; // 玩家坐标
-    private List<String> moveList; // 这一轮有哪些物块坐标发生了移动
+    private static final int BOX_CHUNK_MASK = ChunkedLayer.CHUNK_SIZE - 1;
+
+    private int playerX = -1, playerY = -1; // 玩家坐标，没有玩家为 -1
+    private MoveEventBuffer moveEvents; // 这一轮有哪些物块坐标发生了移动
+    private MoveResult lastMove; // 最近一次移动的变化描述，复用同一对象
     private MapData map; // 游戏地图
 
+    // 撤销日志：每次写入记录 (子地图索引, 格子下标, 原编码)，每次移动记录 (日志位置, 原玩家 x, 原玩家 y)
+    private int[] journal = new int[3 * 64];
+    private int journalSize = 0;
+    private int[] journalEntries = new int[3 * 64];
+    private int journalEntryNum = 0;
+
+    // 重做日志：撤销时记录 (子地图索引, 格子下标, 撤销前编码)，每次撤销记录 (日志位置, 撤销前玩家 x, 撤销前玩家 y)
+    private int[] redoJournal = new int[3 * 64];
+    private int redoSize = 0;
+    private int[] redoEntries = new int[3 * 64];
+    private int redoEntryNum = 0;
+
+    // 目标点完成情况，随每次写入增量维护
+    private int boxTargetNum = 0, boxesOnTargets = 0;
+    private int playerTargetNum = 0, playersOnTargets = 0;
+
+    // 每个子地图的目标点（箱子与玩家目标点）总数与已完成数，以及尚未完成的子地图数
+    private int[] subMapTargetNum = new int[0];
+    private int[] subMapTargetsDone = new int[0];
+    private int unsolvedSubmapNum = 0;
+
+    // 箱子索引：每个子地图一份格子到箱子编号的映射与紧凑的箱子位置列表，随每次写入增量维护
+    // 分块存储的超大子地图不分配整图大小的映射数组（boxIdAt 对应项为 null），改用与 ChunkedLayer 相同的 32x32 分块，
+    // 块在第一次放入箱子时分配，未分配的块中没有箱子
+    private int[][] boxIdAt = new int[0][];
+    private int[][][] boxIdChunks = new int[0][][];
+    private int[][] boxCells = new int[0][];
+    private int[] boxNum = new int[0];
+    private int playerSubmap = -1; // 玩家所在子地图
+    private long positionHash = 0; // 物体层 Zobrist 哈希，随每次写入增量维护
+    private long[] subMapHashes = new long[0]; // 每个子地图物体层的 Zobrist 哈希，异或即为 positionHash
+
     /*
      * 需要注意的是数组维度的访问顺序
      * x, y - 代表横、纵坐标，访问是先 y 后 x
@@ -28,9 +67,10 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
      * 逻辑核心构造
      */
     public PlayerCore() {
-        moveList = new ArrayList<>();
+        moveEvents = new MoveEventBuffer();
+        lastMove = new MoveResult();
+        lastMove.events = moveEvents;
         map = new MapData();
-        playerPos = null;
     }
     
     /** 获得索引对应子地图 */
@@ -48,30 +88,31 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
             Logger.error("PlayerCore", String.format("Read at a out-of-bound position (%d, %d)", x, y));
             return ObjectType.Unknown;
         }
-        return getSubmap(subMapIndex).getObjectLayer()[y][x];
+        return getSubmap(subMapIndex).getObject(x, y);
     }
 
     /**
-     * 在指定子地图中寻找当前地图中玩家位置并更新
+     * 在指定子地图中扫描寻找玩家位置
+     * <br><br>
+     * 逻辑核心已经维护玩家位置，通常应直接使用 getPlayerPos
      * @return 玩家位置，未找到返回 null
      */
     public Pos findPlayerPosition(int subMapIndex) {
         SubMapData subMap = getSubmap(subMapIndex);
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
         Pos playerPos = null;
 
-        // 检查每一个位置
-        for (int y = 0; y < subMap.height; y++) {
-            for (int x = 0; x < subMap.width; x++) {
-
-                // 当前位置为玩家位置
-                if (PlayerCoreUtils.isPlayer(getObject(subMapIndex, x, y))) {
-                    if (playerPos == null) {
-                        // 首次找到玩家
-                        playerPos = new Pos(x, y);
-                    } else {
-                        // 多次找到玩家，以首次找到为准
-                        Logger.warning("PlayerCore", "Find more than one player. Please Check your map");
-                    }
+        // 只检查非空的位置
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) {
+
+            // 当前位置为玩家位置
+            if (ObjectClassMapper.isPlayer(objectLayer.get(cell))) {
+                if (playerPos == null) {
+                    // 首次找到玩家
+                    playerPos = new Pos(cell % subMap.width, cell / subMap.width);
+                } else {
+                    // 多次找到玩家，以首次找到为准
+                    Logger.warning("PlayerCore", "Find more than one player. Please Check your map");
                 }
             }
         }
@@ -85,7 +126,7 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
             Logger.error("PlayerCore", String.format("Read at a out-of-bound position (%d, %d)", x, y));
             return ObjectType.Unknown;
         }
-        return getSubmap(subMapIndex).getTargetLayer()[y][x];
+        return getSubmap(subMapIndex).getTarget(x, y);
     }
 
     /** 设置子地图对应位置物体 */
@@ -94,7 +135,8 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
             Logger.error("PlayerCore", String.format("Write at a out-of-bound position (%d, %d)", x, y));
             return;
         }
-        getSubmap(subMapIndex).getObjectLayer()[y][x] = object;
+        SubMapData subMap = getSubmap(subMapIndex);
+        storeObjectCode(subMapIndex, subMap.index(x, y), SubMapData.codeOf(object));
     }
 
     /** 判断坐标是否超出子地图边界 */
@@ -110,97 +152,126 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
      * @return 是否能连续推动
      */
     public boolean canPush(int subMapIndex, Pos position, Direction direction) {
-        // 获得新坐标
-        Pos nextPos = position.add(PlayerCoreUtils.getDeltaPos(direction));
+        return canPush(subMapIndex, position.x, position.y, direction);
+    }
 
-        // 获得当前物体和下一物体
-        ObjectType thisObj = getObject(subMapIndex, position.x, position.y);
-        ObjectType nextObj = getObject(subMapIndex, nextPos.x, nextPos.y);
+    /**
+     * 判断指定方向上的物块是否能连续推动
+     * <br><br>
+     * 沿推动方向逐格检查，直到遇到空位（可推）或墙、边界（不可推）
+     * @param subMapIndex 子地图索引
+     * @param x 当前物块初始横坐标
+     * @param y 当前物块初始纵坐标
+     * @param direction 试图推动的方向
+     * @return 是否能连续推动
+     */
+    public boolean canPush(int subMapIndex, int x, int y, Direction direction) {
+        SubMapData subMap = getSubmap(subMapIndex);
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        int offset = direction.cellOffset(subMap.width);
+        int cell = subMap.index(x, y);
 
         // 如果当前物体不是箱子，不可以推
-        if (!PlayerCoreUtils.isBox(thisObj)) return false;
+        if (outOfBound(subMapIndex, x, y) || !ObjectClassMapper.isBox(objectLayer.get(cell))) return false;
 
-        // 如果下一个物体是墙或者超边界，不可以推
-        if (PlayerCoreUtils.isWall(nextObj) || outOfBound(subMapIndex, nextPos.x, nextPos.y)) return false;
+        while (true) {
+            // 如果下一个位置超边界或是墙，不可以推
+            x += direction.dx;
+            y += direction.dy;
+            cell += offset;
+            if (outOfBound(subMapIndex, x, y)) return false;
+            byte next = objectLayer.get(cell);
+            if (ObjectClassMapper.isSolid(next)) return false;
 
-        // 如果下一个物体是箱子，则需要通过递归连锁判断
-        if (PlayerCoreUtils.isBox(nextObj)) return canPush(subMapIndex, nextPos, direction);
+            // 如果下一个物体是空的，可以推
+            if (ObjectClassMapper.isWalkable(next)) return true;
 
-        // 如果下一个物体是空的，可以推
-        if (PlayerCoreUtils.isWalkable(nextObj)) return true;
+            // 如果下一个物体是箱子，继续检查链条后面的格子
+            if (ObjectClassMapper.isBox(next)) continue;
 
-        // 如果是其它情况，发出警告（判断可能漏掉了一些物块类型）
-        Logger.warning("PlayerCore", "method canPush can't identify object type " + nextObj);
-        return false;
+            // 如果是其它情况，发出警告（判断可能漏掉了一些物块类型）
+            Logger.warning("PlayerCore", "method canPush can't identify object type " + SubMapData.typeOf(next));
+            return false;
+        }
     }
 
     /**
      * 对所在物块进行一次指定方向的推动（包括玩家）
      * <br><br>
-     * 如果是新一轮移动，应该重置 moveList
+     * 如果是新一轮移动，应该重置 moveEvents
      * @param subMapIndex 子地图索引
      * @param position 当前物块位置
      * @param direction 推动方向
      * @return 是否发生移动
      */
     public boolean doPush(int subMapIndex, Pos position, Direction direction) {
-        Logger.debug("PlayerCore", String.format(
-            "doPush -> subMapIndex = %d, position = (%d, %d), direction = %s",
-            subMapIndex, position.x, position.y, direction
-        ));
+        return doPush(subMapIndex, position.x, position.y, direction);
+    }
 
+    /**
+     * 对所在物块进行一次指定方向的推动（包括玩家）
+     * <br><br>
+     * 如果是新一轮移动，应该重置 moveEvents
+     * @param subMapIndex 子地图索引
+     * @param x 当前物块横坐标
+     * @param y 当前物块纵坐标
+     * @param direction 推动方向
+     * @return 是否发生移动
+     */
+    public boolean doPush(int subMapIndex, int x, int y, Direction direction) {
         // 获得新坐标
-        Pos nextPos = position.add(PlayerCoreUtils.getDeltaPos(direction));
+        int nextX = x + direction.dx, nextY = y + direction.dy;
+        if (outOfBound(subMapIndex, x, y) || outOfBound(subMapIndex, nextX, nextY)) return false;
+
+        SubMapData subMap = getSubmap(subMapIndex);
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        int offset = direction.cellOffset(subMap.width);
+        int cell = subMap.index(x, y), nextCell = cell + offset;
 
         // 获得当前物体和下一物体
-        ObjectType thisObj = getObject(subMapIndex, position.x, position.y);
-        ObjectType nextObj = getObject(subMapIndex, nextPos.x, nextPos.y);
+        byte thisObj = objectLayer.get(cell);
+        byte nextObj = objectLayer.get(nextCell);
 
         // 如果当前物块是玩家
-        if (PlayerCoreUtils.isPlayer(thisObj)) {
-            Logger.debug("PlayerCore", "Player moving");
-
+        if (ObjectClassMapper.isPlayer(thisObj)) {
             // 下一物块为空气，直接进入
-            if (PlayerCoreUtils.isWalkable(nextObj)) {
-                setObject(subMapIndex, position.x, position.y, ObjectType.Air); // 当前坐标换为空气
-                setObject(subMapIndex, nextPos.x, nextPos.y, ObjectType.Player); // 下一坐标换为玩家
-                playerPos = nextPos;
-
-                moveList.add(PlayerCoreUtils.toObjectMoveString(subMapIndex, position.x, position.y, nextPos.x, nextPos.y)); // 将玩家移动的信息加入到位移列表
+            if (ObjectClassMapper.isWalkable(nextObj)) {
+                beginNewMove();
+                writeObject(subMapIndex, cell, SubMapData.codeOf(ObjectType.Air)); // 当前坐标换为空气
+                writeObject(subMapIndex, nextCell, thisObj); // 下一坐标换为玩家
+                playerX = nextX;
+                playerY = nextY;
+
+                moveEvents.add(subMapIndex, SubMapData.LAYER_OBJECT, x, y, nextX, nextY); // 将玩家移动的信息加入到位移列表
                 return true;
             }
 
             // 下一物块为箱子，且连续推动的检验通过，需要进行多个物块的移动
-            if (PlayerCoreUtils.isBox(nextObj) && canPush(subMapIndex, nextPos, direction)) {
-
-                // 要进行多个物块的连续推动，但是物块之间的状态不能互相影响，所以需要复制一张新地图，更改完成后才覆盖旧地图
-                // 复制的时候要调用 SubMapData 的 cpy 方法，否则会得到对同一个对象的引用
-                SubMapData newMap = getSubmap(subMapIndex).deepCopy();
-
-                // 为了防止栈内存溢出，使用循环实现
-                Pos currentPos = new Pos(position.x, position.y); // 当前处理物块的坐标
-                Pos currentPosNext = currentPos.add(PlayerCoreUtils.getDeltaPos(direction)); // 当前处理物块的目标坐标
-
-                // 如果当前物块在旧地图中不是空气（未到达结束条件）
-                while (!PlayerCoreUtils.isWalkable(getObject(subMapIndex, currentPos.x, currentPos.y))) {
-
-                    // 将旧地图对应物块移动到新地图，注意坐标顺序
-                    newMap.getObjectLayer()[currentPosNext.y][currentPosNext.x] = getObject(subMapIndex, currentPos.x, currentPos.y);
-
-                    // 将物体移动的信息加入到位移列表
-                    moveList.add(PlayerCoreUtils.toObjectMoveString(subMapIndex, currentPos.x, currentPos.y, currentPosNext.x, currentPosNext.y));
+            if (ObjectClassMapper.isBox(nextObj) && canPush(subMapIndex, nextX, nextY, direction)) {
+                beginNewMove();
+
+                // 先从玩家向前找到链条末端的空位，同时按原顺序记录位移
+                int chainLength = 0;
+                int currentX = x, currentY = y, currentCell = cell;
+                while (!ObjectClassMapper.isWalkable(objectLayer.get(currentCell))) {
+                    moveEvents.add(subMapIndex, SubMapData.LAYER_OBJECT, currentX, currentY, currentX + direction.dx, currentY + direction.dy);
+                    currentX += direction.dx;
+                    currentY += direction.dy;
+                    currentCell += offset;
+                    chainLength++;
+                }
 
-                    // 更新坐标
-                    currentPos = new Pos(currentPosNext.x, currentPosNext.y);
-                    currentPosNext = currentPosNext.add(PlayerCoreUtils.getDeltaPos(direction));
+                // 再从末端向玩家倒序移动，每个物块只会覆盖已经移走的格子，因此可以原地修改
+                for (int i = 0; i < chainLength; i++) {
+                    writeObject(subMapIndex, currentCell, objectLayer.get(currentCell - offset));
+                    currentCell -= offset;
                 }
 
                 // 最后去除最开始的玩家位置
-                newMap.getObjectLayer()[position.y][position.x] = ObjectType.Air;
-                playerPos = nextPos;
-
-                // 新地图覆盖旧地图
-                map.allMaps.set(subMapIndex, newMap);
+                writeObject(subMapIndex, cell, SubMapData.codeOf(ObjectType.Air));
+                playerX = nextX;
+                playerY = nextY;
+                lastMove.pushedBoxNum = chainLength - 1; // 链条中除玩家外都是箱子
                 return true;
             }
 
@@ -213,31 +284,420 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
     }
 
     /**
-     * 检查游戏是否达到胜利条件
-     * @return 是否胜利
+     * 反向执行一次移动：玩家沿反方向退回一格，并把该次移动推动的箱子依次拉回
+     * <br><br>
+     * 与 undoMove 不同，不依赖撤销日志，可以在从关键帧恢复的地图上重放撤销；
+     * 反向移动本身会记录撤销日志，并清空重做日志
+     * @param subMapIndex 子地图索引
+     * @param direction 原移动的方向
+     * @param pushedBoxNum 原移动推动的箱子数
+     * @return 是否成功，地图状态与描述不符时返回 false 且不修改地图
      */
-    public boolean isGameWin() {
-        // 如果所有的子地图目标点都被覆盖了对应物体，即可判定胜利
-        for (int subMapIndex = 0; subMapIndex < map.allMaps.size(); subMapIndex++) {
+    public boolean reverseMove(int subMapIndex, Direction direction, int pushedBoxNum) {
+        int backX = playerX - direction.dx, backY = playerY - direction.dy;
+        if (playerSubmap != subMapIndex || outOfBound(subMapIndex, backX, backY)) return false;
+        if (outOfBound(subMapIndex, playerX + pushedBoxNum * direction.dx, playerY + pushedBoxNum * direction.dy)) return false;
+
+        SubMapData subMap = getSubmap(subMapIndex);
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        int offset = direction.cellOffset(subMap.width);
+        int cell = subMap.index(playerX, playerY), backCell = cell - offset;
+
+        // 检查退回位置为空，且前方确实有对应数量的箱子
+        if (!ObjectClassMapper.isWalkable(objectLayer.get(backCell))) return false;
+        for (int i = 1; i <= pushedBoxNum; i++) if (!ObjectClassMapper.isBox(objectLayer.get(cell + i * offset))) return false;
+
+        moveEvents.clear();
+        beginNewMove();
+
+        // 玩家退回，箱子依次跟进一格，最后一个箱子的原位置变为空气
+        writeObject(subMapIndex, backCell, objectLayer.get(cell));
+        moveEvents.add(subMapIndex, SubMapData.LAYER_OBJECT, playerX, playerY, backX, backY);
+        int currentX = playerX, currentY = playerY, currentCell = cell;
+        for (int i = 0; i < pushedBoxNum; i++) {
+            writeObject(subMapIndex, currentCell, objectLayer.get(currentCell + offset));
+            moveEvents.add(subMapIndex, SubMapData.LAYER_OBJECT, currentX + direction.dx, currentY + direction.dy, currentX, currentY);
+            currentX += direction.dx;
+            currentY += direction.dy;
+            currentCell += offset;
+        }
+        writeObject(subMapIndex, currentCell, SubMapData.codeOf(ObjectType.Air));
+
+        playerX = backX;
+        playerY = backY;
+        return true;
+    }
+
+    /** 开始一次新的移动，新的移动会使之前撤销的移动无法重做 */
+    private void beginNewMove() {
+        redoSize = 0;
+        redoEntryNum = 0;
+        beginJournalEntry();
+    }
+
+    /** 开始记录一次移动 */
+    private void beginJournalEntry() {
+        if (3 * journalEntryNum + 3 > journalEntries.length) journalEntries = Arrays.copyOf(journalEntries, journalEntries.length * 2);
+        journalEntries[3 * journalEntryNum] = journalSize;
+        journalEntries[3 * journalEntryNum + 1] = playerX;
+        journalEntries[3 * journalEntryNum + 2] = playerY;
+        journalEntryNum++;
+    }
+
+    /** 写入物体层并记录撤销日志 */
+    private void writeObject(int subMapIndex, int cell, byte code) {
+        MapLayer objectLayer = getSubmap(subMapIndex).getMapLayer(SubMapData.LAYER_OBJECT);
+
+        if (journalSize + 3 > journal.length) journal = Arrays.copyOf(journal, journal.length * 2);
+        journal[journalSize++] = subMapIndex;
+        journal[journalSize++] = cell;
+        journal[journalSize++] = objectLayer.get(cell);
+
+        storeObjectCode(subMapIndex, cell, code);
+    }
+
+    /**
+     * 撤销最近一次发生的移动
+     * <br><br>
+     * 只恢复地图与玩家位置，不会修改 moveEvents；被撤销的移动可以通过 redoMove 重做
+     * @return 是否撤销成功，没有可撤销的移动返回 false
+     */
+    public boolean undoMove() {
+        if (journalEntryNum == 0) return false;
+
+        journalEntryNum--;
+        int entryStart = journalEntries[3 * journalEntryNum];
+
+        // 记录重做信息
+        if (3 * redoEntryNum + 3 > redoEntries.length) redoEntries = Arrays.copyOf(redoEntries, redoEntries.length * 2);
+        redoEntries[3 * redoEntryNum] = redoSize;
+        redoEntries[3 * redoEntryNum + 1] = playerX;
+        redoEntries[3 * redoEntryNum + 2] = playerY;
+        redoEntryNum++;
+
+        // 倒序恢复写入，同时保存被覆盖的编码供重做使用
+        if (redoSize + journalSize - entryStart > redoJournal.length) redoJournal = Arrays.copyOf(redoJournal, Math.max(redoJournal.length * 2, redoSize + journalSize - entryStart));
+        while (journalSize > entryStart) {
+            journalSize -= 3;
+            int subMapIndex = journal[journalSize], cell = journal[journalSize + 1];
+            redoJournal[redoSize++] = subMapIndex;
+            redoJournal[redoSize++] = cell;
+            redoJournal[redoSize++] = getSubmap(subMapIndex).getCode(SubMapData.LAYER_OBJECT, cell);
+            storeObjectCode(subMapIndex, cell, (byte) journal[journalSize + 2]);
+        }
+
+        playerX = journalEntries[3 * journalEntryNum + 1];
+        playerY = journalEntries[3 * journalEntryNum + 2];
+        return true;
+    }
+
+    /**
+     * 重做最近一次被撤销的移动
+     * <br><br>
+     * 只恢复地图与玩家位置，不会修改 moveEvents；重做的移动可以再次撤销
+     * @return 是否重做成功，没有可重做的移动返回 false
+     */
+    public boolean redoMove() {
+        if (redoEntryNum == 0) return false;
+
+        redoEntryNum--;
+        int entryStart = redoEntries[3 * redoEntryNum];
+        beginJournalEntry();
+
+        // 撤销时是倒序记录的，再倒序一次即为原始写入顺序
+        while (redoSize > entryStart) {
+            redoSize -= 3;
+            writeObject(redoJournal[redoSize], redoJournal[redoSize + 1], (byte) redoJournal[redoSize + 2]);
+        }
+
+        playerX = redoEntries[3 * redoEntryNum + 1];
+        playerY = redoEntries[3 * redoEntryNum + 2];
+        return true;
+    }
+
+    /** 可撤销的移动数 */
+    public int getUndoableMoveNum() {
+        return journalEntryNum;
+    }
+
+    /** 可重做的移动数 */
+    public int getRedoableMoveNum() {
+        return redoEntryNum;
+    }
+
+    /** 清空撤销与重做日志，长时间自动运行时可调用以释放内存 */
+    public void clearJournal() {
+        journalSize = 0;
+        journalEntryNum = 0;
+        redoSize = 0;
+        redoEntryNum = 0;
+    }
+
+    /**
+     * 重建目标点完成情况、箱子索引与玩家位置
+     * <br><br>
+     * 设置地图时自动调用，绕过逻辑核心直接修改地图后需要手动调用
+     */
+    public void rebuildIndex() {
+        int subMapNum = map.allMaps.size();
+        boxTargetNum = boxesOnTargets = playerTargetNum = playersOnTargets = 0;
+        boxIdAt = new int[subMapNum][];
+        boxIdChunks = new int[subMapNum][][];
+        boxCells = new int[subMapNum][];
+        boxNum = new int[subMapNum];
+        subMapTargetNum = new int[subMapNum];
+        subMapTargetsDone = new int[subMapNum];
+        subMapHashes = new long[subMapNum];
+        unsolvedSubmapNum = 0;
+        playerSubmap = -1;
+        playerX = playerY = -1;
+        positionHash = 0;
+
+        for (int subMapIndex = 0; subMapIndex < subMapNum; subMapIndex++) {
             SubMapData subMap = getSubmap(subMapIndex);
+            MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+            if (subMap.isChunked()) {
+                int chunkCols = (subMap.width + BOX_CHUNK_MASK) >> ChunkedLayer.CHUNK_SHIFT;
+                int chunkRows = (subMap.height + BOX_CHUNK_MASK) >> ChunkedLayer.CHUNK_SHIFT;
+                boxIdChunks[subMapIndex] = new int[chunkCols * chunkRows][];
+            } else {
+                boxIdAt[subMapIndex] = new int[objectLayer.size()];
+                Arrays.fill(boxIdAt[subMapIndex], -1);
+            }
+            boxCells[subMapIndex] = new int[16];
+
+            // 只遍历物体层的非空格子
+            for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) {
+                byte object = objectLayer.get(cell);
+
+                // 箱子索引
+                if (ObjectClassMapper.isBox(object)) addBox(subMapIndex, cell);
 
-            for (int y = 0; y < subMap.height; y++) {
-                for (int x = 0; x < subMap.width; x++) {
+                // 玩家位置，多个玩家以首次找到为准
+                if (ObjectClassMapper.isPlayer(object)) {
+                    if (playerSubmap == -1) {
+                        playerSubmap = subMapIndex;
+                        playerX = cell % subMap.width;
+                        playerY = cell / subMap.width;
+                    } else {
+                        Logger.warning("PlayerCore", "Find more than one player. Please Check your map");
+                    }
+                }
+            }
 
-                    // 检查箱子目标点
-                    if (getTarget(subMapIndex, x, y) == ObjectType.BoxTarget)
-                        if (!PlayerCoreUtils.isBox(getObject(subMapIndex, x, y))) return false;
+            // 只遍历目标点层的非空格子，统计目标点完成情况
+            MapLayer targetLayer = subMap.getMapLayer(SubMapData.LAYER_TARGET);
+            for (int cell = targetLayer.nextCell(0); cell != -1; cell = targetLayer.nextCell(cell + 1)) {
+                ObjectType target = SubMapData.typeOf(targetLayer.get(cell));
+                byte object = objectLayer.get(cell);
+
+                // 统计箱子目标点
+                if (target == ObjectType.BoxTarget) {
+                    boxTargetNum++;
+                    subMapTargetNum[subMapIndex]++;
+                    if (ObjectClassMapper.isBox(object)) {
+                        boxesOnTargets++;
+                        subMapTargetsDone[subMapIndex]++;
+                    }
+                }
 
-                    // 检查玩家目标点
-                    if (getTarget(subMapIndex, x, y) == ObjectType.PlayerTarget)
-                        if (!PlayerCoreUtils.isPlayer(getObject(subMapIndex, x, y))) return false;
+                // 统计玩家目标点
+                if (target == ObjectType.PlayerTarget) {
+                    playerTargetNum++;
+                    subMapTargetNum[subMapIndex]++;
+                    if (ObjectClassMapper.isPlayer(object)) {
+                        playersOnTargets++;
+                        subMapTargetsDone[subMapIndex]++;
+                    }
                 }
             }
+
+            if (!isSubmapSolved(subMapIndex)) unsolvedSubmapNum++;
+            subMapHashes[subMapIndex] = ZobristHash.hash(subMapIndex, subMap);
+            positionHash ^= subMapHashes[subMapIndex];
         }
+    }
 
-        // 所有检查通过后返回成功
-        Logger.debug("PlayerCore", "Checking succeed passed.");
-        return true;
+    /** 在箱子索引中登记新箱子 */
+    private void addBox(int subMapIndex, int cell) {
+        int boxId = boxNum[subMapIndex]++;
+        if (boxId == boxCells[subMapIndex].length) boxCells[subMapIndex] = Arrays.copyOf(boxCells[subMapIndex], boxId * 2);
+        boxCells[subMapIndex][boxId] = cell;
+        putBoxId(subMapIndex, cell, boxId);
+    }
+
+    /** 从箱子索引中移除箱子，最后一个箱子补到空出的编号上 */
+    private void removeBox(int subMapIndex, int cell) {
+        int boxId = boxAt(subMapIndex, cell);
+        int lastCell = boxCells[subMapIndex][--boxNum[subMapIndex]];
+        boxCells[subMapIndex][boxId] = lastCell;
+        putBoxId(subMapIndex, lastCell, boxId);
+        putBoxId(subMapIndex, cell, -1);
+    }
+
+    /** 写入格子到箱子编号的映射，-1 表示删除 */
+    private void putBoxId(int subMapIndex, int cell, int boxId) {
+        int[] ids = boxIdAt[subMapIndex];
+        if (ids != null) {
+            ids[cell] = boxId;
+            return;
+        }
+
+        SubMapData subMap = getSubmap(subMapIndex);
+        int chunkIndex = boxChunkIndex(subMap, cell);
+        int[] chunk = boxIdChunks[subMapIndex][chunkIndex];
+        if (chunk == null) {
+            if (boxId == -1) return;
+            chunk = new int[ChunkedLayer.CHUNK_SIZE * ChunkedLayer.CHUNK_SIZE];
+            Arrays.fill(chunk, -1);
+            boxIdChunks[subMapIndex][chunkIndex] = chunk;
+        }
+        chunk[boxChunkOffset(subMap, cell)] = boxId;
+    }
+
+    /** 分块箱子编号映射中格子所在的块 */
+    private static int boxChunkIndex(SubMapData subMap, int cell) {
+        int x = cell % subMap.width, y = cell / subMap.width;
+        int chunkCols = (subMap.width + BOX_CHUNK_MASK) >> ChunkedLayer.CHUNK_SHIFT;
+        return (y >> ChunkedLayer.CHUNK_SHIFT) * chunkCols + (x >> ChunkedLayer.CHUNK_SHIFT);
+    }
+
+    /** 格子在块内的下标 */
+    private static int boxChunkOffset(SubMapData subMap, int cell) {
+        int x = cell % subMap.width, y = cell / subMap.width;
+        return (y & BOX_CHUNK_MASK) << ChunkedLayer.CHUNK_SHIFT | (x & BOX_CHUNK_MASK);
+    }
+
+    /** 写入物体编码，同时增量更新目标点完成情况与箱子索引 */
+    private void storeObjectCode(int subMapIndex, int cell, byte code) {
+        SubMapData subMap = getSubmap(subMapIndex);
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        ObjectType target = SubMapData.typeOf(subMap.getCode(SubMapData.LAYER_TARGET, cell));
+        boolean oldBox = ObjectClassMapper.isBox(objectLayer.get(cell));
+        boolean newBox = ObjectClassMapper.isBox(code);
+
+        // 箱子编号只表示索引槽位，格子上箱子被替换为另一个箱子时编号不变
+        if (oldBox && !newBox) removeBox(subMapIndex, cell);
+        if (!oldBox && newBox) addBox(subMapIndex, cell);
+
+        int doneDelta = 0;
+        if (target == ObjectType.BoxTarget) {
+            if (oldBox) doneDelta--;
+            if (newBox) doneDelta++;
+            boxesOnTargets += doneDelta;
+        } else if (target == ObjectType.PlayerTarget) {
+            if (ObjectClassMapper.isPlayer(objectLayer.get(cell))) doneDelta--;
+            if (ObjectClassMapper.isPlayer(code)) doneDelta++;
+            playersOnTargets += doneDelta;
+        }
+        if (doneDelta != 0) {
+            boolean solvedBefore = isSubmapSolved(subMapIndex);
+            subMapTargetsDone[subMapIndex] += doneDelta;
+            if (solvedBefore != isSubmapSolved(subMapIndex)) unsolvedSubmapNum += solvedBefore ? 1 : -1;
+        }
+
+        long hashDelta = ZobristHash.key(subMapIndex, cell, objectLayer.get(cell)) ^ ZobristHash.key(subMapIndex, cell, code);
+        subMapHashes[subMapIndex] ^= hashDelta;
+        positionHash ^= hashDelta;
+        objectLayer.set(cell, code);
+    }
+
+    /**
+     * 获得格子上的箱子编号
+     * @param subMapIndex 子地图索引
+     * @param cell 格子下标 y * width + x
+     * @return 箱子编号，没有箱子返回 -1
+     */
+    public int boxAt(int subMapIndex, int cell) {
+        int[] ids = boxIdAt[subMapIndex];
+        if (ids != null) return ids[cell];
+        SubMapData subMap = getSubmap(subMapIndex);
+        int[] chunk = boxIdChunks[subMapIndex][boxChunkIndex(subMap, cell)];
+        return chunk == null ? -1 : chunk[boxChunkOffset(subMap, cell)];
+    }
+
+    /** 子地图中的箱子数 */
+    public int getBoxNum(int subMapIndex) {
+        return boxNum[subMapIndex];
+    }
+
+    /** 指定编号箱子所在格子，编号范围 [0, getBoxNum) */
+    public int getBoxCell(int subMapIndex, int boxId) {
+        return boxCells[subMapIndex][boxId];
+    }
+
+    /**
+     * 获得子地图中所有箱子所在格子
+     * @param subMapIndex 子地图索引
+     * @return 格子下标数组副本，顺序不固定
+     */
+    public int[] getBoxCells(int subMapIndex) {
+        return Arrays.copyOf(boxCells[subMapIndex], boxNum[subMapIndex]);
+    }
+
+    /** 玩家所在子地图，没有玩家返回 -1 */
+    public int getPlayerSubmap() {
+        return playerSubmap;
+    }
+
+    /**
+     * 检查游戏是否达到胜利条件
+     * <br><br>
+     * 目标点完成情况在每次写入时增量维护，判定为 O(1)
+     * @return 是否胜利
+     */
+    public boolean isGameWin() {
+        // 如果所有的子地图目标点都被覆盖了对应物体，即可判定胜利
+        return unsolvedSubmapNum == 0;
+    }
+
+    /**
+     * 子地图的目标点是否全部完成
+     * <br><br>
+     * 每个子地图的完成情况分别增量维护，判定为 O(1)，与子地图数量无关
+     * @param subMapIndex 子地图索引
+     * @return 是否完成，没有目标点的子地图视为完成
+     */
+    public boolean isSubmapSolved(int subMapIndex) {
+        return subMapTargetsDone[subMapIndex] == subMapTargetNum[subMapIndex];
+    }
+
+    /** 尚未完成的子地图数 */
+    public int getUnsolvedSubmapNum() {
+        return unsolvedSubmapNum;
+    }
+
+    /**
+     * 当前局面的物体层 Zobrist 哈希
+     * <br><br>
+     * 每次写入时增量维护，可用于 O(1) 判断局面是否相同、检测重复局面或作为求解缓存键，
+     * 与 ZobristHash.hash(getMap()) 相等
+     * @return 局面哈希
+     */
+    public long getPositionHash() {
+        return positionHash;
+    }
+
+    /**
+     * 单个子地图物体层的 Zobrist 哈希
+     * <br><br>
+     * 只与该子地图有关，其它子地图变化时不变，可作为按子地图求解时的缓存键；
+     * 所有子地图的哈希异或即为 getPositionHash
+     * @param subMapIndex 子地图索引
+     * @return 子地图哈希
+     */
+    public long getSubmapHash(int subMapIndex) {
+        return subMapHashes[subMapIndex];
+    }
+
+    /** 已经在目标点上的箱子数 */
+    public int getBoxesOnTargets() {
+        return boxesOnTargets;
+    }
+
+    /** 箱子目标点总数 */
+    public int getBoxTargetNum() {
+        return boxTargetNum;
     }
 
     /**
@@ -247,8 +707,29 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
      * @return Player 是否移动
      */
     public boolean move(int subMapIndex, Direction direction) {
-        moveList.clear(); // 重置 moveList
-        return doPush(subMapIndex, playerPos, direction); // 对玩家进行移动
+        return tryMove(subMapIndex, direction).moved;
+    }
+
+    /**
+     * 操控玩家进行指定方向移动，并给出变化描述
+     * @param subMapIndex 进行移动的子地图
+     * @param direction 移动方向
+     * @return 变化描述，为内部复用对象，下一次移动时会被覆盖
+     */
+    public MoveResult tryMove(int subMapIndex, Direction direction) {
+        moveEvents.clear(); // 重置 moveEvents
+        lastMove.reset(subMapIndex, direction);
+        int boxesOnTargetsBefore = boxesOnTargets;
+
+        lastMove.moved = doPush(subMapIndex, playerX, playerY, direction); // 对玩家进行移动
+        lastMove.targetDelta = boxesOnTargets - boxesOnTargetsBefore;
+        lastMove.win = lastMove.moved && isGameWin();
+        return lastMove;
+    }
+
+    /** 最近一次移动的变化描述 */
+    public MoveResult getLastMove() {
+        return lastMove;
     }
 
     public MapData getMap() {
@@ -267,39 +748,66 @@ public class PlayerCore implements DeepClonable<PlayerCore> {
         }
 
         this.map = map;
+        clearJournal();
 
-        // 尝试搜索玩家位置，并返回玩家所在的子地图
-        for (int sumMapIndex = 0; sumMapIndex < map.allMaps.size(); sumMapIndex++) {
-            Pos findingPlayerPos = findPlayerPosition(0);
-            if (findingPlayerPos != null) {
-                playerPos = findingPlayerPos;
-                return sumMapIndex;
-            }
-        }
+        // 一次扫描建立索引，同时找到玩家所在的子地图
+        rebuildIndex();
+        if (playerSubmap != -1) return playerSubmap;
 
         // 未找到
         Logger.warning("PlayerCore", "Can't find any player in map.");
         return -1;
     }
 
+    /**
+     * 获得玩家坐标
+     * <br><br>
+     * 每次调用返回新对象，热点路径请使用 getPlayerX / getPlayerY
+     * @return 玩家坐标，没有玩家返回 null
+     */
     public Pos getPlayerPos() {
-        return playerPos;
+        return playerSubmap == -1 ? null : new Pos(playerX, playerY);
+    }
+
+    /** 玩家横坐标，没有玩家返回 -1 */
+    public int getPlayerX() {
+        return playerX;
+    }
+
+    /** 玩家纵坐标，没有玩家返回 -1 */
+    public int getPlayerY() {
+        return playerY;
+    }
+
+    /**
+     * 获得本轮移动的位移事件
+     * <br><br>
+     * 返回的是内部复用的缓冲，下一次移动时会被覆盖，需要保留时请 deepCopy
+     * @return 位移事件缓冲
+     */
+    public MoveEventBuffer getMoveEvents() {
+        return moveEvents;
     }
 
+    /**
+     * 获得本轮移动的字符串位移列表，仅用于持久化
+     * @return 字符串位移列表
+     */
     public List<String> getMoveList() {
-        return new ArrayList<>(moveList);
+        return MoveListParser.serializeMoves(moveEvents);
     }
 
     @Override
     public PlayerCore deepCopy() {
-        Pos newPlayerPos = playerPos.deepCopy(); // 玩家坐标
-        List<String> newMoveList = new ArrayList<>(moveList); // 这一轮有哪些物块坐标发生了移动
+        MoveEventBuffer newMoveEvents = moveEvents.deepCopy(); // 这一轮有哪些物块坐标发生了移动
         MapData newMap = map.deepCopy(); // 游戏地图
 
         PlayerCore newPlayerCore = new PlayerCore();
         newPlayerCore.setMap(newMap);
-        newPlayerCore.moveList = newMoveList;
-        newPlayerCore.playerPos = newPlayerPos;
+        newPlayerCore.moveEvents = newMoveEvents;
+        newPlayerCore.lastMove.events = newMoveEvents;
+        newPlayerCore.playerX = playerX; // 玩家坐标
+        newPlayerCore.playerY = playerY;
 
         return newPlayerCore;
     }
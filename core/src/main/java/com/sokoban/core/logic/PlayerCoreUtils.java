@@ -10,36 +10,32 @@ import com.sokoban.core.map.SubMapData;
 public class PlayerCoreUtils {
     /** 判断是否为箱子 */
     public static boolean isBox(ObjectType object) {
-        return ObjectClassMapper.typeClass(object) == ObjectType.Box;
+        return ObjectClassMapper.isBox(object.ordinal());
     }
     
     /** 判断是否为玩家 */
     public static boolean isPlayer(ObjectType object) {
-        return ObjectClassMapper.typeClass(object) == ObjectType.Player;
+        return ObjectClassMapper.isPlayer(object.ordinal());
     }
 
     /** 判断是否为墙 */
     public static boolean isWall(ObjectType object) {
-        return ObjectClassMapper.typeClass(object) == ObjectType.Wall;
+        return ObjectClassMapper.isSolid(object.ordinal());
     }
 
     /** 判断指定对象是否是可以被占据的，例如空气 */
     public static boolean isWalkable(ObjectType object) {
-        return object == ObjectType.Air;
+        return ObjectClassMapper.isWalkable(object.ordinal());
     }
 
     /**
      * 给定方向，给出相对位移坐标
+     * <br><br>
+     * Pos 可变，因此每次返回新对象；热点路径请直接使用 direction.dx / direction.dy
      * @return 相对位移坐标，例如 Up -> (0, 1)
      */
     public static Pos getDeltaPos(Direction direction){
-        return switch (direction) {
-            case Direction.Up -> new Pos(0, 1);
-            case Direction.Down -> new Pos(0, -1);
-            case Direction.Left -> new Pos(-1, 0);
-            case Direction.Right -> new Pos(1, 0);
-            default -> new Pos(0, 0);
-        };
+        return new Pos(direction.dx, direction.dy);
     }
 
     /**
@@ -47,11 +43,7 @@ public class PlayerCoreUtils {
      * @return 相对位移坐标，例如 (0, 1) -> UP, 失败返回 Direction.None
      */
     public static Direction getDeltaDirection(Pos deltaPos){
-        if (deltaPos.equals(new Pos(0, 1))) return Direction.Up;
-        if (deltaPos.equals(new Pos(0, -1))) return Direction.Down;
-        if (deltaPos.equals(new Pos(-1, 0))) return Direction.Left;
-        if (deltaPos.equals(new Pos(1, 0))) return Direction.Right;
-        return Direction.None;
+        return Direction.fromDelta(deltaPos.x, deltaPos.y);
     }
 
     /** 物块移动，调用该方法获得位移字符串 */
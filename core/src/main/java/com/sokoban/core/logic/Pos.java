@@ -1,7 +1,5 @@
 package com.sokoban.core.logic;
 
-import java.util.Objects;
-
 import com.sokoban.utils.DeepClonable;
 
 public class Pos implements DeepClonable<Pos> {
@@ -94,6 +92,6 @@ public class Pos implements DeepClonable<Pos> {
 
     @Override
     public int hashCode() {
-        return Objects.hash(x, y, z);
+        return (x * 31 + y) * 31 + z;
     }
 }
@@ -0,0 +1,158 @@
+package com.sokoban.core.logic;
+
+import java.util.Arrays;
+
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 玩家行走距离场，用于点击移动
+ * <br><br>
+ * 以玩家为根，在玩家所在子地图上做一次广度优先搜索，记录不推动箱子时走到每个格子的最少步数。
+ * 结果按局面哈希缓存，局面不变时 update 直接返回，因此悬停预览等逐帧查询为 O(1)；
+ * 只有玩家移动或箱子被推动后才会重新计算。最短路径沿距离递减方向回溯，代价与路径长度成正比
+ * <br><br>
+ * 距离数组按代数标记有效格子，重新计算时不需要清空整张数组，代价只与可到达的格子数有关
+ */
+public class WalkDistanceField {
+    public static final int UNREACHABLE = -1;
+
+    /** 回溯时尝试的方向顺序 */
+    private static final Direction[] DIRECTIONS = {Direction.Up, Direction.Down, Direction.Left, Direction.Right};
+
+    private int[] distance = new int[0]; // 格子 -> 步数，只有 stamp 等于 generation 的格子有效
+    private int[] stamp = new int[0]; // 格子 -> 计算代数
+    private int[] queue = new int[0];
+    private int generation = 0;
+    private int reachableNum = 0;
+
+    // 缓存键
+    private MapData map;
+    private int subMapIndex = -1;
+    private long positionHash;
+    private int width, height;
+
+    /**
+     * 按逻辑核心的当前局面更新距离场
+     * @param playerCore 逻辑核心
+     * @return 是否重新计算，局面未变化时返回 false
+     */
+    public boolean update(PlayerCore playerCore) {
+        int playerSubmap = playerCore.getPlayerSubmap();
+        if (playerSubmap == -1) {
+            invalidate();
+            return false;
+        }
+        if (map == playerCore.getMap() && subMapIndex == playerSubmap && positionHash == playerCore.getPositionHash()) return false;
+
+        map = playerCore.getMap();
+        subMapIndex = playerSubmap;
+        positionHash = playerCore.getPositionHash();
+        compute(playerCore.getSubmap(playerSubmap), playerCore.getPlayerX(), playerCore.getPlayerY());
+        return true;
+    }
+
+    /** 使缓存失效，下次 update 时必定重新计算 */
+    public void invalidate() {
+        map = null;
+        subMapIndex = -1;
+        width = height = 0;
+        reachableNum = 0;
+    }
+
+    /** 从玩家位置出发广度优先搜索 */
+    private void compute(SubMapData subMap, int playerX, int playerY) {
+        width = subMap.width;
+        height = subMap.height;
+        int cellNum = width * height;
+        if (distance.length < cellNum) {
+            distance = new int[cellNum];
+            stamp = new int[cellNum];
+            queue = new int[cellNum];
+            generation = 0;
+        }
+        if (++generation == 0) {
+            // 代数回绕，清空标记
+            Arrays.fill(stamp, 0);
+            generation = 1;
+        }
+
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        int head = 0, tail = 0;
+        int root = playerY * width + playerX;
+        queue[tail++] = root;
+        stamp[root] = generation;
+        distance[root] = 0;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width, y = cell / width;
+            for (Direction direction : DIRECTIONS) {
+                int nextX = x + direction.dx, nextY = y + direction.dy;
+                if (nextX < 0 || nextY < 0 || nextX >= width || nextY >= height) continue;
+                int next = nextY * width + nextX;
+                if (stamp[next] == generation || !ObjectClassMapper.isWalkable(objectLayer.get(next))) continue;
+                stamp[next] = generation;
+                distance[next] = distance[cell] + 1;
+                queue[tail++] = next;
+            }
+        }
+        reachableNum = tail;
+    }
+
+    /** 距离场所在子地图，未计算返回 -1 */
+    public int getSubmapIndex() {
+        return map == null ? -1 : subMapIndex;
+    }
+
+    /** 可到达的格子数（含玩家所在格子） */
+    public int getReachableNum() {
+        return reachableNum;
+    }
+
+    /**
+     * 获得走到指定格子的最少步数
+     * @param x 横坐标
+     * @param y 纵坐标
+     * @return 步数，越界或无法到达返回 UNREACHABLE
+     */
+    public int getDistance(int x, int y) {
+        if (map == null || x < 0 || y < 0 || x >= width || y >= height) return UNREACHABLE;
+        int cell = y * width + x;
+        return stamp[cell] == generation ? distance[cell] : UNREACHABLE;
+    }
+
+    /** 是否可以不推动箱子走到指定格子 */
+    public boolean isReachable(int x, int y) {
+        return getDistance(x, y) != UNREACHABLE;
+    }
+
+    /**
+     * 获得从玩家走到指定格子的最短路径
+     * <br><br>
+     * 从终点沿距离递减方向回溯到玩家，倒序填入行走方向
+     * @param x 终点横坐标
+     * @param y 终点纵坐标
+     * @return 行走方向序列，终点即玩家位置时为空数组；无法到达返回 null
+     */
+    public Direction[] pathTo(int x, int y) {
+        int length = getDistance(x, y);
+        if (length == UNREACHABLE) return null;
+
+        Direction[] path = new Direction[length];
+        for (int step = length - 1; step >= 0; step--) {
+            for (Direction direction : DIRECTIONS) {
+                // 上一步所在格子沿 direction 走到当前格子
+                int fromX = x - direction.dx, fromY = y - direction.dy;
+                if (getDistance(fromX, fromY) == step) {
+                    path[step] = direction;
+                    x = fromX;
+                    y = fromY;
+                    break;
+                }
+            }
+        }
+        return path;
+    }
+}
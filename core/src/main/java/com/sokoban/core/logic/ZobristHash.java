@@ -0,0 +1,58 @@
+package com.sokoban.core.logic;
+
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+
+/**
+ * 物体层 Zobrist 哈希
+ * <br><br>
+ * 局面哈希为所有 (子地图索引, 格子下标, 物体编码) 键值的异或。修改一个格子只需异或掉旧编码的键值、
+ * 再异或上新编码的键值，因此逻辑核心可以在每次写入时 O(1) 维护。
+ * 键值由 splitmix64 混合函数直接算出而不是查随机表，不依赖地图尺寸，且在不同运行之间保持一致，
+ * 可以持久化作为缓存键。空格子（Air）的键值固定为 0，完整计算时只需遍历非空格子
+ * <br><br>
+ * 哈希相同的局面极大概率相同，但仍可能碰撞，需要绝对正确时应再比较地图
+ */
+public final class ZobristHash {
+    private ZobristHash() {}
+
+    /**
+     * 单个格子的键值
+     * @param subMapIndex 子地图索引
+     * @param cell 格子下标 y * width + x
+     * @param code 物体编码
+     * @return 64 位键值，空格子为 0
+     */
+    public static long key(int subMapIndex, int cell, byte code) {
+        if (code == MapLayer.EMPTY) return 0;
+        long z = ((long) subMapIndex << 40 | (long) cell << 8 | (code & 0xFF)) + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * 完整计算地图物体层的哈希
+     * @param map 地图
+     * @return 局面哈希
+     */
+    public static long hash(MapData map) {
+        long hash = 0;
+        for (int subMapIndex = 0; subMapIndex < map.allMaps.size(); subMapIndex++) hash ^= hash(subMapIndex, map.allMaps.get(subMapIndex));
+        return hash;
+    }
+
+    /**
+     * 完整计算单个子地图物体层的哈希
+     * @param subMapIndex 子地图索引，参与键值计算
+     * @param subMap 子地图
+     * @return 子地图哈希
+     */
+    public static long hash(int subMapIndex, SubMapData subMap) {
+        long hash = 0;
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) hash ^= key(subMapIndex, cell, objectLayer.get(cell));
+        return hash;
+    }
+}
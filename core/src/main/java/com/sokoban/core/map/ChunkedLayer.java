@@ -0,0 +1,152 @@
+package com.sokoban.core.map;
+
+import java.util.Arrays;
+
+/**
+ * 分块层，用于超大地图
+ * <br><br>
+ * 地图按 CHUNK_SIZE * CHUNK_SIZE 划分为块，块在第一次写入非空格子时才分配，块内格子全部清空后释放。
+ * 对外仍使用 y * width + x 的格子下标；nextCell 按块跳过未分配的区域，整行块都为空时一次跳过 CHUNK_SIZE 行，
+ * 因此遍历代价只与已分配的块有关，与地图总面积无关
+ */
+public class ChunkedLayer implements MapLayer {
+    public static final int CHUNK_SHIFT = 5;
+    public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT; // 块边长
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    public final int width, height;
+    public final int chunkCols, chunkRows; // 横向与纵向的块数
+    private final byte[][] chunks; // 块编号 chunkY * chunkCols + chunkX -> 块数据，未分配为 null
+    private final int[] chunkCounts; // 每个块的非空格子数
+    private final int[] bandCounts; // 每一行块的非空格子数
+    private int count = 0;
+
+    /**
+     * 构造全空的分块层
+     * @param width 宽
+     * @param height 高
+     */
+    public ChunkedLayer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.chunkCols = (width + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunkRows = (height + CHUNK_MASK) >> CHUNK_SHIFT;
+        this.chunks = new byte[chunkCols * chunkRows][];
+        this.chunkCounts = new int[chunkCols * chunkRows];
+        this.bandCounts = new int[chunkRows];
+    }
+
+    /**
+     * 从其它层复制内容
+     * @param layer 源层
+     * @param width 宽，需满足 width * height == layer.size()
+     */
+    public ChunkedLayer(MapLayer layer, int width) {
+        this(width, layer.size() / width);
+        for (int cell = layer.nextCell(0); cell != -1; cell = layer.nextCell(cell + 1)) set(cell, layer.get(cell));
+    }
+
+    @Override
+    public int size() {
+        return width * height;
+    }
+
+    @Override
+    public byte get(int cell) {
+        int x = cell % width, y = cell / width;
+        byte[] chunk = chunks[(y >> CHUNK_SHIFT) * chunkCols + (x >> CHUNK_SHIFT)];
+        return chunk == null ? EMPTY : chunk[(y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK)];
+    }
+
+    @Override
+    public void set(int cell, byte code) {
+        int x = cell % width, y = cell / width;
+        int chunkIndex = (y >> CHUNK_SHIFT) * chunkCols + (x >> CHUNK_SHIFT);
+        byte[] chunk = chunks[chunkIndex];
+        if (chunk == null) {
+            if (code == EMPTY) return;
+            chunk = chunks[chunkIndex] = newChunk();
+        }
+
+        int offset = (y & CHUNK_MASK) << CHUNK_SHIFT | (x & CHUNK_MASK);
+        int delta = (code != EMPTY ? 1 : 0) - (chunk[offset] != EMPTY ? 1 : 0);
+        chunk[offset] = code;
+        if (delta == 0) return;
+
+        count += delta;
+        bandCounts[y >> CHUNK_SHIFT] += delta;
+        if ((chunkCounts[chunkIndex] += delta) == 0) chunks[chunkIndex] = null; // 块已清空，释放
+    }
+
+    private static byte[] newChunk() {
+        byte[] chunk = new byte[CHUNK_SIZE * CHUNK_SIZE];
+        Arrays.fill(chunk, EMPTY);
+        return chunk;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public int nextCell(int fromCell) {
+        int size = size();
+        int cell = Math.max(0, fromCell);
+        while (cell < size) {
+            int x = cell % width, y = cell / width;
+            int chunkY = y >> CHUNK_SHIFT;
+
+            // 整行块都为空，跳到下一行块的开头
+            if (bandCounts[chunkY] == 0) {
+                cell = (int) Math.min(size, (long) (chunkY + 1) * CHUNK_SIZE * width);
+                continue;
+            }
+
+            // 在当前行中跳过未分配的块
+            int rowOffset = (y & CHUNK_MASK) << CHUNK_SHIFT;
+            for (int chunkX = x >> CHUNK_SHIFT; chunkX < chunkCols; chunkX++) {
+                byte[] chunk = chunks[chunkY * chunkCols + chunkX];
+                if (chunk == null) continue;
+                int endX = Math.min(width, (chunkX + 1) << CHUNK_SHIFT);
+                for (int cellX = Math.max(x, chunkX << CHUNK_SHIFT); cellX < endX; cellX++) {
+                    if (chunk[rowOffset | (cellX & CHUNK_MASK)] != EMPTY) return y * width + cellX;
+                }
+            }
+            cell = (y + 1) * width;
+        }
+        return -1;
+    }
+
+    /**
+     * 获得块数据，供按块渲染或批量处理
+     * @param chunkX 块横坐标
+     * @param chunkY 块纵坐标
+     * @return 块数据，块内下标为 (y % CHUNK_SIZE) * CHUNK_SIZE + x % CHUNK_SIZE；未分配返回 null。不应直接写入
+     */
+    public byte[] getChunk(int chunkX, int chunkY) {
+        return chunks[chunkY * chunkCols + chunkX];
+    }
+
+    /** 已分配的块数 */
+    public int getAllocatedChunkNum() {
+        int num = 0;
+        for (byte[] chunk : chunks) if (chunk != null) num++;
+        return num;
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public ChunkedLayer deepCopy() {
+        ChunkedLayer copy = new ChunkedLayer(width, height);
+        for (int i = 0; i < chunks.length; i++) if (chunks[i] != null) copy.chunks[i] = chunks[i].clone();
+        System.arraycopy(chunkCounts, 0, copy.chunkCounts, 0, chunkCounts.length);
+        System.arraycopy(bandCounts, 0, copy.bandCounts, 0, bandCounts.length);
+        copy.count = count;
+        return copy;
+    }
+}
@@ -0,0 +1,87 @@
+package com.sokoban.core.map;
+
+import java.util.Arrays;
+
+/**
+ * 稠密层，每个格子一个字节
+ * <br><br>
+ * 适合物体层等大部分格子非空的层，读写都是 O(1)，并且可以通过 getData 直接访问原始数组
+ */
+public class DenseLayer implements MapLayer {
+    private final byte[] data;
+
+    /**
+     * 构造全空的稠密层
+     * @param size 格子数
+     */
+    public DenseLayer(int size) {
+        this.data = new byte[size];
+        Arrays.fill(data, EMPTY);
+    }
+
+    /**
+     * 从其它层复制内容
+     * @param layer 源层
+     */
+    public DenseLayer(MapLayer layer) {
+        this(layer.size());
+        for (int cell = layer.nextCell(0); cell != -1; cell = layer.nextCell(cell + 1)) data[cell] = layer.get(cell);
+    }
+
+    private DenseLayer(byte[] data) {
+        this.data = data;
+    }
+
+    /**
+     * 获得原始数组，供热点路径直接读写
+     * @return 原始数组
+     */
+    public byte[] getData() {
+        return data;
+    }
+
+    @Override
+    public int size() {
+        return data.length;
+    }
+
+    @Override
+    public byte get(int cell) {
+        return data[cell];
+    }
+
+    @Override
+    public void set(int cell, byte code) {
+        data[cell] = code;
+    }
+
+    /** 原始数组可能被直接写入，因此每次重新统计 */
+    @Override
+    public int count() {
+        int count = 0;
+        for (byte code : data) if (code != EMPTY) count++;
+        return count;
+    }
+
+    @Override
+    public int nextCell(int fromCell) {
+        for (int cell = Math.max(0, fromCell); cell < data.length; cell++) if (data[cell] != EMPTY) return cell;
+        return -1;
+    }
+
+    @Override
+    public boolean contentEquals(MapLayer another) {
+        if (another instanceof DenseLayer) return Arrays.equals(data, ((DenseLayer) another).data);
+        return another.contentEquals(this);
+    }
+
+    @Override
+    public boolean isSparse() {
+        return false;
+    }
+
+    @Override
+    public DenseLayer deepCopy() {
+        return new DenseLayer(data.clone());
+    }
+}
@@ -67,8 +67,8 @@ public class MapFileParser {
         // 逐元素转换
         for (int y = 0; y < map.allMaps.getLast().height; y++) {
             for (int x = 0; x < map.allMaps.getLast().width; x++) {
-                map.allMaps.getLast().getObjectLayer()[y][x] = MapMapper.MapCharToObjectType(charMap[y][x]);
-                map.allMaps.getLast().getTargetLayer()[y][x] = MapMapper.MapCharToTargetType(charMap[y][x]);
+                map.allMaps.getLast().setObject(x, y, MapMapper.MapCharToObjectType(charMap[y][x]));
+                map.allMaps.getLast().setTarget(x, y, MapMapper.MapCharToTargetType(charMap[y][x]));
             }
         }
     
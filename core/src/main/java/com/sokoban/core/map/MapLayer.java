@@ -0,0 +1,61 @@
+package com.sokoban.core.map;
+
+import com.sokoban.core.logic.ObjectType;
+import com.sokoban.utils.DeepClonable;
+
+/**
+ * 子地图单层存储
+ * <br><br>
+ * 格子下标为 y * width + x，值为类型编码，未写入的格子为 Air。
+ * 不同实现只在存储方式上有区别，比较与哈希只看内容，稠密层与稀疏层内容相同即相等
+ */
+public interface MapLayer extends DeepClonable<MapLayer> {
+    public static final byte EMPTY = (byte) ObjectType.Air.ordinal(); // 空格子的编码
+
+    /** 格子总数 */
+    public int size();
+
+    /** 获得格子编码 */
+    public byte get(int cell);
+
+    /** 设置格子编码 */
+    public void set(int cell, byte code);
+
+    /** 非空格子数 */
+    public int count();
+
+    /**
+     * 查找下一个非空格子，用于只遍历非空格子
+     * <br><br>
+     * 用法：for (int cell = layer.nextCell(0); cell != -1; cell = layer.nextCell(cell + 1))
+     * @param fromCell 起始格子（含）
+     * @return 不小于 fromCell 的第一个非空格子，没有返回 -1
+     */
+    public int nextCell(int fromCell);
+
+    /** 是否为稀疏存储 */
+    public boolean isSparse();
+
+    /**
+     * 内容是否相同
+     * @param another 另一层
+     * @return 格子数与每个格子的编码都相同时返回 true
+     */
+    public default boolean contentEquals(MapLayer another) {
+        if (size() != another.size()) return false;
+        for (int cell = nextCell(0); cell != -1; cell = nextCell(cell + 1)) {
+            if (another.get(cell) != get(cell)) return false;
+        }
+        for (int cell = another.nextCell(0); cell != -1; cell = another.nextCell(cell + 1)) {
+            if (get(cell) == EMPTY) return false;
+        }
+        return true;
+    }
+
+    /** 只与内容有关的哈希 */
+    public default int contentHash() {
+        int hash = size();
+        for (int cell = nextCell(0); cell != -1; cell = nextCell(cell + 1)) hash = hash * 31 + (cell * 131 + get(cell));
+        return hash;
+    }
+}
@@ -3,12 +3,35 @@ package com.sokoban.core.map;
 import com.sokoban.core.logic.ObjectType;
 
 public class MapMapper {
+    private static final int MAX_NUM = 41; // 地图整数编码的最大值
+    private static final int[] TYPE_TO_NUM = new int[ObjectType.values().length]; // 序号 -> 整数
+    private static final ObjectType[] NUM_TO_TYPE = new ObjectType[MAX_NUM + 1]; // 整数 -> 地图元素
+
+    static {
+        for (ObjectType type : ObjectType.values()) TYPE_TO_NUM[type.ordinal()] = computeNum(type);
+        for (int num = 0; num <= MAX_NUM; num++) NUM_TO_TYPE[num] = computeType(num);
+    }
+
     /**
      * 映射地图元素到整数
      * @param obj 地图元素
      * @return 对应整数
      */
     public static int mapObjectTypeToNum(ObjectType obj) {
+        return TYPE_TO_NUM[obj.ordinal()];
+    }
+
+    /**
+     * 映射整数到地图元素
+     * @param num 整数
+     * @return 地图元素
+     */
+    public static ObjectType MapNumToType(int num) {
+        if (num < 0 || num > MAX_NUM) return ObjectType.Unknown;
+        return NUM_TO_TYPE[num];
+    }
+
+    private static int computeNum(ObjectType obj) {
         return switch (obj) {
             case ObjectType.Air -> 0;
             case ObjectType.Wall -> 1;
@@ -27,12 +50,7 @@ public class MapMapper {
         };
     }
 
-    /**
-     * 映射整数到地图元素
-     * @param num 整数
-     * @return 地图元素
-     */
-    public static ObjectType MapNumToType(int num) {
+    private static ObjectType computeType(int num) {
         return switch (num) {
             case 0 -> ObjectType.Air;
             case 1 -> ObjectType.Wall;
@@ -0,0 +1,132 @@
+package com.sokoban.core.map;
+
+import java.util.Arrays;
+
+import com.sokoban.utils.DeepClonable;
+
+/**
+ * 移动事件缓冲
+ * <br><br>
+ * 以 int 数组连续存放每次移动产生的物块位移 (子地图索引, 层索引, 原 x, 原 y, 新 x, 新 y)，
+ * 逻辑核心每轮移动复用同一个缓冲，避免产生字符串等临时对象。
+ * 只在持久化时通过 {@link MoveListParser} 转换为字符串
+ */
+public class MoveEventBuffer implements DeepClonable<MoveEventBuffer> {
+    private static final int STRIDE = 6; // 每条记录占用的 int 数
+
+    private int[] data;
+    private int size = 0; // 记录数
+
+    /** 单条位移的遍历回调 */
+    @FunctionalInterface
+    public interface MoveEventConsumer {
+        void accept(int subMapIndex, int layerIndex, int fromX, int fromY, int toX, int toY);
+    }
+
+    public MoveEventBuffer() {
+        data = new int[STRIDE * 8];
+    }
+
+    /** 追加一条位移 */
+    public void add(int subMapIndex, int layerIndex, int fromX, int fromY, int toX, int toY) {
+        int offset = size * STRIDE;
+        if (offset + STRIDE > data.length) data = Arrays.copyOf(data, data.length * 2);
+        data[offset] = subMapIndex;
+        data[offset + 1] = layerIndex;
+        data[offset + 2] = fromX;
+        data[offset + 3] = fromY;
+        data[offset + 4] = toX;
+        data[offset + 5] = toY;
+        size++;
+    }
+
+    /** 清空记录，保留已分配的空间 */
+    public void clear() {
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int subMapIndex(int index) {
+        return data[index * STRIDE];
+    }
+
+    public int layerIndex(int index) {
+        return data[index * STRIDE + 1];
+    }
+
+    public int fromX(int index) {
+        return data[index * STRIDE + 2];
+    }
+
+    public int fromY(int index) {
+        return data[index * STRIDE + 3];
+    }
+
+    public int toX(int index) {
+        return data[index * STRIDE + 4];
+    }
+
+    public int toY(int index) {
+        return data[index * STRIDE + 5];
+    }
+
+    /** 按记录顺序遍历所有位移 */
+    public void forEach(MoveEventConsumer consumer) {
+        for (int index = 0; index < size; index++) {
+            int offset = index * STRIDE;
+            consumer.accept(data[offset], data[offset + 1], data[offset + 2], data[offset + 3], data[offset + 4], data[offset + 5]);
+        }
+    }
+
+    /**
+     * 反演移动信息
+     * @return 原位置与新位置互换后的新缓冲
+     */
+    public MoveEventBuffer inverse() {
+        MoveEventBuffer inversed = new MoveEventBuffer();
+        for (int index = 0; index < size; index++) {
+            inversed.add(subMapIndex(index), layerIndex(index), toX(index), toY(index), fromX(index), fromY(index));
+        }
+        return inversed;
+    }
+
+    /** 用另一个缓冲的内容覆盖当前缓冲 */
+    public void copyFrom(MoveEventBuffer another) {
+        if (data.length < another.size * STRIDE) data = new int[another.data.length];
+        System.arraycopy(another.data, 0, data, 0, another.size * STRIDE);
+        size = another.size;
+    }
+
+    @Override
+    public MoveEventBuffer deepCopy() {
+        MoveEventBuffer newBuffer = new MoveEventBuffer();
+        newBuffer.copyFrom(this);
+        return newBuffer;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof MoveEventBuffer)) return false;
+        MoveEventBuffer another = (MoveEventBuffer) obj;
+        return size == another.size && Arrays.equals(data, 0, size * STRIDE, another.data, 0, size * STRIDE);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < size * STRIDE; i++) hash = hash * 31 + data[i];
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return MoveListParser.serializeMoves(this).toString();
+    }
+}
@@ -1,5 +1,6 @@
 package com.sokoban.core.map;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -88,6 +89,32 @@ public class MoveListParser {
         return moves.stream().map(MoveListParser::serializeMove).toList(); // 解析每个对象
     }
 
+    /**
+     * 将移动事件缓冲序列化为字符串指令，仅在持久化时使用
+     * @param moves 移动事件缓冲
+     * @return 字符串指令 List
+     */
+    public static List<String> serializeMoves(MoveEventBuffer moves) {
+        List<String> result = new ArrayList<>(moves.size());
+        moves.forEach((subMapIndex, layerIndex, fromX, fromY, toX, toY) -> result.add(
+            String.format("%d %d %d %d %d %d", subMapIndex, layerIndex, fromX, fromY, toX, toY)
+        ));
+        return result;
+    }
+
+    /**
+     * 将字符串指令解析为移动事件缓冲
+     * @param moves 字符串指令 List
+     * @return 移动事件缓冲，无法解析的指令会被跳过
+     */
+    public static MoveEventBuffer parseMoves(List<String> moves) {
+        MoveEventBuffer result = new MoveEventBuffer();
+        for (MoveInfo move : parseMove(moves)) {
+            if (move != null) result.add(move.subMapIndex, move.layerIndex, move.origin.getX(), move.origin.getY(), move.to.getX(), move.to.getY());
+        }
+        return result;
+    }
+
     /**
      * 反演移动信息
      * @param moves 原移动信息
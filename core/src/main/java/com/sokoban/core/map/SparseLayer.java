@@ -0,0 +1,130 @@
+package com.sokoban.core.map;
+
+import java.util.Arrays;
+
+/**
+ * 稀疏层，只保存非空格子
+ * <br><br>
+ * 非空格子按下标升序存放在 cells 中，编码存放在对应位置的 values 中。
+ * 读取为二分查找 O(log k)，遍历非空格子为 O(k)，适合目标点层、装饰层这类大部分格子为空的层
+ */
+public class SparseLayer implements MapLayer {
+    private final int size;
+    private int[] cells;
+    private byte[] values;
+    private int count = 0;
+
+    /**
+     * 构造全空的稀疏层
+     * @param size 格子数
+     */
+    public SparseLayer(int size) {
+        this.size = size;
+        this.cells = new int[4];
+        this.values = new byte[4];
+    }
+
+    /**
+     * 从其它层复制内容
+     * @param layer 源层
+     */
+    public SparseLayer(MapLayer layer) {
+        this.size = layer.size();
+        int capacity = Math.max(4, layer.count());
+        this.cells = new int[capacity];
+        this.values = new byte[capacity];
+        for (int cell = layer.nextCell(0); cell != -1; cell = layer.nextCell(cell + 1)) {
+            cells[count] = cell;
+            values[count] = layer.get(cell);
+            count++;
+        }
+    }
+
+    private SparseLayer(int size, int[] cells, byte[] values, int count) {
+        this.size = size;
+        this.cells = cells;
+        this.values = values;
+        this.count = count;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public byte get(int cell) {
+        int index = Arrays.binarySearch(cells, 0, count, cell);
+        return index >= 0 ? values[index] : EMPTY;
+    }
+
+    @Override
+    public void set(int cell, byte code) {
+        int index = Arrays.binarySearch(cells, 0, count, cell);
+        if (index >= 0) {
+            if (code != EMPTY) {
+                values[index] = code;
+            } else {
+                // 删除，后面的条目前移
+                System.arraycopy(cells, index + 1, cells, index, count - index - 1);
+                System.arraycopy(values, index + 1, values, index, count - index - 1);
+                count--;
+            }
+            return;
+        }
+        if (code == EMPTY) return;
+
+        // 插入，后面的条目后移
+        index = -index - 1;
+        if (count == cells.length) {
+            cells = Arrays.copyOf(cells, count * 2);
+            values = Arrays.copyOf(values, count * 2);
+        }
+        System.arraycopy(cells, index, cells, index + 1, count - index);
+        System.arraycopy(values, index, values, index + 1, count - index);
+        cells[index] = cell;
+        values[index] = code;
+        count++;
+    }
+
+    @Override
+    public int count() {
+        return count;
+    }
+
+    @Override
+    public int nextCell(int fromCell) {
+        int index = Arrays.binarySearch(cells, 0, count, fromCell);
+        if (index < 0) index = -index - 1;
+        return index < count ? cells[index] : -1;
+    }
+
+    /**
+     * 第 index 个非空格子，顺序遍历时比 nextCell 更快
+     * @param index 范围 [0, count)
+     * @return 格子下标
+     */
+    public int cellAt(int index) {
+        return cells[index];
+    }
+
+    /**
+     * 第 index 个非空格子的编码
+     * @param index 范围 [0, count)
+     * @return 类型编码
+     */
+    public byte valueAt(int index) {
+        return values[index];
+    }
+
+    @Override
+    public boolean isSparse() {
+        return true;
+    }
+
+    @Override
+    public SparseLayer deepCopy() {
+        int capacity = Math.max(4, count);
+        return new SparseLayer(size, Arrays.copyOf(cells, capacity), Arrays.copyOf(values, capacity), count);
+    }
+}
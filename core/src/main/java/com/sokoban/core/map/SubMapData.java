@@ -1,19 +1,34 @@
 package com.sokoban.core.map;
 
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.List;
 
 import com.sokoban.core.logic.ObjectType;
 import com.sokoban.utils.DeepClonable;
 
+/**
+ * 子地图数据类
+ * <br><br>
+ * 每一层是一个 MapLayer，下标为 y * width + x，值为 ObjectType 的序号。
+ * 物体层始终为稠密存储；目标点层与装饰层通常只有少量非空格子，初始为稀疏存储，
+ * 非空格子超过 1 / SPARSE_DENSITY 时自动转为稠密存储，compact 可按当前密度重新选择。
+ * 格子数不少于 CHUNKED_MIN_CELLS 的超大子地图用按需分配的分块存储（ChunkedLayer）代替稠密存储，
+ * 内存与遍历代价只与有内容的区域有关。
+ * 逻辑与算法应使用 get / set / getCode / getMapLayer 等快速访问方法；
+ * getObjectLayer 等返回 ObjectType[][] 的方法仅为界面与序列化保留，返回的是副本，修改不会写回地图
+ */
 public class SubMapData implements DeepClonable<SubMapData> {
     public int height = 0, width = 0; // 子地图高与宽
-    public List<ObjectType[][]> mapLayer = new ArrayList<>();
+    private final MapLayer[] layers; // 每层的存储
 
     public static final int LAYER_OBJECT = 2; // 存放地图物体的层索引
     public static final int LAYER_TARGET = 1; // 存放地图目标点的层索引
     public static final int LAYER_DECORATION = 0; // 存放地图装饰的层索引
+    public static final int LAYER_NUM = 3; // 层数
+    public static final int SPARSE_DENSITY = 8; // 稀疏层非空格子超过 1 / SPARSE_DENSITY 时转为稠密层
+    public static final int CHUNKED_MIN_CELLS = 256 * 256; // 格子数不少于此值的子地图使用分块存储代替稠密存储
+
+    private static final ObjectType[] TYPES = ObjectType.values(); // 序号到类型的映射
 
     /**
      * 子地图数据类构造，预留好对应的层
@@ -21,44 +36,177 @@ public class SubMapData implements DeepClonable<SubMapData> {
      * @param width 子地图宽
      */
     public SubMapData(int height, int width) {
+        this(height, width, new MapLayer[LAYER_NUM]);
+
+        // 初始化每一层，全部为空气
+        for (int layer = 0; layer < LAYER_NUM; layer++) {
+            if (layer != LAYER_OBJECT) layers[layer] = new SparseLayer(height * width);
+            else layers[layer] = isChunked() ? new ChunkedLayer(width, height) : new DenseLayer(height * width);
+        }
+    }
+
+    private SubMapData(int height, int width, MapLayer[] layers) {
         this.height = height;
         this.width = width;
+        this.layers = layers;
+    }
+
+    /** 类型对应的存储编码 */
+    public static byte codeOf(ObjectType type) {
+        return (byte) type.ordinal();
+    }
+
+    /** 存储编码对应的类型 */
+    public static ObjectType typeOf(byte code) {
+        return TYPES[code];
+    }
+
+    /** 是否为使用分块存储的超大子地图 */
+    public boolean isChunked() {
+        return (long) height * width >= CHUNKED_MIN_CELLS;
+    }
+
+    /** 坐标对应的一维下标 */
+    public int index(int x, int y) {
+        return y * width + x;
+    }
+
+    /** 获得指定层对应位置的类型 */
+    public ObjectType get(int layer, int x, int y) {
+        return TYPES[layers[layer].get(y * width + x)];
+    }
+
+    /** 设置指定层对应位置的类型 */
+    public void set(int layer, int x, int y, ObjectType type) {
+        setCode(layer, y * width + x, (byte) type.ordinal());
+    }
+
+    /** 获得指定层对应格子的编码 */
+    public byte getCode(int layer, int cell) {
+        return layers[layer].get(cell);
+    }
+
+    /** 设置指定层对应格子的编码，稀疏层过密时转为稠密层（超大子地图转为分块层） */
+    public void setCode(int layer, int cell, byte code) {
+        MapLayer mapLayer = layers[layer];
+        mapLayer.set(cell, code);
+        if (mapLayer instanceof SparseLayer && mapLayer.count() * SPARSE_DENSITY > mapLayer.size()) {
+            layers[layer] = isChunked() ? new ChunkedLayer(mapLayer, width) : new DenseLayer(mapLayer);
+        }
+    }
+
+    public ObjectType getObject(int x, int y) {
+        return get(LAYER_OBJECT, x, y);
+    }
+
+    public void setObject(int x, int y, ObjectType type) {
+        set(LAYER_OBJECT, x, y, type);
+    }
+
+    public ObjectType getTarget(int x, int y) {
+        return get(LAYER_TARGET, x, y);
+    }
+
+    public void setTarget(int x, int y, ObjectType type) {
+        set(LAYER_TARGET, x, y, type);
+    }
+
+    /**
+     * 获得指定层的存储，可用 nextCell 只遍历非空格子
+     * @param layer 层索引
+     * @return 层存储，稀疏层转为稠密层后会变为另一个对象，不应长期持有
+     */
+    public MapLayer getMapLayer(int layer) {
+        return layers[layer];
+    }
 
-        // 添加 3 层
-        mapLayer.add(new ObjectType[height][width]);
-        mapLayer.add(new ObjectType[height][width]);
-        mapLayer.add(new ObjectType[height][width]);
+    /**
+     * 获得指定层的原始数据，供热点路径直接读写
+     * <br><br>
+     * 稀疏层与分块层会先转为稠密层，超大子地图上会分配完整大小的数组；
+     * 通用代码请使用 getCode / setCode / getMapLayer
+     * @param layer 层索引
+     * @return 一维数据，下标为 y * width + x，值为类型编码
+     */
+    public byte[] getLayerData(int layer) {
+        if (!(layers[layer] instanceof DenseLayer)) layers[layer] = new DenseLayer(layers[layer]);
+        return ((DenseLayer) layers[layer]).getData();
+    }
 
-        // 初始化每一层
-        for (ObjectType[][] layer : mapLayer) {
-            for (ObjectType[] line : layer) {
-                Arrays.fill(line, ObjectType.Air);
+    /**
+     * 按当前密度重新选择各层的存储方式
+     * <br><br>
+     * 非空格子不超过 1 / (2 * SPARSE_DENSITY) 的目标点层与装饰层转为稀疏层，留出余量避免在阈值附近反复转换；
+     * 超大子地图上被 getLayerData 转为稠密的层转回分块层
+     */
+    public void compact() {
+        for (int layer = 0; layer < LAYER_NUM; layer++) {
+            MapLayer mapLayer = layers[layer];
+            if (layer != LAYER_OBJECT && !(mapLayer instanceof SparseLayer) && mapLayer.count() * 2 * SPARSE_DENSITY <= mapLayer.size()) {
+                layers[layer] = new SparseLayer(mapLayer);
+            } else if (isChunked() && mapLayer instanceof DenseLayer) {
+                layers[layer] = new ChunkedLayer(mapLayer, width);
             }
         }
     }
 
+    /**
+     * 获得指定层的二维副本
+     * @param layer 层索引
+     * @return 二维数据，修改不会写回地图
+     */
+    public ObjectType[][] getLayer(int layer) {
+        ObjectType[][] result = new ObjectType[height][width];
+        MapLayer data = layers[layer];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) result[y][x] = TYPES[data.get(y * width + x)];
+        }
+        return result;
+    }
+
+    /**
+     * 使用二维数据覆盖指定层
+     * @param layer 层索引
+     * @param data 二维数据，尺寸需与子地图一致
+     */
+    public void setLayer(int layer, ObjectType[][] data) {
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) setCode(layer, y * width + x, (byte) data[y][x].ordinal());
+        }
+    }
+
+    /**
+     * 获得所有层的二维副本，按层索引排列
+     * @return 各层数据，修改不会写回地图
+     */
+    public List<ObjectType[][]> getMapLayers() {
+        List<ObjectType[][]> mapLayer = new ArrayList<>();
+        for (int layer = 0; layer < LAYER_NUM; layer++) mapLayer.add(getLayer(layer));
+        return mapLayer;
+    }
+
     /**
      * 获得物体层
-     * @return 物体层数据
+     * @return 物体层数据副本
      */
     public ObjectType[][] getObjectLayer() {
-        return mapLayer.get(LAYER_OBJECT);
+        return getLayer(LAYER_OBJECT);
     }
 
     /**
      * 获得目标点层
-     * @return 目标点层数据
+     * @return 目标点层数据副本
      */
     public ObjectType[][] getTargetLayer() {
-        return mapLayer.get(LAYER_TARGET);
+        return getLayer(LAYER_TARGET);
     }
 
     /**
      * 获得装饰层
-     * @return 装饰层数据
+     * @return 装饰层数据副本
      */
     public ObjectType[][] getDecorationLayer() {
-        return mapLayer.get(LAYER_DECORATION);
+        return getLayer(LAYER_DECORATION);
     }
 
     @Override
@@ -70,28 +218,27 @@ public class SubMapData implements DeepClonable<SubMapData> {
         if (anotherSubMap.height != height || anotherSubMap.width != width) return false;
 
         // 判断每一层是否一致
-        for (int i = 0; i < mapLayer.size(); i++) {
-            if (!java.util.Arrays.deepEquals(mapLayer.get(i), anotherSubMap.mapLayer.get(i))) return false;
+        for (int i = 0; i < LAYER_NUM; i++) {
+            if (!layers[i].contentEquals(anotherSubMap.layers[i])) return false;
         }
 
         return true;
     }
 
+    @Override
+    public int hashCode() {
+        int hash = width;
+        for (MapLayer layer : layers) hash = hash * 31 + layer.contentHash();
+        return hash;
+    }
+
     /**
      * 复制当前对象
      * @return 新对象，与原对象不是同一个引用
      */
     public SubMapData deepCopy() {
-        SubMapData newMap = new SubMapData(height, width);
-        
-        // 对于每一个层
-        for (int layerIndex = 0; layerIndex < newMap.mapLayer.size(); layerIndex++) {
-            // 对于每一行
-            for (int line = 0; line < newMap.mapLayer.get(layerIndex).length; line++) {
-                newMap.mapLayer.get(layerIndex)[line] = mapLayer.get(layerIndex)[line].clone();
-            }
-        }
-
-        return newMap;
+        MapLayer[] newLayers = new MapLayer[LAYER_NUM];
+        for (int layer = 0; layer < LAYER_NUM; layer++) newLayers[layer] = layers[layer].deepCopy();
+        return new SubMapData(height, width, newLayers);
     }
 }
@@ -0,0 +1,24 @@
+package com.sokoban.core.map.serialize;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.sokoban.core.map.MoveEventBuffer;
+import com.sokoban.core.map.MoveListParser;
+
+public class MoveEventBufferDeserializer extends JsonDeserializer<MoveEventBuffer> {
+    @Override
+    public MoveEventBuffer deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+        JsonNode node = p.getCodec().readTree(p);
+
+        List<String> moves = new ArrayList<>();
+        for (JsonNode moveNode : node) moves.add(moveNode.asText());
+
+        return MoveListParser.parseMoves(moves);
+    }
+}
@@ -0,0 +1,18 @@
+package com.sokoban.core.map.serialize;
+
+import java.io.IOException;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.sokoban.core.map.MoveEventBuffer;
+import com.sokoban.core.map.MoveListParser;
+
+public class MoveEventBufferSerializer extends JsonSerializer<MoveEventBuffer> {
+    @Override
+    public void serialize(MoveEventBuffer value, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+        gen.writeStartArray();
+        for (String move : MoveListParser.serializeMoves(value)) gen.writeString(move); // 与原字符串位移格式一致
+        gen.writeEndArray();
+    }
+}
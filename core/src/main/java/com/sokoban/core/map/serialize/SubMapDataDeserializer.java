@@ -9,8 +9,6 @@ import com.sokoban.core.logic.ObjectType;
 import com.sokoban.core.map.SubMapData;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
 
 public class SubMapDataDeserializer extends JsonDeserializer<SubMapData> {
     @Override
@@ -20,10 +18,28 @@ public class SubMapDataDeserializer extends JsonDeserializer<SubMapData> {
         int height = node.get("height").asInt(); // 获取 height
         int width = node.get("width").asInt();   // 获取 width
 
-        List<ObjectType[][]> mapLayer = new ArrayList<>();
+        SubMapData subMapData = new SubMapData(height, width);
+
+        // 超大子地图的稀疏格式
+        if (node.has("sparseLayer")) {
+            int layerIndex = 0;
+            for (JsonNode layerNode : node.get("sparseLayer")) {
+                if (layerIndex >= SubMapData.LAYER_NUM) break; // 忽略多余的层
+                for (JsonNode cellNode : layerNode) {
+                    int cell = cellNode.get(0).asInt();
+                    if (cell < 0 || cell >= height * width) throw new IOException("Cell out of bound: " + cell);
+                    subMapData.setCode(layerIndex, cell, SubMapData.codeOf(ObjectType.valueOf(cellNode.get(1).asText())));
+                }
+                layerIndex++;
+            }
+            return subMapData;
+        }
+
         ArrayNode layersNode = (ArrayNode) node.get("mapLayer");
 
+        int layerIndex = 0;
         for (JsonNode layerNode : layersNode) {
+            if (layerIndex >= SubMapData.LAYER_NUM) break; // 忽略多余的层
             ObjectType[][] layer = new ObjectType[height][width];
             int rowIndex = 0;
 
@@ -38,11 +54,9 @@ public class SubMapDataDeserializer extends JsonDeserializer<SubMapData> {
                 layer[rowIndex++] = row;
             }
 
-            mapLayer.add(layer);
+            subMapData.setLayer(layerIndex++, layer);
         }
 
-        SubMapData subMapData = new SubMapData(height, width);
-        subMapData.mapLayer = mapLayer;
         return subMapData;
     }
 }
@@ -6,6 +6,7 @@ import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.sokoban.core.logic.ObjectType;
+import com.sokoban.core.map.MapLayer;
 import com.sokoban.core.map.SubMapData;
 
 public class SubMapDataSerializer extends JsonSerializer<SubMapData> {
@@ -15,8 +16,27 @@ public class SubMapDataSerializer extends JsonSerializer<SubMapData> {
         gen.writeNumberField("height", value.height);
         gen.writeNumberField("width", value.width);
 
+        // 分块存储的超大子地图只写入非空格子：每层为 [格子下标, 枚举名称] 的列表
+        if (value.isChunked()) {
+            gen.writeArrayFieldStart("sparseLayer");
+            for (int layerIndex = 0; layerIndex < SubMapData.LAYER_NUM; layerIndex++) {
+                MapLayer layer = value.getMapLayer(layerIndex);
+                gen.writeStartArray();
+                for (int cell = layer.nextCell(0); cell != -1; cell = layer.nextCell(cell + 1)) {
+                    gen.writeStartArray();
+                    gen.writeNumber(cell);
+                    gen.writeString(SubMapData.typeOf(layer.get(cell)).name());
+                    gen.writeEndArray();
+                }
+                gen.writeEndArray();
+            }
+            gen.writeEndArray();
+            gen.writeEndObject();
+            return;
+        }
+
         gen.writeArrayFieldStart("mapLayer");
-        for (ObjectType[][] layer : value.mapLayer) {
+        for (ObjectType[][] layer : value.getMapLayers()) {
             gen.writeStartArray();
             for (ObjectType[] row : layer) {
                 gen.writeStartArray();
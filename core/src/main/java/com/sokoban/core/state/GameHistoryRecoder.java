@@ -3,23 +3,36 @@ package com.sokoban.core.state;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import com.sokoban.core.game.GameParams;
 import com.sokoban.core.json.JsonManager;
-import com.sokoban.core.map.MoveListParser;
+import com.sokoban.core.logic.ZobristHash;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MoveEventBuffer;
+import com.sokoban.core.map.SubMapData;
 
 /**
  * 游戏历史记录
  * <br><br>
  * @author Life_Checkpoint
  * 记录了每一帧游戏
+ * <br><br>
+ * 每隔 KEYFRAME_INTERVAL 帧保存一次完整地图作为关键帧，其余帧只保存格子变化，
+ * 读取某一帧时从最近的关键帧开始重放
  */
 public class GameHistoryRecoder {
+    public static final int KEYFRAME_INTERVAL = 64; // 关键帧间隔
+
     private GameParams gameParams;
     private List<GameStateFrame> stateFrame;
+    private List<GameStateFrame> redoFrame = new ArrayList<>(); // 被撤销、可以重做的帧，最近撤销的在末尾
+    private Map<Long, Integer> firstFrameIndex = new HashMap<>(); // 局面哈希 -> 最早到达该局面的帧下标
 
     public GameHistoryRecoder() {
         gameParams = new GameParams();
@@ -40,16 +53,100 @@ public class GameHistoryRecoder {
     }
 
     /**
-     * 添加新帧
+     * 添加新帧，帧中需要已经包含完整地图或格子变化
      * @param frame 新游戏帧
      */
     public void addNewFrame(GameStateFrame frame) {
+        if (frame.hasFullMap()) frame.positionHash = ZobristHash.hash(frame.mapData);
         stateFrame.add(frame);
+        indexLastFrame();
+        redoFrame.clear();
+    }
+
+    /**
+     * 添加一次移动产生的新帧
+     * <br><br>
+     * 到达关键帧位置时保存完整地图，否则只根据位移事件记录发生变化的格子
+     * @param frame 新游戏帧，需要已经填写 moves
+     * @param currentMap 移动完成后的地图
+     */
+    public void addMoveFrame(GameStateFrame frame, MapData currentMap) {
+        if (stateFrame.isEmpty() || stateFrame.size() % KEYFRAME_INTERVAL == 0) {
+            frame.mapData = currentMap.deepCopy();
+            frame.cellChanges = null;
+        } else {
+            frame.mapData = null;
+            frame.cellChanges = collectCellChanges(frame.moves, currentMap);
+        }
+        stateFrame.add(frame);
+        indexLastFrame();
+        redoFrame.clear();
+    }
+
+    /** 登记最新帧的局面哈希，已经到达过的局面保留最早的帧 */
+    private void indexLastFrame() {
+        firstFrameIndex.putIfAbsent(stateFrame.getLast().positionHash, stateFrame.size() - 1);
+    }
+
+    /** 移除最新帧的局面哈希登记，只有该帧是最早到达者时才需要移除 */
+    private void unindexLastFrame() {
+        firstFrameIndex.remove(stateFrame.getLast().positionHash, stateFrame.size() - 1);
+    }
+
+    /**
+     * 查找最早到达指定局面的帧
+     * <br><br>
+     * 按哈希 O(1) 查找，可用于提示玩家回到了之前的局面，或将绕圈的历史截断到该帧
+     * @param positionHash 局面哈希，见 PlayerCore.getPositionHash
+     * @return 帧下标，没有到达过返回 -1
+     */
+    public int findFrame(long positionHash) {
+        return firstFrameIndex.getOrDefault(positionHash, -1);
+    }
+
+    /**
+     * 根据位移事件收集发生变化的格子
+     * @param moves 位移事件
+     * @param currentMap 移动完成后的地图
+     * @return 每四项为 (子地图索引, 层索引, 格子下标, 新编码)
+     */
+    public static int[] collectCellChanges(MoveEventBuffer moves, MapData currentMap) {
+        int[] changes = new int[moves.size() * 8];
+        int size = 0;
+        for (int i = 0; i < moves.size(); i++) {
+            int subMapIndex = moves.subMapIndex(i), layerIndex = moves.layerIndex(i);
+            SubMapData subMap = currentMap.allMaps.get(subMapIndex);
+            int width = subMap.width;
+
+            // 起点与终点的新内容都以移动后的地图为准，重复记录同一格子不影响结果
+            int fromCell = moves.fromY(i) * width + moves.fromX(i), toCell = moves.toY(i) * width + moves.toX(i);
+            changes[size++] = subMapIndex;
+            changes[size++] = layerIndex;
+            changes[size++] = fromCell;
+            changes[size++] = subMap.getCode(layerIndex, fromCell);
+            changes[size++] = subMapIndex;
+            changes[size++] = layerIndex;
+            changes[size++] = toCell;
+            changes[size++] = subMap.getCode(layerIndex, toCell);
+        }
+        return Arrays.copyOf(changes, size);
+    }
 
+    /**
+     * 将格子变化应用到地图上
+     * @param map 地图，会被原地修改
+     * @param cellChanges 格子变化
+     */
+    public static void applyCellChanges(MapData map, int[] cellChanges) {
+        for (int i = 0; i + 3 < cellChanges.length; i += 4) {
+            map.allMaps.get(cellChanges[i]).setCode(cellChanges[i + 1], cellChanges[i + 2], (byte) cellChanges[i + 3]);
+        }
     }
 
     /**
      * 返回指定 step 对应的游戏帧
+     * <br><br>
+     * 非关键帧会从最近的关键帧重放得到，返回的是带完整地图的副本
      * @param step 游戏步
      * @return 对应游戏帧，失败返回 null
      */
@@ -59,26 +156,84 @@ public class GameHistoryRecoder {
 
         // 需要保证有序
         int index = Collections.binarySearch(stateFrame, targetFrame, Comparator.comparingInt((frame) -> frame.stepCount));
-        return index >= 0 ? stateFrame.get(index) : null;
+        return index >= 0 ? getFrame(index) : null;
+    }
+
+    /**
+     * 返回指定下标的游戏帧
+     * @param index 帧下标
+     * @return 关键帧直接返回，非关键帧返回重放得到的带完整地图的副本
+     */
+    public GameStateFrame getFrame(int index) {
+        GameStateFrame frame = stateFrame.get(index);
+        if (frame.hasFullMap()) return frame;
+
+        GameStateFrame result = frame.deepCopy();
+        result.mapData = rebuildMap(index);
+        result.cellChanges = null;
+        return result;
+    }
+
+    /**
+     * 从最近的关键帧重放得到指定下标帧的地图
+     * @param index 帧下标
+     * @return 新地图对象，找不到关键帧返回 null
+     */
+    public MapData rebuildMap(int index) {
+        int keyframeIndex = index;
+        while (keyframeIndex >= 0 && !stateFrame.get(keyframeIndex).hasFullMap()) keyframeIndex--;
+        if (keyframeIndex < 0) return null;
+
+        MapData map = stateFrame.get(keyframeIndex).mapData.deepCopy();
+        for (int i = keyframeIndex + 1; i <= index; i++) applyCellChanges(map, stateFrame.get(i).cellChanges);
+        return map;
     }
 
     /**
      * 进行一次回退，保留当前时间
-     * @return 回退的帧信息，失败返回 null
+     * <br><br>
+     * 不复制地图，地图本身应由逻辑核心的 undoMove 原地恢复；需要完整地图时可使用 rebuildMap
+     * @return 回退的帧信息，moves 为需要播放的逆向位移，失败返回 null
      */
     public GameStateFrame undo() {
         if (stateFrame.size() <= 1) return null;
 
-        // 删除最新记录
+        // 删除最新记录，留待重做
+        unindexLastFrame();
         GameStateFrame lastFrame = stateFrame.removeLast();
-        GameStateFrame undoFrame = stateFrame.getLast().deepCopy(); // 深复制前一步
-        
+        redoFrame.add(lastFrame);
+
+        GameStateFrame undoFrame = new GameStateFrame();
+        undoFrame.mapData = null;
         undoFrame.frameTime = LocalDateTime.now();
-        undoFrame.moves = MoveListParser.inverseMoves(lastFrame.moves);
-        undoFrame.stepCount += 1;
+        undoFrame.action = lastFrame.action;
+        undoFrame.undo = true;
+        undoFrame.moves = lastFrame.moves.inverse();
+        undoFrame.stepCount = stateFrame.getLast().stepCount + 1;
         return undoFrame;
     }
 
+    /**
+     * 重做最近一次被撤销的帧，该帧重新成为最新记录并使用当前时间
+     * <br><br>
+     * 地图本身应由逻辑核心的 redoMove 原地恢复
+     * @return 重做的帧，moves 为需要播放的位移，没有可重做的帧返回 null
+     */
+    public GameStateFrame redo() {
+        if (redoFrame.isEmpty()) return null;
+
+        GameStateFrame frame = redoFrame.removeLast();
+        frame.frameTime = LocalDateTime.now();
+        stateFrame.add(frame);
+        indexLastFrame();
+        return frame;
+    }
+
+    /** 可重做的帧数 */
+    public int getRedoableFrameNum() {
+        return redoFrame.size();
+    }
+
     /**
      * 获得当前所有帧的总相差时间
      * @return 相差时间, ms
@@ -108,6 +263,8 @@ public class GameHistoryRecoder {
 
     public void setStateFrame(List<GameStateFrame> stateFrame) {
         this.stateFrame = stateFrame;
+        firstFrameIndex.clear();
+        for (int index = 0; index < stateFrame.size(); index++) firstFrameIndex.putIfAbsent(stateFrame.get(index).positionHash, index);
     }
 
     @Override
@@ -1,25 +1,25 @@
 package com.sokoban.core.state;
 
 import java.time.LocalDateTime;
-import java.util.ArrayList;
-import java.util.List;
-
 import com.sokoban.core.logic.Direction;
 import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MoveEventBuffer;
 import com.sokoban.utils.DeepClonable;
 
 /**
  * 游戏状态帧
  * <br><br>
- * 用于记录步数与历史记录等
+ * 用于记录步数与历史记录等。关键帧保存完整地图，其余帧只保存相对上一帧的格子变化
  */
 public class GameStateFrame implements DeepClonable<GameStateFrame> {
-    public MapData mapData; // 地图数据
+    public MapData mapData; // 地图数据，非关键帧为 null
+    public int[] cellChanges; // 相对上一帧的格子变化，每四项为 (子地图索引, 层索引, 格子下标, 新编码)，关键帧为 null
     public int stepCount; // 当前步数
+    public long positionHash; // 物体层 Zobrist 哈希，见 PlayerCore.getPositionHash
     public LocalDateTime frameTime; // 该帧时间戳
     public Direction action; // 到达当前状态进行的移动
     public boolean undo; // 是否为撤回步
-    public List<String> moves; // 到达当前状态发生的地图位移信息
+    public MoveEventBuffer moves; // 到达当前状态发生的地图位移信息
 
     public GameStateFrame() {
         this.mapData = new MapData();
@@ -27,17 +27,25 @@ public class GameStateFrame implements DeepClonable<GameStateFrame> {
         this.frameTime = LocalDateTime.now();
         this.action = Direction.None;
         this.undo = false;
-        this.moves = new ArrayList<>();
+        this.moves = new MoveEventBuffer();
+        this.cellChanges = null;
+    }
+
+    /** 是否为保存完整地图的关键帧 */
+    public boolean hasFullMap() {
+        return mapData != null;
     }
 
     public GameStateFrame deepCopy() {
         GameStateFrame newFrame = new GameStateFrame();
-        newFrame.mapData = mapData.deepCopy();
+        newFrame.mapData = mapData == null ? null : mapData.deepCopy();
+        newFrame.cellChanges = cellChanges == null ? null : cellChanges.clone();
         newFrame.stepCount = stepCount;
+        newFrame.positionHash = positionHash;
         newFrame.frameTime = frameTime; // 不可变类型直接复制
         newFrame.action = action;
         newFrame.undo = undo;
-        newFrame.moves = new ArrayList<>(moves);
+        newFrame.moves = moves.deepCopy();
         return newFrame;
     }
 }
@@ -0,0 +1,235 @@
+package com.sokoban.core.state;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+import com.sokoban.core.map.gamedefault.SokobanLevels;
+import com.sokoban.utils.FilePathUtils;
+
+/**
+ * 二进制回放文件格式
+ * <br><br>
+ * 文件结构：
+ * <ul>
+ * <li>文件头：MAGIC, VERSION, 关卡内容哈希, 开始时间 (epoch ms), 关键帧间隔</li>
+ * <li>若干数据块，每块以一个标记字节开头：
+ *     <ul>
+ *     <li>BLOCK_MOVES：子地图索引, 移动数 n, 每字节 4 个 2 bit 的 LURD 移动, n 个帧间隔纳秒</li>
+ *     <li>BLOCK_UNDO：子地图索引, 被撤销移动的方向, 推动箱子数, 帧间隔纳秒</li>
+ *     <li>BLOCK_KEYFRAME：帧序号, 距开始的纳秒数, 各子地图物体层的游程编码</li>
+ *     <li>BLOCK_END：数据结束</li>
+ *     </ul>
+ * </li>
+ * <li>关键帧索引：条目数, 每个条目的 (帧序号, 文件偏移, 纳秒) 差分编码</li>
+ * <li>文件尾：索引偏移 (long), MAGIC</li>
+ * </ul>
+ * 除文件头与文件尾外，整数均使用 varint 编码。第 0 帧的关键帧即为关卡初始地图，不写入快照
+ */
+public final class ReplayFormat {
+    public static final int MAGIC = 0x534B5250; // "SKRP"
+    public static final int VERSION = 1;
+    public static final int KEYFRAME_INTERVAL = 256; // 关键帧间隔（帧）
+    public static final int MAX_BLOCK_MOVES = 255; // 单个移动块的最大移动数
+    public static final int FOOTER_SIZE = 12; // 文件尾字节数
+    public static final String FILE_EXTENSION = ".skr";
+    public static final String DEFAULT_REPLAYS_DIRECTORY = "./bin/replays";
+
+    public static final int BLOCK_END = 0;
+    public static final int BLOCK_MOVES = 1;
+    public static final int BLOCK_UNDO = 2;
+    public static final int BLOCK_KEYFRAME = 3;
+
+    /** 移动编码 0..3 对应 LURD */
+    private static final Direction[] MOVE_DIRECTIONS = {Direction.Left, Direction.Up, Direction.Right, Direction.Down};
+
+    // 关卡内容哈希使用的 64 位 FNV-1a 参数
+    private static final long FNV_OFFSET = 1469598103934665603L;
+    private static final long FNV_PRIME = 1099511628211L;
+
+    private ReplayFormat() {}
+
+    /**
+     * 默认的回放文件路径
+     * @param mapFileInfo 地图文件信息
+     * @param epochMillis 开始时间
+     * @return 回放文件路径，无法确定关卡时返回 null
+     */
+    public static String defaultPath(MapFileInfo mapFileInfo, long epochMillis) {
+        if (mapFileInfo == null || mapFileInfo.level == null || mapFileInfo.map == null || mapFileInfo.level == SokobanLevels.None) return null;
+        return FilePathUtils.combine(DEFAULT_REPLAYS_DIRECTORY, mapFileInfo.level.toString(), mapFileInfo.map.getMapName() + "-" + epochMillis + FILE_EXTENSION);
+    }
+
+    /** 方向对应的 2 bit 移动编码，None 返回 -1 */
+    public static int moveCode(Direction direction) {
+        return switch (direction) {
+            case Direction.Left -> 0;
+            case Direction.Up -> 1;
+            case Direction.Right -> 2;
+            case Direction.Down -> 3;
+            default -> -1;
+        };
+    }
+
+    /** 2 bit 移动编码对应的方向 */
+    public static Direction moveDirection(int code) {
+        return MOVE_DIRECTIONS[code & 3];
+    }
+
+    /**
+     * 关卡内容哈希，只与子地图尺寸与各层内容有关，用于确认回放与关卡匹配
+     * <br><br>
+     * 按格子顺序对各层编码做 FNV-1a。空格子编码为 0，异或不改变哈希，连续 k 个空格子只相当于乘以 FNV 质数的 k 次方，
+     * 因此只遍历非空格子，跳过的空格子用快速幂补上，结果与逐格计算完全一致
+     * @param map 关卡初始地图
+     * @return 64 位哈希
+     */
+    public static long levelHash(MapData map) {
+        long hash = FNV_OFFSET;
+        hash = (hash ^ map.allMaps.size()) * FNV_PRIME;
+        for (SubMapData subMap : map.allMaps) {
+            hash = (hash ^ subMap.width) * FNV_PRIME;
+            hash = (hash ^ subMap.height) * FNV_PRIME;
+            for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) {
+                MapLayer mapLayer = subMap.getMapLayer(layer);
+                int pending = 0; // 第一个尚未计入的格子
+                for (int cell = mapLayer.nextCell(0); cell != -1; cell = mapLayer.nextCell(cell + 1)) {
+                    hash = hash * primePower(cell - pending);
+                    hash = (hash ^ mapLayer.get(cell)) * FNV_PRIME;
+                    pending = cell + 1;
+                }
+                hash = hash * primePower(mapLayer.size() - pending);
+            }
+        }
+        return hash;
+    }
+
+    /** FNV 质数的 exponent 次方（模 2^64） */
+    private static long primePower(int exponent) {
+        long result = 1, base = FNV_PRIME;
+        for (; exponent > 0; exponent >>= 1) {
+            if ((exponent & 1) != 0) result *= base;
+            base *= base;
+        }
+        return result;
+    }
+
+    /** 写入无符号 varint */
+    public static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    /** 读取无符号 varint */
+    public static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public static void writeVarInt(DataOutput out, int value) throws IOException {
+        writeVarLong(out, value & 0xFFFFFFFFL);
+    }
+
+    public static int readVarInt(DataInput in) throws IOException {
+        return (int) readVarLong(in);
+    }
+
+    /**
+     * 写入所有子地图物体层的游程编码
+     * <br><br>
+     * 只遍历非空格子，连续的空格子合并为一段，分块存储的超大地图上代价只与已分配的块有关
+     * @param out 输出
+     * @param map 当前地图
+     */
+    public static void writeSnapshot(DataOutput out, MapData map) throws IOException {
+        writeVarInt(out, map.allMaps.size());
+        for (SubMapData subMap : map.allMaps) {
+            MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+            writeVarInt(out, writeRuns(null, objectLayer));
+            writeRuns(out, objectLayer);
+        }
+    }
+
+    /**
+     * 按游程遍历一层
+     * @param out 输出，为 null 时只计数
+     * @param layer 层
+     * @return 游程数
+     */
+    private static int writeRuns(DataOutput out, MapLayer layer) throws IOException {
+        int size = layer.size(), runNum = 0, runStart = 0;
+        byte runCode = MapLayer.EMPTY;
+        int nextCell = layer.nextCell(0);
+        for (int cell = 0; cell < size; ) {
+            // 当前段为一个非空格子，或到下一个非空格子为止的一串空格子
+            byte code;
+            int end;
+            if (cell == nextCell) {
+                code = layer.get(cell);
+                end = cell + 1;
+                nextCell = layer.nextCell(end);
+            } else {
+                code = MapLayer.EMPTY;
+                end = nextCell == -1 ? size : nextCell;
+            }
+
+            if (cell > runStart && code != runCode) {
+                if (out != null) writeRun(out, cell - runStart, runCode);
+                runNum++;
+                runStart = cell;
+            }
+            runCode = code;
+            cell = end;
+        }
+        if (size > 0) {
+            if (out != null) writeRun(out, size - runStart, runCode);
+            runNum++;
+        }
+        return runNum;
+    }
+
+    private static void writeRun(DataOutput out, int length, byte code) throws IOException {
+        writeVarInt(out, length);
+        out.writeByte(code);
+    }
+
+    /**
+     * 读取游程编码并覆盖地图的物体层
+     * @param in 输入
+     * @param map 与回放匹配的地图，会被原地修改
+     */
+    public static void readSnapshot(DataInput in, MapData map) throws IOException {
+        int subMapNum = readVarInt(in);
+        if (subMapNum != map.allMaps.size()) throw new IOException("Snapshot doesn't match the level");
+
+        for (SubMapData subMap : map.allMaps) {
+            MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+            int runNum = readVarInt(in), cell = 0;
+            for (int run = 0; run < runNum; run++) {
+                int length = readVarInt(in);
+                byte code = in.readByte();
+                if (length < 0 || cell + length > objectLayer.size()) throw new IOException("Snapshot doesn't match the level");
+                if (code == MapLayer.EMPTY) {
+                    // 空段只需清除其中原有的非空格子
+                    for (int c = objectLayer.nextCell(cell); c != -1 && c < cell + length; c = objectLayer.nextCell(c + 1)) objectLayer.set(c, code);
+                } else {
+                    for (int i = 0; i < length; i++) objectLayer.set(cell + i, code);
+                }
+                cell += length;
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.sokoban.core.state;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+
+/**
+ * 回放流式读取器
+ * <br><br>
+ * 顺序调用 next() 逐帧读取事件用于播放；通过 open(Path) 打开的文件还可以借助末尾的关键帧索引
+ * 二分查找最近的关键帧，从快照开始只重放不超过一个关键帧间隔的事件即可跳转到任意帧。格式见 ReplayFormat
+ */
+public class ReplayReader implements Closeable {
+    public static final int EVENT_MOVE = 0;
+    public static final int EVENT_UNDO = 1;
+
+    /** 回放事件，读取器内部复用同一对象 */
+    public static class Event {
+        public int type; // EVENT_MOVE / EVENT_UNDO
+        public int frame; // 该事件产生的帧序号，从 1 开始
+        public long nanos; // 距开始的纳秒数
+        public int subMapIndex; // 子地图索引
+        public Direction direction; // 移动方向，撤销时为被撤销移动的方向
+        public int pushedBoxNum; // 撤销时为被撤销移动推动的箱子数
+
+        @Override
+        public String toString() {
+            return String.format("Event(%s, frame = %d, nanos = %d, subMap = %d, direction = %s, pushed = %d)",
+                type == EVENT_MOVE ? "move" : "undo", frame, nanos, subMapIndex, direction, pushedBoxNum);
+        }
+    }
+
+    private final FileChannel channel; // 可跳转时不为 null
+    private DataInputStream in;
+    private final long levelHash;
+    private final long startEpochMillis;
+    private final int keyframeInterval;
+    private final Event event = new Event();
+
+    // 关键帧索引，仅可跳转时可用
+    private int[] keyframeFrames = new int[0];
+    private long[] keyframeOffsets = new long[0];
+    private long[] keyframeNanos = new long[0];
+
+    // 当前读取位置
+    private int frame = 0;
+    private long nanos = 0;
+    private boolean ended = false;
+
+    // 当前移动块
+    private int blockSubMap = 0;
+    private int blockNum = 0;
+    private int blockIndex = 0;
+    private final byte[] blockMoves = new byte[(ReplayFormat.MAX_BLOCK_MOVES + 3) / 4];
+
+    /**
+     * 从输入流顺序读取回放，不支持跳转
+     * @param input 输入流，关闭读取器时一并关闭
+     */
+    public ReplayReader(InputStream input) throws IOException {
+        this(null, new DataInputStream(new BufferedInputStream(input)));
+    }
+
+    private ReplayReader(FileChannel channel, DataInputStream in) throws IOException {
+        this.channel = channel;
+        this.in = in;
+
+        if (in.readInt() != ReplayFormat.MAGIC) throw new IOException("Not a replay file");
+        int version = in.readUnsignedByte();
+        if (version != ReplayFormat.VERSION) throw new IOException("Unsupported replay version " + version);
+        levelHash = in.readLong();
+        startEpochMillis = in.readLong();
+        keyframeInterval = ReplayFormat.readVarInt(in);
+    }
+
+    /**
+     * 打开回放文件，读取关键帧索引，支持跳转
+     * @param path 回放文件路径
+     * @return 读取器
+     */
+    public static ReplayReader open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            // 读取文件尾得到索引位置
+            long size = channel.size();
+            if (size < ReplayFormat.FOOTER_SIZE) throw new IOException("Replay file is truncated");
+            ByteBuffer footer = ByteBuffer.allocate(ReplayFormat.FOOTER_SIZE);
+            while (footer.hasRemaining()) if (channel.read(footer, size - ReplayFormat.FOOTER_SIZE + footer.position()) < 0) throw new EOFException();
+            footer.flip();
+            long indexOffset = footer.getLong();
+            if (footer.getInt() != ReplayFormat.MAGIC || indexOffset < 0 || indexOffset >= size) throw new IOException("Replay file has no keyframe index");
+
+            channel.position(0);
+            ReplayReader reader = new ReplayReader(channel, new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel))));
+            reader.readIndex(indexOffset);
+            return reader;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /** 读取关键帧索引，读取后回到第 0 帧 */
+    private void readIndex(long indexOffset) throws IOException {
+        DataInputStream indexIn = positionAt(indexOffset);
+        int keyframeNum = ReplayFormat.readVarInt(indexIn);
+        keyframeFrames = new int[keyframeNum];
+        keyframeOffsets = new long[keyframeNum];
+        keyframeNanos = new long[keyframeNum];
+        for (int i = 0; i < keyframeNum; i++) {
+            keyframeFrames[i] = ReplayFormat.readVarInt(indexIn) + (i == 0 ? 0 : keyframeFrames[i - 1]);
+            keyframeOffsets[i] = ReplayFormat.readVarLong(indexIn) + (i == 0 ? 0 : keyframeOffsets[i - 1]);
+            keyframeNanos[i] = ReplayFormat.readVarLong(indexIn) + (i == 0 ? 0 : keyframeNanos[i - 1]);
+        }
+        if (keyframeNum == 0 || keyframeFrames[0] != 0) throw new IOException("Replay keyframe index is broken");
+
+        in = positionAt(keyframeOffsets[0]);
+    }
+
+    /** 将文件移动到指定偏移并重建缓冲输入 */
+    private DataInputStream positionAt(long offset) throws IOException {
+        channel.position(offset);
+        return new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+    }
+
+    public long getLevelHash() {
+        return levelHash;
+    }
+
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    public int getKeyframeInterval() {
+        return keyframeInterval;
+    }
+
+    /** 回放是否与关卡匹配 */
+    public boolean matches(MapData level) {
+        return ReplayFormat.levelHash(level) == levelHash;
+    }
+
+    /** 当前所在帧，即已经读取的事件数 */
+    public int getFrame() {
+        return frame;
+    }
+
+    /** 是否支持跳转 */
+    public boolean isSeekable() {
+        return channel != null;
+    }
+
+    /**
+     * 读取下一帧事件
+     * @return 事件，为内部复用对象；回放结束返回 null
+     */
+    public Event next() throws IOException {
+        if (ended) return null;
+
+        while (blockIndex >= blockNum) {
+            int tag;
+            try {
+                tag = in.readUnsignedByte();
+            } catch (EOFException e) {
+                // 写入过程中被中断的回放没有结束标记，读到末尾即视为结束
+                ended = true;
+                return null;
+            }
+
+            switch (tag) {
+                case ReplayFormat.BLOCK_MOVES -> {
+                    blockSubMap = ReplayFormat.readVarInt(in);
+                    blockNum = ReplayFormat.readVarInt(in);
+                    if (blockNum > ReplayFormat.MAX_BLOCK_MOVES) throw new IOException("Replay move block is too long");
+                    in.readFully(blockMoves, 0, (blockNum + 3) / 4);
+                    blockIndex = 0;
+                }
+                case ReplayFormat.BLOCK_UNDO -> {
+                    event.type = EVENT_UNDO;
+                    event.subMapIndex = ReplayFormat.readVarInt(in);
+                    event.direction = ReplayFormat.moveDirection(in.readUnsignedByte());
+                    event.pushedBoxNum = ReplayFormat.readVarInt(in);
+                    nanos += ReplayFormat.readVarLong(in);
+                    event.nanos = nanos;
+                    event.frame = ++frame;
+                    return event;
+                }
+                case ReplayFormat.BLOCK_KEYFRAME -> {
+                    // 顺序播放时跳过快照，只用于校准帧序号与时间
+                    frame = ReplayFormat.readVarInt(in);
+                    nanos = ReplayFormat.readVarLong(in);
+                    skipSnapshot();
+                }
+                case ReplayFormat.BLOCK_END -> {
+                    ended = true;
+                    return null;
+                }
+                default -> throw new IOException("Unknown replay block " + tag);
+            }
+        }
+
+        event.type = EVENT_MOVE;
+        event.subMapIndex = blockSubMap;
+        event.direction = ReplayFormat.moveDirection(blockMoves[blockIndex >> 2] >> ((blockIndex & 3) * 2));
+        event.pushedBoxNum = 0;
+        nanos += ReplayFormat.readVarLong(in);
+        event.nanos = nanos;
+        event.frame = ++frame;
+        blockIndex++;
+        return event;
+    }
+
+    /** 跳过一个物体层快照 */
+    private void skipSnapshot() throws IOException {
+        int subMapNum = ReplayFormat.readVarInt(in);
+        for (int subMap = 0; subMap < subMapNum; subMap++) {
+            int runNum = ReplayFormat.readVarInt(in);
+            for (int run = 0; run < runNum; run++) {
+                ReplayFormat.readVarInt(in);
+                in.readByte();
+            }
+        }
+    }
+
+    /**
+     * 跳转到指定帧
+     * <br><br>
+     * 二分查找不晚于目标帧的最近关键帧，恢复快照后向后重放
+     * @param targetFrame 目标帧，0 为初始状态
+     * @param level 关卡初始地图，不会被修改
+     * @return 处于目标帧状态的逻辑核心，之后 next() 返回目标帧之后的事件
+     */
+    public PlayerCore seek(int targetFrame, MapData level) throws IOException {
+        if (!isSeekable()) throw new IOException("Replay is not seekable");
+        if (!matches(level)) throw new IOException("Replay doesn't match the level");
+
+        int keyframe = Arrays.binarySearch(keyframeFrames, targetFrame);
+        if (keyframe < 0) keyframe = -keyframe - 2;
+
+        MapData map = level.deepCopy();
+        in = positionAt(keyframeOffsets[keyframe]);
+        frame = keyframeFrames[keyframe];
+        nanos = keyframeNanos[keyframe];
+        ended = false;
+        blockNum = blockIndex = 0;
+
+        // 第 0 帧直接使用关卡初始地图
+        if (frame > 0) {
+            if (in.readUnsignedByte() != ReplayFormat.BLOCK_KEYFRAME) throw new IOException("Replay keyframe index is broken");
+            ReplayFormat.readVarInt(in);
+            ReplayFormat.readVarLong(in);
+            ReplayFormat.readSnapshot(in, map);
+        }
+
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map);
+        while (frame < targetFrame) {
+            Event current = next();
+            if (current == null) throw new IOException(String.format("Frame %d is beyond the end of replay (%d)", targetFrame, frame));
+            if (!apply(current, playerCore)) throw new IOException("Replay doesn't match the level at frame " + frame);
+        }
+        return playerCore;
+    }
+
+    /**
+     * 将事件应用到逻辑核心
+     * @param event 回放事件
+     * @param playerCore 逻辑核心
+     * @return 是否成功
+     */
+    public static boolean apply(Event event, PlayerCore playerCore) {
+        if (event.type == EVENT_UNDO) return playerCore.reverseMove(event.subMapIndex, event.direction, event.pushedBoxNum);
+        return playerCore.move(event.subMapIndex, event.direction);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null) channel.close();
+        else in.close();
+    }
+}
@@ -0,0 +1,184 @@
+package com.sokoban.core.state;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+
+/**
+ * 回放校验器
+ * <br><br>
+ * 用关卡初始地图的副本重新模拟回放中的每一帧，确认回放与关卡匹配、每一步都合法、最后一帧恰好胜利，
+ * 并且净步数（移动数减撤销数，与 GameHistoryRecoder 最新帧的 stepCount 一致）等于声明的步数。
+ * 声明了用时的还会检查用时不短于回放记录的时长（允许 TIME_TOLERANCE_MILLIS 的误差）
+ * <br><br>
+ * 回放以流的方式逐帧读取，不需要完整读入内存；批量校验时按任务区间分给多个线程并行处理
+ */
+public class ReplayVerifier implements AutoCloseable {
+    public static final long TIME_TOLERANCE_MILLIS = 1000; // 声明用时允许比回放时长短的毫秒数
+    private static final int MIN_TASKS_PER_CHUNK = 16; // 每个线程任务至少处理的校验数
+
+    /** 一项校验任务 */
+    public static class Task {
+        public final MapData level; // 关卡初始地图，不会被修改，可以在任务间共享
+        public final Path replayPath; // 回放文件
+        public final int claimedSteps; // 声明的步数
+        public final long claimedMillis; // 声明的用时，小于 0 表示不检查
+
+        public Task(MapData level, Path replayPath, int claimedSteps, long claimedMillis) {
+            this.level = level;
+            this.replayPath = replayPath;
+            this.claimedSteps = claimedSteps;
+            this.claimedMillis = claimedMillis;
+        }
+    }
+
+    /** 校验结果 */
+    public static class Result {
+        public boolean valid;
+        public int frameNum; // 回放帧数，包括撤销
+        public int steps; // 净步数
+        public long durationMillis; // 回放记录的时长
+        public String reason; // 校验失败的原因，成功时为 null
+
+        @Override
+        public String toString() {
+            return String.format("Result(valid = %b, frames = %d, steps = %d, duration = %d ms, reason = %s)", valid, frameNum, steps, durationMillis, reason);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final int threadNum;
+
+    /**
+     * 构造批量校验器
+     * @param threadNum 线程数，1 表示在调用线程中执行
+     */
+    public ReplayVerifier(int threadNum) {
+        this.threadNum = Math.max(1, threadNum);
+        this.executor = this.threadNum > 1 ? Executors.newFixedThreadPool(this.threadNum, runnable -> {
+            Thread thread = new Thread(runnable, "replay-verifier");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+    }
+
+    /**
+     * 并行校验一批任务
+     * @param tasks 校验任务
+     * @return 与任务一一对应的校验结果
+     */
+    public List<Result> verifyAll(List<Task> tasks) {
+        Result[] results = new Result[tasks.size()];
+        if (executor == null) {
+            verifyRange(tasks, results, 0, tasks.size());
+            return Arrays.asList(results);
+        }
+
+        // 按任务区间划分，每个线程多分几段以平衡回放长度不一带来的负载差异
+        int chunkNum = Math.max(1, Math.min(threadNum * 4, (tasks.size() + MIN_TASKS_PER_CHUNK - 1) / MIN_TASKS_PER_CHUNK));
+        List<Callable<Void>> chunks = new ArrayList<>(chunkNum);
+        for (int chunk = 0; chunk < chunkNum; chunk++) {
+            int from = (int) ((long) tasks.size() * chunk / chunkNum), to = (int) ((long) tasks.size() * (chunk + 1) / chunkNum);
+            chunks.add(() -> {
+                verifyRange(tasks, results, from, to);
+                return null;
+            });
+        }
+
+        try {
+            for (Future<Void> future : executor.invokeAll(chunks)) future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Replay verification failed", e.getCause());
+        }
+        return Arrays.asList(results);
+    }
+
+    /** 校验 [from, to) 区间内的任务 */
+    private static void verifyRange(List<Task> tasks, Result[] results, int from, int to) {
+        for (int i = from; i < to; i++) results[i] = verify(tasks.get(i));
+    }
+
+    /**
+     * 校验单个回放文件
+     * @param task 校验任务
+     * @return 校验结果
+     */
+    public static Result verify(Task task) {
+        try (InputStream input = Files.newInputStream(task.replayPath)) {
+            return verify(task.level, input, task.claimedSteps, task.claimedMillis);
+        } catch (IOException e) {
+            return fail(new Result(), "Can't read replay: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 校验回放流
+     * @param level 关卡初始地图，不会被修改
+     * @param input 回放输入流，不会被关闭
+     * @param claimedSteps 声明的步数
+     * @param claimedMillis 声明的用时，小于 0 表示不检查
+     * @return 校验结果
+     */
+    public static Result verify(MapData level, InputStream input, int claimedSteps, long claimedMillis) {
+        Result result = new Result();
+        try {
+            // 读取器不关闭，输入流由调用者负责
+            ReplayReader reader = new ReplayReader(input);
+            if (!reader.matches(level)) return fail(result, "Replay doesn't match the level");
+
+            PlayerCore playerCore = new PlayerCore();
+            playerCore.setMap(level.deepCopy());
+            if (playerCore.isGameWin()) return fail(result, "Level is already solved");
+
+            ReplayReader.Event event;
+            boolean win = false;
+            while ((event = reader.next()) != null) {
+                if (win) return fail(result, "Replay continues after win at frame " + result.frameNum);
+                if (!ReplayReader.apply(event, playerCore)) return fail(result, "Illegal " + event);
+
+                // 校验不需要撤销日志，撤销通过 reverseMove 完成
+                playerCore.clearJournal();
+                result.frameNum = event.frame;
+                result.steps += event.type == ReplayReader.EVENT_UNDO ? -1 : 1;
+                result.durationMillis = event.nanos / 1000000;
+                win = playerCore.isGameWin();
+            }
+
+            if (!win) return fail(result, "Replay doesn't end with a win");
+            if (result.steps != claimedSteps) return fail(result, String.format("Claimed %d steps, replay has %d", claimedSteps, result.steps));
+            if (claimedMillis >= 0 && claimedMillis + TIME_TOLERANCE_MILLIS < result.durationMillis) {
+                return fail(result, String.format("Claimed %d ms, replay lasts %d ms", claimedMillis, result.durationMillis));
+            }
+        } catch (IOException e) {
+            return fail(result, "Broken replay: " + e.getMessage());
+        }
+
+        result.valid = true;
+        return result;
+    }
+
+    private static Result fail(Result result, String reason) {
+        result.valid = false;
+        result.reason = reason;
+        return result;
+    }
+
+    @Override
+    public void close() {
+        if (executor != null) executor.shutdownNow();
+    }
+}
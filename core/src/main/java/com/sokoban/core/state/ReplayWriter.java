@@ -0,0 +1,180 @@
+package com.sokoban.core.state;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.map.MapData;
+
+/**
+ * 回放流式写入器
+ * <br><br>
+ * 游戏过程中每发生一帧就追加写入，连续的移动在内存中攒成一个移动块后再写出；
+ * 每隔 KEYFRAME_INTERVAL 帧写入一次物体层快照，关闭时在文件末尾写入关键帧索引。格式见 ReplayFormat
+ */
+public class ReplayWriter implements Closeable {
+    private final DataOutputStream out;
+    private final long startNanos;
+    private long lastNanos;
+    private int frameNum = 0; // 已写入的帧数
+    private boolean closed = false;
+
+    // 尚未写出的移动块
+    private int pendingSubMap = -1;
+    private int pendingNum = 0;
+    private final byte[] pendingMoves = new byte[(ReplayFormat.MAX_BLOCK_MOVES + 3) / 4];
+    private final long[] pendingDeltas = new long[ReplayFormat.MAX_BLOCK_MOVES];
+
+    // 关键帧索引：帧序号、文件偏移、距开始的纳秒数
+    private int keyframeNum = 0;
+    private int[] keyframeFrames = new int[16];
+    private long[] keyframeOffsets = new long[16];
+    private long[] keyframeNanos = new long[16];
+
+    /**
+     * 开始写入回放
+     * @param output 输出流，关闭写入器时一并关闭
+     * @param initialMap 关卡初始地图
+     * @param startEpochMillis 开始时间
+     * @param startNanos 开始时刻的 System.nanoTime()
+     */
+    public ReplayWriter(OutputStream output, MapData initialMap, long startEpochMillis, long startNanos) throws IOException {
+        this.out = new DataOutputStream(new BufferedOutputStream(output));
+        this.startNanos = startNanos;
+        this.lastNanos = startNanos;
+
+        out.writeInt(ReplayFormat.MAGIC);
+        out.writeByte(ReplayFormat.VERSION);
+        out.writeLong(ReplayFormat.levelHash(initialMap));
+        out.writeLong(startEpochMillis);
+        ReplayFormat.writeVarInt(out, ReplayFormat.KEYFRAME_INTERVAL);
+
+        // 第 0 帧即为关卡初始地图
+        addKeyframeIndex(0, out.size(), 0);
+    }
+
+    /**
+     * 记录一次移动
+     * @param subMapIndex 子地图索引
+     * @param direction 移动方向
+     * @param nanoTime 发生时刻的 System.nanoTime()
+     * @param currentMap 移动完成后的地图，用于写入关键帧
+     */
+    public void writeMove(int subMapIndex, Direction direction, long nanoTime, MapData currentMap) throws IOException {
+        int code = ReplayFormat.moveCode(direction);
+        if (code < 0) return;
+
+        if (pendingNum > 0 && pendingSubMap != subMapIndex) flushMoves();
+        pendingSubMap = subMapIndex;
+        pendingMoves[pendingNum >> 2] |= (byte) (code << ((pendingNum & 3) * 2));
+        pendingDeltas[pendingNum] = nextDelta(nanoTime);
+        pendingNum++;
+        if (pendingNum == ReplayFormat.MAX_BLOCK_MOVES) flushMoves();
+
+        endFrame(currentMap);
+    }
+
+    /**
+     * 记录一次撤销
+     * @param subMapIndex 子地图索引
+     * @param direction 被撤销移动的方向
+     * @param pushedBoxNum 被撤销移动推动的箱子数
+     * @param nanoTime 发生时刻的 System.nanoTime()
+     * @param currentMap 撤销完成后的地图，用于写入关键帧
+     */
+    public void writeUndo(int subMapIndex, Direction direction, int pushedBoxNum, long nanoTime, MapData currentMap) throws IOException {
+        int code = ReplayFormat.moveCode(direction);
+        if (code < 0) return;
+
+        flushMoves();
+        out.writeByte(ReplayFormat.BLOCK_UNDO);
+        ReplayFormat.writeVarInt(out, subMapIndex);
+        out.writeByte(code);
+        ReplayFormat.writeVarInt(out, pushedBoxNum);
+        ReplayFormat.writeVarLong(out, nextDelta(nanoTime));
+
+        endFrame(currentMap);
+    }
+
+    /** 已写入的帧数 */
+    public int getFrameNum() {
+        return frameNum;
+    }
+
+    /** 写出缓冲数据，不结束回放 */
+    public void flush() throws IOException {
+        flushMoves();
+        out.flush();
+    }
+
+    /** 结束回放，写入关键帧索引与文件尾 */
+    @Override
+    public void close() throws IOException {
+        if (closed) return;
+        closed = true;
+
+        flushMoves();
+        out.writeByte(ReplayFormat.BLOCK_END);
+
+        long indexOffset = out.size();
+        ReplayFormat.writeVarInt(out, keyframeNum);
+        for (int i = 0; i < keyframeNum; i++) {
+            ReplayFormat.writeVarInt(out, keyframeFrames[i] - (i == 0 ? 0 : keyframeFrames[i - 1]));
+            ReplayFormat.writeVarLong(out, keyframeOffsets[i] - (i == 0 ? 0 : keyframeOffsets[i - 1]));
+            ReplayFormat.writeVarLong(out, keyframeNanos[i] - (i == 0 ? 0 : keyframeNanos[i - 1]));
+        }
+        out.writeLong(indexOffset);
+        out.writeInt(ReplayFormat.MAGIC);
+        out.close();
+    }
+
+    /** 与上一帧的时间间隔，时钟回拨时记为 0 */
+    private long nextDelta(long nanoTime) {
+        long delta = Math.max(0, nanoTime - lastNanos);
+        lastNanos += delta;
+        return delta;
+    }
+
+    /** 一帧结束，到达间隔时写入关键帧 */
+    private void endFrame(MapData currentMap) throws IOException {
+        frameNum++;
+        if (frameNum % ReplayFormat.KEYFRAME_INTERVAL != 0) return;
+
+        flushMoves();
+        addKeyframeIndex(frameNum, out.size(), lastNanos - startNanos);
+        out.writeByte(ReplayFormat.BLOCK_KEYFRAME);
+        ReplayFormat.writeVarInt(out, frameNum);
+        ReplayFormat.writeVarLong(out, lastNanos - startNanos);
+        ReplayFormat.writeSnapshot(out, currentMap);
+    }
+
+    /** 写出攒下的移动块 */
+    private void flushMoves() throws IOException {
+        if (pendingNum == 0) return;
+
+        out.writeByte(ReplayFormat.BLOCK_MOVES);
+        ReplayFormat.writeVarInt(out, pendingSubMap);
+        ReplayFormat.writeVarInt(out, pendingNum);
+        out.write(pendingMoves, 0, (pendingNum + 3) / 4);
+        for (int i = 0; i < pendingNum; i++) ReplayFormat.writeVarLong(out, pendingDeltas[i]);
+
+        Arrays.fill(pendingMoves, (byte) 0);
+        pendingNum = 0;
+    }
+
+    private void addKeyframeIndex(int frame, long offset, long nanos) {
+        if (keyframeNum == keyframeFrames.length) {
+            keyframeFrames = Arrays.copyOf(keyframeFrames, keyframeNum * 2);
+            keyframeOffsets = Arrays.copyOf(keyframeOffsets, keyframeNum * 2);
+            keyframeNanos = Arrays.copyOf(keyframeNanos, keyframeNum * 2);
+        }
+        keyframeFrames[keyframeNum] = frame;
+        keyframeOffsets[keyframeNum] = offset;
+        keyframeNanos[keyframeNum] = nanos;
+        keyframeNum++;
+    }
+}
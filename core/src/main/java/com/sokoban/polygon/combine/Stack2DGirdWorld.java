@@ -73,6 +73,26 @@ public class Stack2DGirdWorld extends SokobanCombineObject {
         return position;
     }
 
+    /**
+     * 世界坐标所在的列，用于点击选择格子
+     * @param x 世界横坐标
+     * @return 列，超出网格返回 -1
+     */
+    public int getColumnAt(float x) {
+        int column = (int) Math.floor((x - getX()) / cellSize);
+        return column < 0 || column >= gridWidth ? -1 : column;
+    }
+
+    /**
+     * 世界坐标所在的行，用于点击选择格子
+     * @param y 世界纵坐标
+     * @return 行，超出网格返回 -1
+     */
+    public int getRowAt(float y) {
+        int row = (int) Math.floor((y - getY()) / cellSize);
+        return row < 0 || row >= gridHeight ? -1 : row;
+    }
+
     /**
      * 添加新层
      */
@@ -78,4 +78,12 @@ public class SingleActionInstanceManager {
         if (!actorState.containsKey(actor)) return false;
         return !actorState.get(actor);
     }
+
+    /**
+     * 是否有任意 actor 在动画中
+     * @return 动画进行状态
+     */
+    public boolean isAnyInAction() {
+        return actorState.containsValue(false);
+    }
 }
@@ -1,19 +1,22 @@
 package com.sokoban.scenes;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import com.badlogic.gdx.Gdx;
+import com.badlogic.gdx.Input.Buttons;
 import com.badlogic.gdx.Input.Keys;
 import com.badlogic.gdx.math.Interpolation;
 import com.badlogic.gdx.math.MathUtils;
 import com.badlogic.gdx.math.Vector2;
 import com.badlogic.gdx.scenes.scene2d.actions.Actions;
+import com.badlogic.gdx.scenes.scene2d.actions.SequenceAction;
 import com.badlogic.gdx.scenes.scene2d.ui.Image;
 import com.badlogic.gdx.scenes.scene2d.Actor;
 import com.badlogic.gdx.scenes.scene2d.InputEvent;
@@ -24,28 +27,37 @@ import com.sokoban.assets.ImageAssets;
 import com.sokoban.assets.SpineAssets;
 import com.sokoban.core.game.GameParams;
 import com.sokoban.core.game.Logger;
+import com.sokoban.core.game.Logger.LogLevel;
 import com.sokoban.core.json.JsonManager;
+import com.sokoban.core.logic.BoxPushPlanner;
 import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.MoveResult;
 import com.sokoban.core.logic.ObjectType;
 import com.sokoban.core.logic.PlayerCore;
-import com.sokoban.core.logic.PlayerCoreUtils;
-import com.sokoban.core.logic.Pos;
+import com.sokoban.core.logic.WalkDistanceField;
 import com.sokoban.core.map.MapData;
 import com.sokoban.core.map.MapFileInfo;
 import com.sokoban.core.map.MapFileParser;
 import com.sokoban.core.map.MapFileReader;
-import com.sokoban.core.map.MoveListParser;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.MoveEventBuffer;
 import com.sokoban.core.map.SubMapData;
 import com.sokoban.core.map.gamedefault.SokobanLevels;
 import com.sokoban.core.state.GameHistoryRecoder;
 import com.sokoban.core.state.GameStateFrame;
+import com.sokoban.core.state.ReplayFormat;
+import com.sokoban.core.state.ReplayVerifier;
+import com.sokoban.core.state.ReplayWriter;
 import com.sokoban.core.user.UserManager;
 import com.sokoban.core.user.SaveArchiveInfo.MapStatue;
 import com.sokoban.core.user.SaveArchiveInfo.StepRecordInfo;
 import com.sokoban.core.user.SaveArchiveInfo.TimeRecordInfo;
 import com.sokoban.Main;
 import com.sokoban.algo.DeadLockTest;
+import com.sokoban.algo.HintCache;
 import com.sokoban.algo.SearchAlgo;
+import com.sokoban.algo.SolvabilityPrecheck;
+import com.sokoban.algo.SpeculativeSolver;
 import com.sokoban.algo.IDAStar.IDAState;
 import com.sokoban.polygon.BoxObject;
 import com.sokoban.polygon.SpineObject;
@@ -65,6 +77,7 @@ import com.sokoban.polygon.manager.SingleActionInstanceManager;
 import com.sokoban.scenes.manager.ActorMapper;
 import com.sokoban.scenes.mapchoose.MapChooseScene;
 import com.sokoban.utils.ActionUtils;
+import com.sokoban.utils.FilePathUtils;
 
 /**
  * 主游戏类，负责游戏的显示交互
@@ -86,6 +99,10 @@ public class GameScene extends SokobanFitScene {
 
     private SearchAlgo algo;
     private Thread calcThread;
+    private HintCache.Key calcStartKey; // 自动计算开始时局面的提示缓存键
+    private SpeculativeSolver speculativeSolver; // 后台预求解
+    private ReplayWriter replayWriter; // 回放写入器，写入失败时为 null
+    private Path replayPath; // 回放文件路径，录制失败时为 null
 
     // Escape Menu
     private ButtonCheckboxContainers buttonContainer;
@@ -98,6 +115,12 @@ public class GameScene extends SokobanFitScene {
     // 操控按钮
     private Image buttonUp, buttonDown, buttonLeft, buttonRight;
 
+    // 点击移动
+    private WalkDistanceField walkField; // 玩家行走距离场，局面不变时复用
+    private Image walkPreview; // 悬停时标记可到达的格子
+    private BoxPushPlanner pushPlanner; // 拖动箱子的推动规划
+    private int dragBoxX = -1, dragBoxY = -1; // 正在拖动的箱子，没有为 -1
+
     private Image warningCalcIcon;
     private Image backCalc;
     private Timer.Task autoMove;
@@ -115,6 +138,9 @@ public class GameScene extends SokobanFitScene {
 
     private final float DEFAULT_CELL_SIZE = 1f;
     private final float VIEWPORT_RESCALE_RATIO = 1.6f;
+    private final float WALK_STEP_DURATION = 0.06f; // 点击移动每一步的动画时长
+    private final float WALK_PREVIEW_ALPHA = 0.25f;
+    private final float DRAG_STEP_INTERVAL = 0.12f; // 拖动箱子后演示每一步的间隔
     private final float ESCAPE_MENU_ANIMATION_DURATION = 0.2f;
     private final float ESCAPE_MENU_BUTTON_SCALING = 0.008f;
     private final float ESCAPE_MENU_BUTTON_ALIGN_X = 11f;
@@ -148,6 +174,9 @@ public class GameScene extends SokobanFitScene {
         currentSubmap = initPlayerCore();
         if (currentSubmap == -2) return; // 异常情况
 
+        // 后台预求解初始局面
+        if (currentSubmap >= 0) speculativeSolver = SpeculativeSolver.start(playerCore.getMap(), currentSubmap);
+
         // 初始化网格世界
         gridWorld = new Stack3DGirdWorld(gameMain, INITIAL_MAP_WIDTH, INITIAL_MAP_HEIGHT, DEFAULT_CELL_SIZE);
         gridWorld.setPosition(8f, 4.5f);
@@ -155,6 +184,15 @@ public class GameScene extends SokobanFitScene {
         // 网格世界读取
         initMapToGrid();
 
+        // 初始化点击移动
+        walkField = new WalkDistanceField();
+        pushPlanner = new BoxPushPlanner();
+        walkPreview = new Image(gameMain.getAssetsPathManager().get(ImageAssets.BlackPixel));
+        walkPreview.setScale(DEFAULT_CELL_SIZE);
+        walkPreview.getColor().a = WALK_PREVIEW_ALPHA;
+        walkPreview.setVisible(false);
+        stage.addActor(walkPreview);
+
         // 初始化视口跟随
         moveTrace = new MouseMovingTraceManager(viewport, SCREEN_WIDTRH_CENTER, SCREEN_HEIGHT_CENTER);
 
@@ -238,25 +276,27 @@ public class GameScene extends SokobanFitScene {
         Stack2DGirdWorld currentSubMapGridWorld = gridWorld.getStack2DLayer(currentSubmap);
         SubMapData subMapData = playerCore.getSubmap(currentSubmap);
 
-        for (int layer = 0; layer < subMapData.mapLayer.size(); layer++) currentSubMapGridWorld.addLayer(); // 添加子地图每一层
+        for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) currentSubMapGridWorld.addLayer(); // 添加子地图每一层
 
         // 对于当前子地图的每一层
-        for (int layer = 0; layer < subMapData.mapLayer.size(); layer++) {
+        for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) {
             // 当前层
-            ObjectType[][] currentLayer = subMapData.mapLayer.get(layer);
-            
-            for (int y = 0; y < subMapData.height; y++) {
-                for (int x = 0; x < subMapData.width; x++) {
-                    // 空气与未知类型不处理
-                    if (currentLayer[y][x] == ObjectType.Air || currentLayer[y][x] == ObjectType.Unknown) continue;
+            MapLayer currentLayer = subMapData.getMapLayer(layer);
 
-                    // 数据类型转换为显示类型
-                    BoxType objectBoxType = ActorMapper.mapObjectTypeToActor(currentLayer[y][x]);
-                    currentSubMapGridWorld.getLayer(layer).addBox(objectBoxType, y, x);
+            // 只遍历非空格子，超大地图上不生成整层的二维副本
+            for (int cell = currentLayer.nextCell(0); cell != -1; cell = currentLayer.nextCell(cell + 1)) {
+                ObjectType object = SubMapData.typeOf(currentLayer.get(cell));
+                int x = cell % subMapData.width, y = cell / subMapData.width;
 
-                    // 玩家类型，引用至特定对象
-                    if (currentLayer[y][x] == ObjectType.Player) playerSpine = (SpineObject) currentSubMapGridWorld.getLayer(layer).gridSpineObjects[y][x];
-                }
+                // 未知类型不处理
+                if (object == ObjectType.Unknown) continue;
+
+                // 数据类型转换为显示类型
+                BoxType objectBoxType = ActorMapper.mapObjectTypeToActor(object);
+                currentSubMapGridWorld.getLayer(layer).addBox(objectBoxType, y, x);
+
+                // 玩家类型，引用至特定对象
+                if (object == ObjectType.Player) playerSpine = (SpineObject) currentSubMapGridWorld.getLayer(layer).gridSpineObjects[y][x];
             }
         }
 
@@ -360,76 +400,84 @@ public class GameScene extends SokobanFitScene {
 
     /**
      * 动画更新画面表现
-     * @param moves 位移列表
+     * @param moves 位移事件
      */
-    public void updateShowing(List<String> moves) {
-        for (int i = 0; i < moves.size(); i++) Logger.debug("GameScene", String.format("Move instruction #%d: %s", i, moves.get(i)));
-
-        // 解析信息
-        List<MoveListParser.MoveInfo> moveInfo = MoveListParser.parseMove(moves);
-        // 分组处理
-        Map<Integer, Map<Integer, List<MoveListParser.MoveInfo>>> groupedMoves = MoveListParser.groupMoves(moveInfo);
-
-        for (int subMapIndex : groupedMoves.keySet()) { // 每个子地图
-            for (int layerIndex : groupedMoves.get(subMapIndex).keySet()) { // 每层
-                // 进行转移
-                Actor[][] thisLayerGird = gridWorld.getStack2DLayer(subMapIndex).getLayer(layerIndex).gridSpineObjects; // 原数组
-                Actor[][] newLayerGird = new Actor[thisLayerGird.length][thisLayerGird[0].length]; // 新地图层数组
-                Set<Pos> completedMoveTo = new HashSet<>(); // 保存已经成功到达目标移动的数据
-                Set<Pos> completedMoveFrom = new HashSet<>(); // 保存已经成功离开原位移动的数据
-
-                // 对于每个移动，将原数组的相应数据的引用复制到新数组上
-                for (MoveListParser.MoveInfo move : groupedMoves.get(subMapIndex).get(layerIndex)) {
-
-                    // 进行动画层面移动
-                    doAnimatedMove(thisLayerGird[move.origin.getY()][move.origin.getX()], move.to);
-                    doAnimation(thisLayerGird[move.origin.getY()][move.origin.getX()], subMapIndex, layerIndex, move.origin, move.to);
-
-                    // 复制新物体
-                    newLayerGird[move.to.getY()][move.to.getX()] = thisLayerGird[move.origin.getY()][move.origin.getX()];
-                    
-                    // 将已经成功转移的物体加入 completedMoveFrom 与 To
-                    if (!(completedMoveFrom.add(move.origin) && completedMoveTo.add(move.to))) { // 如果集合中出现重复元素，报错并拒绝移动
-                        Logger.error("GameScene", "Find conflict in move instructions");
-                        return;
-                    }
+    public void updateShowing(MoveEventBuffer moves) {
+        if (Logger.screenLevel(LogLevel.DEBUG)) Logger.debug("GameScene", "Move instructions: " + moves);
+
+        // 按 (子地图, 层) 分组处理，每组只在首次出现时处理一次
+        for (int groupStart = 0; groupStart < moves.size(); groupStart++) {
+            int subMapIndex = moves.subMapIndex(groupStart), layerIndex = moves.layerIndex(groupStart);
+            if (isGroupProcessed(moves, groupStart)) continue;
+
+            // 进行转移
+            Actor[][] thisLayerGird = gridWorld.getStack2DLayer(subMapIndex).getLayer(layerIndex).gridSpineObjects; // 原数组
+            Actor[][] newLayerGird = new Actor[thisLayerGird.length][thisLayerGird[0].length]; // 新地图层数组
+            boolean[][] completedMoveTo = new boolean[thisLayerGird.length][thisLayerGird[0].length]; // 已经成功到达目标的位置
+            boolean[][] completedMoveFrom = new boolean[thisLayerGird.length][thisLayerGird[0].length]; // 已经成功离开原位的位置
+
+            // 对于每个移动，将原数组的相应数据的引用复制到新数组上
+            for (int i = groupStart; i < moves.size(); i++) {
+                if (moves.subMapIndex(i) != subMapIndex || moves.layerIndex(i) != layerIndex) continue;
+                int fromX = moves.fromX(i), fromY = moves.fromY(i), toX = moves.toX(i), toY = moves.toY(i);
+
+                // 进行动画层面移动
+                doAnimatedMove(thisLayerGird[fromY][fromX], toX, toY);
+                doAnimation(thisLayerGird[fromY][fromX], subMapIndex, layerIndex, fromX, fromY, toX, toY);
+
+                // 复制新物体
+                newLayerGird[toY][toX] = thisLayerGird[fromY][fromX];
+
+                // 如果出现重复的起点或终点，报错并拒绝移动
+                if (completedMoveFrom[fromY][fromX] || completedMoveTo[toY][toX]) {
+                    Logger.error("GameScene", "Find conflict in move instructions");
+                    return;
                 }
+                completedMoveFrom[fromY][fromX] = true;
+                completedMoveTo[toY][toX] = true;
+            }
 
-                /*
-                通过数组引用的复制解决依赖矛盾
-                对于一个物体，如果它未被标记，需要复制
-                如果同时被标记为转移出 / 转移入的目标点，无需复制
-                如果被单独标记为转移入，无需复制
-                如果被单独标记为转移出，需要复制
-
-                -> 简化为检查是否标记转移出即可
-                */
-                for (int y = 0; y < thisLayerGird.length; y++) {
-                    for (int x = 0; x < thisLayerGird[0].length; x++) {
-                        Pos testPos = new Pos(x, y);
-                        if (!completedMoveTo.contains(testPos)) newLayerGird[y][x] = thisLayerGird[y][x];
-                    }
+            /*
+            通过数组引用的复制解决依赖矛盾
+            对于一个物体，如果它未被标记，需要复制
+            如果同时被标记为转移出 / 转移入的目标点，无需复制
+            如果被单独标记为转移入，无需复制
+            如果被单独标记为转移出，需要复制
+
+            -> 简化为检查是否标记转移出即可
+            */
+            for (int y = 0; y < thisLayerGird.length; y++) {
+                for (int x = 0; x < thisLayerGird[0].length; x++) {
+                    if (!completedMoveTo[y][x]) newLayerGird[y][x] = thisLayerGird[y][x];
                 }
+            }
 
-                // 完成移动，原数组重新被新数组引用覆盖
-                for (int y = 0; y < thisLayerGird.length; y++) {
-                    for (int x = 0; x < thisLayerGird[0].length; x++) {
-                        thisLayerGird[y][x] = newLayerGird[y][x];
-                    }
+            // 完成移动，原数组重新被新数组引用覆盖
+            for (int y = 0; y < thisLayerGird.length; y++) {
+                for (int x = 0; x < thisLayerGird[0].length; x++) {
+                    thisLayerGird[y][x] = newLayerGird[y][x];
                 }
-
             }
         }
     }
 
+    /** 该位移所在的 (子地图, 层) 分组是否已经在之前处理过 */
+    private boolean isGroupProcessed(MoveEventBuffer moves, int index) {
+        for (int i = 0; i < index; i++) {
+            if (moves.subMapIndex(i) == moves.subMapIndex(index) && moves.layerIndex(i) == moves.layerIndex(index)) return true;
+        }
+        return false;
+    }
+
     /**
      * 对 actor 进行动画层面移动
      * @param actor 要移动的物件
-     * @param to 移动到的网格位置
+     * @param toX 移动到的网格横坐标
+     * @param toY 移动到的网格纵坐标
      */
-    public void doAnimatedMove(Actor actor, Pos to) {
+    public void doAnimatedMove(Actor actor, int toX, int toY) {
         // 计算最终坐标，转换为居中坐标
-        Vector2 finalPosition = gridWorld.getStack2DLayer(currentSubmap).getCellPosition(to.getY(), to.getX()); // row = y, column = x
+        Vector2 finalPosition = gridWorld.getStack2DLayer(currentSubmap).getCellPosition(toY, toX); // row = y, column = x
 
         // 添加单例动画执行器
         SAIManager.executeAction(
@@ -447,25 +495,27 @@ public class GameScene extends SokobanFitScene {
      * <br><br>
      * 注意在 Core 中获取物件应该使用 to 坐标，因为内核已经进行更新，而在 grid 中应该使用 from 坐标获取物件
      * @param actor
-     * @param x
-     * @param y
+     * @param fromX 原网格横坐标
+     * @param fromY 原网格纵坐标
+     * @param toX 新网格横坐标
+     * @param toY 新网格纵坐标
      */
-    public void doAnimation(Actor actor, int subMapIndex, int layerIndex, Pos from, Pos to) {
+    public void doAnimation(Actor actor, int subMapIndex, int layerIndex, int fromX, int fromY, int toX, int toY) {
         SubMapData subMap = playerCore.getMap().allMaps.get(subMapIndex);
-        ObjectType object = subMap.mapLayer.get(layerIndex)[to.getY()][to.getX()];
+        ObjectType object = subMap.get(layerIndex, toX, toY);
 
         Logger.debug("Execute Animation: " + object.toString());
 
         // 玩家
         if (object == ObjectType.Player) {
             // 玩家动画更新
-            ((SpineObject) actor).setAnimation(0, PlayerCoreUtils.getDeltaDirection(to.sub(from)).getDirection(), false);
+            ((SpineObject) actor).setAnimation(0, Direction.fromDelta(toX - fromX, toY - fromY).getDirection(), false);
         }
 
         // 箱子
         if (object == ObjectType.Box) {
             // 到达目标点
-            if (subMap.mapLayer.get(SubMapData.LAYER_TARGET)[to.getY()][to.getX()] == ObjectType.BoxTarget) {
+            if (subMap.getTarget(toX, toY) == ObjectType.BoxTarget) {
                 ((BoxObject) actor).reset(gameMain, SpineAssets.BoxGreenBoxLight);
             } else {
                 ((BoxObject) actor).reset(gameMain, SpineAssets.BoxGreenBox);
@@ -535,6 +585,36 @@ public class GameScene extends SokobanFitScene {
             public boolean keyDown(InputEvent event, int keycode) {
                 return checkMoving(event, keycode);
             }
+
+            @Override
+            public boolean touchDown(InputEvent event, float x, float y, int pointer, int button) {
+                if (button != Buttons.LEFT || currentSubmap < 0) return false;
+                Stack2DGirdWorld subMapGrid = gridWorld.getStack2DLayer(currentSubmap);
+                int cellX = subMapGrid.getColumnAt(event.getStageX()), cellY = subMapGrid.getRowAt(event.getStageY());
+
+                // 按下箱子开始拖动，松开时再规划推动
+                if (!isInCaculate && !isInEscapeMenu && !playerCore.outOfBound(currentSubmap, cellX, cellY)
+                    && playerCore.boxAt(currentSubmap, playerCore.getSubmap(currentSubmap).index(cellX, cellY)) != -1) {
+                    dragBoxX = cellX;
+                    dragBoxY = cellY;
+                    return true;
+                }
+                return walkTo(cellX, cellY);
+            }
+
+            @Override
+            public void touchUp(InputEvent event, float x, float y, int pointer, int button) {
+                if (dragBoxX == -1) return;
+                Stack2DGirdWorld subMapGrid = gridWorld.getStack2DLayer(currentSubmap);
+                dragBoxTo(dragBoxX, dragBoxY, subMapGrid.getColumnAt(event.getStageX()), subMapGrid.getRowAt(event.getStageY()));
+                dragBoxX = dragBoxY = -1;
+            }
+
+            @Override
+            public boolean mouseMoved(InputEvent event, float x, float y) {
+                updateWalkPreview(event.getStageX(), event.getStageY());
+                return false;
+            }
         });
     }
 
@@ -559,35 +639,25 @@ public class GameScene extends SokobanFitScene {
         if (moveDirection != Direction.None) {
             // 进行逻辑移动
             Logger.debug("GameScene", "Move direction " + moveDirection);
-            MapData originalMap = playerCore.getMap().deepCopy();
-            playerCore.move(currentSubmap, moveDirection);
-
-            // 如果地图未发生变化，不进行任何更新
-            if (originalMap.equals(playerCore.getMap())) return true;
+            MoveResult moveResult = playerCore.tryMove(currentSubmap, moveDirection);
 
-            // 更新历史记录
-            GameStateFrame stateFrame = new GameStateFrame();
-            stateFrame.mapData = playerCore.getMap().deepCopy();
-            stateFrame.action = moveDirection;
-            stateFrame.stepCount = historyStates.getTotalFrameNum(); // 不包括初始帧
-            stateFrame.moves = playerCore.getMoveList();
+            // 如果没有发生移动，不进行任何更新
+            if (!moveResult.moved) return true;
 
-            stateFrame.undo = false;
-
-            Logger.debug("GameScene", "Current game frame = " + stateFrame, 500);
-            historyStates.addNewFrame(stateFrame);
+            // 更新历史记录与回放
+            recordMoveFrame(moveResult);
 
             // 更新画面表现
-            updateShowing(playerCore.getMoveList());
+            updateShowing(moveResult.events);
 
             // 更新计步器
             racingStep.setValue(historyStates.getLast().stepCount);
 
             // 检查是否胜利
-            if (playerCore.isGameWin()) endGame(true);
+            if (moveResult.win) endGame(true);
 
-            // 检查是否失败
-            if (DeadLockTest.lockTest(playerCore.getSubmap(currentSubmap))) endGame(false);
+            // 检查是否失败，只有推动了箱子才可能产生新的死锁
+            else if (moveResult.isPush() && DeadLockTest.lockTest(playerCore.getSubmap(currentSubmap), playerCore.getBoxCells(currentSubmap))) endGame(false);
 
             return true;
         }
@@ -601,9 +671,10 @@ public class GameScene extends SokobanFitScene {
                 GameStateFrame undoFrame = historyStates.undo();
 
                 if (undoFrame != null) {
-                    playerCore.setMap(undoFrame.mapData);
+                    // 逻辑核心按撤销日志原地恢复，日志不同步时（例如刚加载地图）退回到从历史记录重建
+                    if (!playerCore.undoMove()) playerCore.setMap(historyStates.rebuildMap(historyStates.getTotalFrameNum() - 1));
+                    recordReplay(currentSubmap, undoFrame.action, undoFrame.moves.size() - 1);
                     Logger.debug("GameScene", "Undo, Current game frame = " + undoFrame);
-                    Logger.warning(undoFrame.moves.toString());
 
                     // 更新画面表现
                     updateShowing(undoFrame.moves);
@@ -616,6 +687,25 @@ public class GameScene extends SokobanFitScene {
             return true;
         }
 
+        // 重做
+        if (Gdx.input.isKeyJustPressed(Keys.Y)) {
+            GameStateFrame redoFrame = historyStates.redo();
+
+            if (redoFrame != null) {
+                if (!playerCore.redoMove()) playerCore.setMap(historyStates.rebuildMap(historyStates.getTotalFrameNum() - 1));
+                recordReplay(currentSubmap, redoFrame.action, -1);
+                Logger.debug("GameScene", "Redo, Current game frame = " + redoFrame);
+
+                // 更新画面表现
+                updateShowing(redoFrame.moves);
+
+                // 更新计步器
+                racingStep.setValue(historyStates.getLast().stepCount);
+            }
+
+            return true;
+        }
+
         // 重置
         if (Gdx.input.isKeyJustPressed(Keys.R)) {
             replay();
@@ -630,11 +720,190 @@ public class GameScene extends SokobanFitScene {
         return false;
     }
 
+    /**
+     * 将一次已经发生的移动写入历史记录与回放
+     * @param moveResult 逻辑核心给出的变化描述
+     */
+    private void recordMoveFrame(MoveResult moveResult) {
+        // 更新历史记录，只有关键帧会保存完整地图
+        GameStateFrame stateFrame = new GameStateFrame();
+        stateFrame.action = moveResult.direction;
+        stateFrame.stepCount = historyStates.getTotalFrameNum(); // 不包括初始帧
+        stateFrame.moves = moveResult.events.deepCopy();
+        stateFrame.positionHash = playerCore.getPositionHash();
+
+        stateFrame.undo = false;
+
+        Logger.debug("GameScene", "Current game frame = " + stateFrame, 500);
+        historyStates.addMoveFrame(stateFrame, playerCore.getMap());
+
+        // 回到了之前到达过的局面
+        int firstFrame = historyStates.findFrame(stateFrame.positionHash);
+        if (firstFrame < historyStates.getTotalFrameNum() - 1) Logger.debug("GameScene", "Position repeated, first reached at frame " + firstFrame);
+        recordReplay(moveResult.subMapIndex, moveResult.direction, -1);
+    }
+
+    /**
+     * 点击移动：不推动箱子，沿最短路径走到指定格子
+     * <br><br>
+     * 路径取自行走距离场。每一步仍逐步写入逻辑核心、历史记录与回放，撤销与步数和按键移动一致；
+     * 画面只在最后更新一次，玩家沿路径播放一段连续动画
+     * @param x 目标格子横坐标
+     * @param y 目标格子纵坐标
+     * @return 是否发生移动
+     */
+    public boolean walkTo(int x, int y) {
+        if (isInCaculate || isInEscapeMenu) return false;
+
+        walkField.update(playerCore);
+        if (walkField.getSubmapIndex() != currentSubmap) return false;
+        Direction[] path = walkField.pathTo(x, y);
+        if (path == null || path.length == 0) return false;
+        if (autoMove != null) autoMove.cancel(); // 打断正在演示的移动序列
+
+        int startX = playerCore.getPlayerX(), startY = playerCore.getPlayerY();
+        int stepNum = 0;
+        boolean win = false;
+        for (Direction direction : path) {
+            MoveResult moveResult = playerCore.tryMove(currentSubmap, direction);
+            if (!moveResult.moved) break;
+            recordMoveFrame(moveResult);
+            win = moveResult.win;
+            stepNum++;
+        }
+        if (stepNum == 0) return false;
+        Logger.debug("GameScene", String.format("Walk to (%d, %d) in %d steps", x, y, stepNum));
+
+        // 更新画面表现
+        walkPreview.setVisible(false);
+        updateWalkShowing(startX, startY, path, stepNum);
+
+        // 更新计步器
+        racingStep.setValue(historyStates.getLast().stepCount);
+
+        // 只是行走，不会产生新的死锁，但可能走到玩家目标点而胜利
+        if (win) endGame(true);
+        return true;
+    }
+
+    /**
+     * 拖动箱子：规划把箱子推到目标格子所需推动数最少的移动序列并演示
+     * <br><br>
+     * 规划时其它箱子视为不动；移动按固定间隔逐步执行，与按键移动一样写入历史记录与回放
+     * @param boxX 箱子横坐标
+     * @param boxY 箱子纵坐标
+     * @param targetX 目标横坐标
+     * @param targetY 目标纵坐标
+     * @return 是否找到推动方案
+     */
+    public boolean dragBoxTo(int boxX, int boxY, int targetX, int targetY) {
+        if (isInCaculate || isInEscapeMenu || (boxX == targetX && boxY == targetY)) return false;
+        if (playerCore.getPlayerSubmap() != currentSubmap) return false; // 规划只在玩家所在子地图上进行
+
+        long startNanos = System.nanoTime();
+        Direction[] moves = pushPlanner.plan(playerCore, boxX, boxY, targetX, targetY);
+        if (Logger.screenLevel(LogLevel.DEBUG)) Logger.debug("GameScene", String.format(
+            "Drag box (%d, %d) -> (%d, %d): %s in %.2f ms",
+            boxX, boxY, targetX, targetY,
+            moves == null ? "no plan" : pushPlanner.getPushNum() + " pushes, " + moves.length + " moves",
+            (System.nanoTime() - startNanos) / 1e6
+        ));
+        if (moves == null || moves.length == 0) return false;
+
+        walkPreview.setVisible(false);
+        playAutoMoves(Arrays.asList(moves), 0f, DRAG_STEP_INTERVAL);
+        return true;
+    }
+
+    /**
+     * 点击移动的画面更新：网格中的玩家直接移到终点，动画沿路径逐格播放
+     * @param startX 起点横坐标
+     * @param startY 起点纵坐标
+     * @param path 行走路径
+     * @param stepNum 实际走过的步数
+     */
+    private void updateWalkShowing(int startX, int startY, Direction[] path, int stepNum) {
+        Stack2DGirdWorld subMapGrid = gridWorld.getStack2DLayer(currentSubmap);
+        Actor[][] objectGird = subMapGrid.getLayer(SubMapData.LAYER_OBJECT).gridSpineObjects;
+        Actor player = objectGird[startY][startX];
+        if (player == null) {
+            Logger.error("GameScene", "Can't find player actor at walking start");
+            return;
+        }
+
+        SequenceAction walkAction = Actions.sequence();
+        int x = startX, y = startY;
+        for (int step = 0; step < stepNum; step++) {
+            Direction direction = path[step];
+            x += direction.dx;
+            y += direction.dy;
+
+            // 转向时才切换动画
+            if (step == 0 || path[step - 1] != direction) walkAction.addAction(Actions.run(() -> ((SpineObject) player).setAnimation(0, direction.getDirection(), false)));
+            Vector2 position = subMapGrid.getCellPosition(y, x);
+            walkAction.addAction(Actions.moveTo(position.x, position.y, WALK_STEP_DURATION));
+        }
+
+        objectGird[startY][startX] = null;
+        objectGird[y][x] = player;
+
+        Vector2 finalPosition = subMapGrid.getCellPosition(y, x);
+        SAIManager.executeAction(
+            player,
+            walkAction,
+            () -> { // reset 重置回调事件
+                player.clearActions();
+                player.setPosition(finalPosition.x, finalPosition.y);
+            }
+        );
+    }
+
+    /**
+     * 更新点击移动的悬停标记
+     * <br><br>
+     * 距离场只在局面变化后重新计算，逐帧调用时每次只是 O(1) 查询
+     * @param stageX 鼠标世界横坐标
+     * @param stageY 鼠标世界纵坐标
+     */
+    private void updateWalkPreview(float stageX, float stageY) {
+        if (walkPreview == null || currentSubmap < 0) return;
+        Stack2DGirdWorld subMapGrid = gridWorld.getStack2DLayer(currentSubmap);
+        int x = subMapGrid.getColumnAt(stageX), y = subMapGrid.getRowAt(stageY);
+
+        walkField.update(playerCore);
+        boolean reachable = !isInCaculate && !isInEscapeMenu && walkField.getSubmapIndex() == currentSubmap && walkField.getDistance(x, y) > 0;
+        walkPreview.setVisible(reachable);
+        if (reachable) {
+            Vector2 position = subMapGrid.getCellPosition(y, x);
+            walkPreview.setPosition(position.x, position.y);
+        }
+    }
+
     /** 启动自动计算 */
     public void startAutoCaculate() {
+        // 先进行静态无解检测，明显无解时直接提示，不启动搜索
+        SolvabilityPrecheck.Result precheck = SolvabilityPrecheck.check(playerCore.getMap());
+        if (!precheck.solvable) {
+            Logger.info("GameScene", precheck.toString());
+            HintMessageBox msgBox = new HintMessageBox(gameMain, precheck.toString());
+            msgBox.setPosition(8f, 0.5f);
+            addCombinedObjectToUIStage(msgBox);
+            return;
+        }
+
+        // 命中提示缓存，直接演示
+        HintCache.Key hintKey = HintCache.Key.of(playerCore, currentSubmap);
+        List<Direction> cachedMoves = HintCache.get(hintKey);
+        if (cachedMoves != null) {
+            Logger.info("GameScene", "Hint cache hit");
+            playAutoMoves(cachedMoves);
+            return;
+        }
+
         isInCaculate = true;
         addActorsToUIStage(backCalc);
         addActorsToUIStage(warningCalcIcon);
+        calcStartKey = hintKey;
         algo = new SearchAlgo(playerCore.getMap());
         calcThread = new Thread(algo);
         calcThread.start();
@@ -655,29 +924,50 @@ public class GameScene extends SokobanFitScene {
             // 将结果序列差分为移动序列
             List<Direction> autoMovings = new ArrayList<>();
             for (int i = 0; i < searchAlgoResult.size() - 1; i++) {
-                Pos from = new Pos(searchAlgoResult.get(i).playerX, searchAlgoResult.get(i).playerY);
-                Pos to = new Pos(searchAlgoResult.get(i + 1).playerX, searchAlgoResult.get(i + 1).playerY);
-                autoMovings.add(PlayerCoreUtils.getDeltaDirection(to.sub(from)));
+                IDAState from = searchAlgoResult.get(i), to = searchAlgoResult.get(i + 1);
+                autoMovings.add(Direction.fromDelta(to.playerX - from.playerX, to.playerY - from.playerY));
             }
 
-            autoMove = new Timer.Task() {
-                @Override
-                public void run() {
-                    if (currentAutoStep < autoMovings.size()) {
-                        Direction move = autoMovings.get(currentAutoStep);
-                        if (move == Direction.Up) checkMoving(new InputEvent(), Keys.W);
-                        if (move == Direction.Down) checkMoving(new InputEvent(), Keys.S);
-                        if (move == Direction.Left) checkMoving(new InputEvent(), Keys.A);
-                        if (move == Direction.Right) checkMoving(new InputEvent(), Keys.D);
-                        currentAutoStep += 1;
-                    }
-                }
-            };
-            
-            Timer.schedule(autoMove, 0.5f, 0.3f);
+            HintCache.put(calcStartKey, autoMovings);
+            playAutoMoves(autoMovings);
         }
     }
 
+    /**
+     * 按固定间隔演示移动序列
+     * @param autoMovings 移动序列
+     */
+    public void playAutoMoves(List<Direction> autoMovings) {
+        playAutoMoves(autoMovings, 0.5f, 0.3f);
+    }
+
+    /**
+     * 按指定间隔演示移动序列
+     * @param autoMovings 移动序列
+     * @param delaySeconds 开始前的延迟
+     * @param intervalSeconds 每一步的间隔
+     */
+    public void playAutoMoves(List<Direction> autoMovings, float delaySeconds, float intervalSeconds) {
+        if (autoMove != null) autoMove.cancel();
+        currentAutoStep = 0;
+
+        autoMove = new Timer.Task() {
+            @Override
+            public void run() {
+                if (currentAutoStep < autoMovings.size()) {
+                    Direction move = autoMovings.get(currentAutoStep);
+                    if (move == Direction.Up) checkMoving(new InputEvent(), Keys.W);
+                    if (move == Direction.Down) checkMoving(new InputEvent(), Keys.S);
+                    if (move == Direction.Left) checkMoving(new InputEvent(), Keys.A);
+                    if (move == Direction.Right) checkMoving(new InputEvent(), Keys.D);
+                    currentAutoStep += 1;
+                }
+            }
+        };
+        
+        Timer.schedule(autoMove, delaySeconds, intervalSeconds);
+    }
+
     /** 初始化历史记录 */
     public void initHistoryState() {
         historyStates = new GameHistoryRecoder(gameParams);
@@ -690,10 +980,70 @@ public class GameScene extends SokobanFitScene {
         Logger.debug("GameScene", "Init, Current game frame = " + stateFrame.toString(), 500);
 
         historyStates.addNewFrame(stateFrame);
+
+        // 开始写入回放
+        long startMillis = System.currentTimeMillis();
+        this.replayPath = null;
+        String replayPath = ReplayFormat.defaultPath(mapFileInfo, startMillis);
+        if (replayPath == null) return;
+        try {
+            FilePathUtils.createDirectories(Path.of(replayPath).getParent().toString());
+            replayWriter = new ReplayWriter(Files.newOutputStream(Path.of(replayPath)), playerCore.getMap(), startMillis, System.nanoTime());
+            this.replayPath = Path.of(replayPath);
+        } catch (IOException e) {
+            Logger.warning("GameScene", "Can't start replay recording: " + e.getMessage());
+            replayWriter = null;
+        }
+    }
+
+    /**
+     * 写入一帧回放，写入失败时停止录制，不影响游戏
+     * @param subMapIndex 子地图索引
+     * @param direction 移动方向
+     * @param undoPushedBoxNum 撤销时为被撤销移动推动的箱子数，普通移动为 -1
+     */
+    private void recordReplay(int subMapIndex, Direction direction, int undoPushedBoxNum) {
+        if (replayWriter == null) return;
+        try {
+            if (undoPushedBoxNum < 0) replayWriter.writeMove(subMapIndex, direction, System.nanoTime(), playerCore.getMap());
+            else replayWriter.writeUndo(subMapIndex, direction, undoPushedBoxNum, System.nanoTime(), playerCore.getMap());
+        } catch (IOException e) {
+            Logger.warning("GameScene", "Replay recording stopped: " + e.getMessage());
+            stopReplayRecording();
+            replayPath = null; // 不完整的回放无法用于校验
+        }
+    }
+
+    /**
+     * 用本局回放重新模拟，校验步数与用时记录
+     * <br><br>
+     * 没有录制回放时无法校验，按原样信任记录
+     * @return 记录是否可信
+     */
+    private boolean verifyRecord() {
+        if (replayPath == null) return true;
+
+        int steps = historyStates.getLast().stepCount;
+        long duration = Duration.between(startTime, historyStates.getLast().frameTime).toMillis();
+        ReplayVerifier.Result result = ReplayVerifier.verify(new ReplayVerifier.Task(historyStates.rebuildMap(0), replayPath, steps, duration));
+        if (!result.valid) Logger.warning("GameScene", "Record is not verified by replay, skip updating records: " + result);
+        return result.valid;
+    }
+
+    /** 结束回放录制，写入关键帧索引 */
+    private void stopReplayRecording() {
+        if (replayWriter == null) return;
+        try {
+            replayWriter.close();
+        } catch (IOException e) {
+            Logger.warning("GameScene", "Can't finish replay recording: " + e.getMessage());
+        }
+        replayWriter = null;
     }
 
     /** 胜利 / 失败结束游戏 */
     public void endGame(boolean succcess) {
+        stopReplayRecording();
 
         // 胜利结束
         if (succcess) {
@@ -703,7 +1053,7 @@ public class GameScene extends SokobanFitScene {
             if (gameMain.getLoginUser() != null && !gameMain.getLoginUser().isGuest() && gameMain.getSaveArchive() != null)  {
                 
                 // 检查 racing 是否破纪录
-                if (gameParams.racing) {
+                if (gameParams.racing && verifyRecord()) {
                     StepRecordInfo stepRecord = gameMain.getSaveArchive().updateStepRecords(mapFileInfo.map, historyStates.getLast().stepCount);
                     long duration = Duration.between(startTime, historyStates.getLast().frameTime).toMillis();
                     TimeRecordInfo timeRecord = gameMain.getSaveArchive().updateTimeRecords(mapFileInfo.map, duration);
@@ -817,7 +1167,10 @@ public class GameScene extends SokobanFitScene {
     }
 
     @Override
-    public void logic(float delta) {}
+    public void logic(float delta) {
+        // 动画播放期间暂停后台预求解，避免与渲染争用 CPU
+        if (speculativeSolver != null) speculativeSolver.setPaused(SAIManager.isAnyInAction());
+    }
 
     @Override
     public void input() {
@@ -868,6 +1221,8 @@ public class GameScene extends SokobanFitScene {
     /** 资源释放 */
     @Override
     public void dispose() {
+        if (speculativeSolver != null) speculativeSolver.cancel();
+        stopReplayRecording();
         super.dispose();
     }
 }
@@ -550,12 +550,12 @@ public class MapEditScene extends SokobanFitScene {
         SubMapData subMap = map.allMaps.get(currentSubMapIndex);
         Stack2DGirdWorld gridWorld = map3DGirdWorld.getStack2DLayer(currentSubMapIndex);
         
-        if (gridWorld.stack2DGridWorld.size() == 0) for (int layer = 0; layer < subMap.mapLayer.size(); layer++) gridWorld.addLayer();
+        if (gridWorld.stack2DGridWorld.size() == 0) for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) gridWorld.addLayer();
 
         // 对于当前子地图的每一层
-        for (int layer = 0; layer < subMap.mapLayer.size(); layer++) {
+        for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) {
             // 当前层
-            ObjectType[][] currentLayer = subMap.mapLayer.get(layer);
+            ObjectType[][] currentLayer = subMap.getLayer(layer);
             
             // 将当前对象删除后，重新绘制或者添加新对象 Memory Leak TOFIX 内存泄露暂时解决方案
 
@@ -696,10 +696,10 @@ public class MapEditScene extends SokobanFitScene {
             SubMapData currentSubMap = map.allMaps.get(currentSubMapIndex);
 
             // 判断当前层物体存在性
-            boolean thingExists = currentSubMap.mapLayer.get(ObjectClassMapper.mapObjectTypeToLayerIndex(currentObjectChoice))[coordinateY][coordinateX] != ObjectType.Air;
+            boolean thingExists = currentSubMap.get(ObjectClassMapper.mapObjectTypeToLayerIndex(currentObjectChoice), coordinateX, coordinateY) != ObjectType.Air;
             if (!thingExists) {
                 // 向对应层添加对应物体
-                map.allMaps.get(currentSubMapIndex).mapLayer.get(ObjectClassMapper.mapObjectTypeToLayerIndex(currentObjectChoice))[coordinateY][coordinateX] = currentObjectChoice;
+                map.allMaps.get(currentSubMapIndex).set(ObjectClassMapper.mapObjectTypeToLayerIndex(currentObjectChoice), coordinateX, coordinateY, currentObjectChoice);
             } else {
                 // 也许有一些处理
             }
@@ -721,7 +721,7 @@ public class MapEditScene extends SokobanFitScene {
         // 坐标合法检查
         if (coordinateX != -1 && coordinateY != -1) {
             // 将所有层都清除为空气
-            for (ObjectType[][] layer : map.allMaps.get(currentSubMapIndex).mapLayer) layer[coordinateY][coordinateX] = ObjectType.Air;
+            for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) map.allMaps.get(currentSubMapIndex).set(layer, coordinateX, coordinateY, ObjectType.Air);
         }
 
         // 更新画面
@@ -20,6 +20,7 @@ import com.sokoban.core.logic.ObjectType;
 import com.sokoban.core.map.MapData;
 import com.sokoban.core.map.MapFileInfo;
 import com.sokoban.core.map.MapFileParser;
+import com.sokoban.core.map.MapLayer;
 import com.sokoban.core.map.SubMapData;
 import com.sokoban.core.map.gamedefault.SokobanLevels;
 import com.sokoban.core.map.gamedefault.SokobanMaps;
@@ -328,22 +329,24 @@ public abstract class MapChooseScene extends SokobanScene {
         Stack2DGirdWorld currentSubMapGridWorld = gridMap.getStack2DLayer(0); // 选择关卡的地图只会有一层
         SubMapData subMapData = map.allMaps.get(0); // 选择关卡的地图只会有一层
 
-        for (int layer = 0; layer < subMapData.mapLayer.size(); layer++) currentSubMapGridWorld.addLayer(); // 添加子地图每一层
+        for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) currentSubMapGridWorld.addLayer(); // 添加子地图每一层
 
         // 对于当前子地图的每一层
-        for (int layer = 0; layer < subMapData.mapLayer.size(); layer++) {
+        for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) {
             // 当前层
-            ObjectType[][] currentLayer = subMapData.mapLayer.get(layer);
-            
-            for (int y = 0; y < subMapData.height; y++) {
-                for (int x = 0; x < subMapData.width; x++) {
-                    // 空气与未知类型不处理
-                    if (currentLayer[y][x] == ObjectType.Air || currentLayer[y][x] == ObjectType.Unknown) continue;
-
-                    // 数据类型转换为显示类型
-                    BoxType objectBoxType = ActorMapper.mapObjectTypeToActor(currentLayer[y][x]);
-                    currentSubMapGridWorld.getLayer(layer).addBox(objectBoxType, y, x);
-                }
+            MapLayer currentLayer = subMapData.getMapLayer(layer);
+
+            // 只遍历非空格子，超大地图上不生成整层的二维副本
+            for (int cell = currentLayer.nextCell(0); cell != -1; cell = currentLayer.nextCell(cell + 1)) {
+                ObjectType object = SubMapData.typeOf(currentLayer.get(cell));
+                int x = cell % subMapData.width, y = cell / subMapData.width;
+
+                // 未知类型不处理
+                if (object == ObjectType.Unknown) continue;
+
+                // 数据类型转换为显示类型
+                BoxType objectBoxType = ActorMapper.mapObjectTypeToActor(object);
+                currentSubMapGridWorld.getLayer(layer).addBox(objectBoxType, y, x);
             }
         }
 
@@ -0,0 +1,121 @@
+package com.sokoban.core.algo;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sokoban.algo.PushLevel;
+import com.sokoban.algo.sim.BatchSimulator;
+import com.sokoban.algo.sim.ObservationExporter;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * 批量模拟器测试
+ */
+public class BatchSimulatorTest {
+    private static final String MAP =
+        "########\n" +
+        "#      #\n" +
+        "# @ $ .#\n" +
+        "#  $$ .#\n" +
+        "#    ..#\n" +
+        "########";
+
+    @Test
+    public void matchesPlayerCoreTest() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP);
+        int boardNum = 8;
+        PlayerCore[] cores = new PlayerCore[boardNum];
+        for (int board = 0; board < boardNum; board++) {
+            cores[board] = new PlayerCore();
+            cores[board].setMap(map.deepCopy());
+        }
+
+        try (BatchSimulator simulator = new BatchSimulator(map.allMaps.get(0), boardNum, 0, 1)) {
+            simulator.setAutoReset(false);
+            int[] actions = new int[boardNum];
+            float[] rewards = new float[boardNum];
+            boolean[] dones = new boolean[boardNum];
+            Random random = new Random(20241019);
+
+            for (int step = 0; step < 500; step++) {
+                for (int board = 0; board < boardNum; board++) {
+                    actions[board] = random.nextInt(PushLevel.DIRECTION_NUM);
+                    cores[board].move(0, PushLevel.DIRECTIONS[actions[board]]);
+                }
+                simulator.step(actions, rewards, dones);
+
+                for (int board = 0; board < boardNum; board++) {
+                    int width = simulator.level.width;
+                    Assert.assertEquals(simulator.playerCells[board], cores[board].getPlayerY() * width + cores[board].getPlayerX());
+                    int[] boxes = cores[board].getBoxCells(0);
+                    Arrays.sort(boxes);
+                    Assert.assertEquals(simulator.getBoxes(board), boxes);
+                    Assert.assertEquals(simulator.isSolved(board), cores[board].isGameWin());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void multiThreadTest() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP);
+        int boardNum = 5000;
+        try (BatchSimulator single = new BatchSimulator(map.allMaps.get(0), boardNum, 50, 1);
+             BatchSimulator parallel = new BatchSimulator(map.allMaps.get(0), boardNum, 50, 4)) {
+            int[] actions = new int[boardNum];
+            float[] singleRewards = new float[boardNum], parallelRewards = new float[boardNum];
+            boolean[] singleDones = new boolean[boardNum], parallelDones = new boolean[boardNum];
+            Random random = new Random(20241019);
+
+            for (int step = 0; step < 200; step++) {
+                for (int board = 0; board < boardNum; board++) actions[board] = random.nextInt(PushLevel.DIRECTION_NUM);
+                single.step(actions, singleRewards, singleDones);
+                parallel.step(actions, parallelRewards, parallelDones);
+                Assert.assertEquals(parallelRewards, singleRewards);
+                Assert.assertEquals(parallelDones, singleDones);
+            }
+            Assert.assertEquals(parallel.playerCells, single.playerCells);
+            Assert.assertEquals(parallel.boxBits, single.boxBits);
+        }
+    }
+
+    @Test
+    public void observationTest() {
+        // 模拟器导出的观测应与逻辑核心地图导出的一致
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP);
+        int boardNum = 4;
+        PlayerCore[] cores = new PlayerCore[boardNum];
+        for (int board = 0; board < boardNum; board++) {
+            cores[board] = new PlayerCore();
+            cores[board].setMap(map.deepCopy());
+        }
+
+        ObservationExporter exporter = new ObservationExporter(map.allMaps.get(0));
+        ByteBuffer batch = exporter.allocate(boardNum), single = exporter.allocate(boardNum);
+        try (BatchSimulator simulator = new BatchSimulator(map.allMaps.get(0), boardNum, 0, 1)) {
+            simulator.setAutoReset(false);
+            int[] actions = new int[boardNum];
+            float[] rewards = new float[boardNum];
+            boolean[] dones = new boolean[boardNum];
+            Random random = new Random(20241019);
+
+            for (int step = 0; step < 100; step++) {
+                for (int board = 0; board < boardNum; board++) {
+                    actions[board] = random.nextInt(PushLevel.DIRECTION_NUM);
+                    cores[board].move(0, PushLevel.DIRECTIONS[actions[board]]);
+                    exporter.export(cores[board].getSubmap(0), single, board * exporter.boardBytes);
+                }
+                simulator.step(actions, rewards, dones);
+                exporter.export(simulator, batch, 0, boardNum);
+                Assert.assertEquals(batch.rewind(), single.rewind());
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package com.sokoban.core.algo;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sokoban.algo.HintCache;
+import com.sokoban.algo.SpeculativeSolver;
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * 提示缓存与后台预求解测试
+ */
+public class HintCacheTest {
+    private static final String MAP =
+        "#######\n" +
+        "#@ .#.#\n" +
+        "#  $# #\n" +
+        "# $   #\n" +
+        "#  #  #\n" +
+        "#######";
+
+    @BeforeMethod
+    public void clearCache() {
+        HintCache.clear();
+    }
+
+    @Test
+    public void keyStabilityTest() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP);
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map.deepCopy());
+
+        // 逻辑核心增量维护的键与直接由子地图计算的键一致
+        HintCache.Key initialKey = HintCache.Key.of(playerCore, 0);
+        Assert.assertEquals(initialKey, HintCache.Key.of(0, map.allMaps.get(0)));
+        Assert.assertEquals(initialKey.hashCode(), HintCache.Key.of(0, map.allMaps.get(0).deepCopy()).hashCode());
+
+        // 局面变化后键改变，回到原局面后键恢复
+        Assert.assertTrue(playerCore.move(0, Direction.Right));
+        Assert.assertNotEquals(HintCache.Key.of(playerCore, 0), initialKey);
+        Assert.assertTrue(playerCore.undoMove());
+        Assert.assertEquals(HintCache.Key.of(playerCore, 0), initialKey);
+
+        // 物体层相同但目标点不同的关卡使用不同的键
+        MapData moved = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP.replace("#@ .#.#", "#@. #.#"));
+        Assert.assertEquals(HintCache.Key.of(0, moved.allMaps.get(0)).positionHash, initialKey.positionHash);
+        Assert.assertNotEquals(HintCache.Key.of(0, moved.allMaps.get(0)), initialKey);
+
+        // 取出的是副本
+        HintCache.put(initialKey, Arrays.asList(Direction.Right, Direction.Down));
+        HintCache.get(initialKey).clear();
+        Assert.assertEquals(HintCache.get(HintCache.Key.of(playerCore, 0)), Arrays.asList(Direction.Right, Direction.Down));
+    }
+
+    @Test
+    public void lruEvictionTest() {
+        List<Direction> moves = Arrays.asList(Direction.Up);
+        for (int i = 0; i < HintCache.MAX_ENTRIES; i++) HintCache.put(new HintCache.Key(1, i), moves);
+        Assert.assertEquals(HintCache.size(), HintCache.MAX_ENTRIES);
+
+        // 访问最早的条目后，被淘汰的是第二早的条目
+        Assert.assertNotNull(HintCache.get(new HintCache.Key(1, 0)));
+        HintCache.put(new HintCache.Key(1, HintCache.MAX_ENTRIES), moves);
+        Assert.assertEquals(HintCache.size(), HintCache.MAX_ENTRIES);
+        Assert.assertTrue(HintCache.contains(new HintCache.Key(1, 0)));
+        Assert.assertFalse(HintCache.contains(new HintCache.Key(1, 1)));
+        Assert.assertTrue(HintCache.contains(new HintCache.Key(1, HintCache.MAX_ENTRIES)));
+    }
+
+    @Test
+    public void speculativeSolveTest() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP);
+        new SpeculativeSolver(map.deepCopy(), 0).run();
+
+        // 结果以逻辑核心的键写入缓存，并能通过逻辑核心重放
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map.deepCopy());
+        List<Direction> moves = HintCache.get(HintCache.Key.of(playerCore, 0));
+        Assert.assertNotNull(moves);
+        for (Direction direction : moves) Assert.assertTrue(playerCore.move(0, direction));
+        Assert.assertTrue(playerCore.isGameWin());
+    }
+
+    @Test
+    public void speculativePauseAndCancelTest() throws InterruptedException {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), MAP);
+        HintCache.Key key = HintCache.Key.of(0, map.allMaps.get(0));
+
+        // 暂停中不产生结果，取消后线程结束
+        SpeculativeSolver solver = new SpeculativeSolver(map.deepCopy(), 0);
+        solver.setPaused(true);
+        Thread thread = new Thread(solver);
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(300);
+        Assert.assertTrue(thread.isAlive());
+        Assert.assertFalse(HintCache.contains(key));
+
+        solver.cancel();
+        thread.join(2000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertFalse(HintCache.contains(key));
+
+        // 启动前取消不做任何搜索
+        SpeculativeSolver cancelled = new SpeculativeSolver(map.deepCopy(), 0);
+        cancelled.cancel();
+        cancelled.run();
+        Assert.assertFalse(HintCache.contains(key));
+
+        // 暂停后恢复可以得到结果
+        SpeculativeSolver resumed = new SpeculativeSolver(map.deepCopy(), 0);
+        resumed.setPaused(true);
+        thread = new Thread(resumed);
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(100);
+        resumed.setPaused(false);
+        thread.join(5000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue(HintCache.contains(key));
+    }
+
+    @Test
+    public void speculativeRoomsTest() throws InterruptedException {
+        // 两个房间经走廊相连，预求解走分房间求解
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(),
+            "##########\n" +
+            "#@   #   #\n" +
+            "# $     .#\n" +
+            "# $. #   #\n" +
+            "##########"
+        );
+        HintCache.Key key = HintCache.Key.of(0, map.allMaps.get(0));
+
+        // 暂停时房间子问题的搜索同样停住，取消后线程结束
+        SpeculativeSolver solver = new SpeculativeSolver(map.deepCopy(), 0);
+        solver.setPaused(true);
+        Thread thread = new Thread(solver);
+        thread.setDaemon(true);
+        thread.start();
+        thread.join(300);
+        Assert.assertTrue(thread.isAlive());
+        solver.cancel();
+        thread.join(2000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertFalse(HintCache.contains(key));
+
+        new SpeculativeSolver(map.deepCopy(), 0).run();
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map.deepCopy());
+        List<Direction> moves = HintCache.get(HintCache.Key.of(playerCore, 0));
+        Assert.assertNotNull(moves);
+        for (Direction direction : moves) Assert.assertTrue(playerCore.move(0, direction));
+        Assert.assertTrue(playerCore.isGameWin());
+    }
+}
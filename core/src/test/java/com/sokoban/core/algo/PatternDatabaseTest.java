@@ -0,0 +1,153 @@
+package com.sokoban.core.algo;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import com.sokoban.algo.PatternDatabase;
+import com.sokoban.algo.PushAStar;
+import com.sokoban.algo.PushLevel;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * 模式数据库测试
+ */
+public class PatternDatabaseTest {
+    private static final String CORRIDOR =
+        "#######\n" +
+        "#@ $ .#\n" +
+        "#######";
+
+    private static final String ROOM =
+        "######\n" +
+        "#    #\n" +
+        "# .. #\n" +
+        "#  . #\n" +
+        "#@   #\n" +
+        "######";
+
+    @BeforeMethod
+    public void clearDatabases() {
+        PatternDatabase.clear();
+    }
+
+    private PushLevel parseLevel(String mapString) {
+        return new PushLevel(MapFileParser.parseMapDataChar(new MapFileInfo(), mapString).allMaps.get(0));
+    }
+
+    private PatternDatabase waitReady(PatternDatabase database) throws InterruptedException {
+        for (int i = 0; i < 1000 && !database.isReady(); i++) Thread.sleep(10);
+        Assert.assertTrue(database.isReady());
+        return database;
+    }
+
+    @Test
+    public void tableValueTest() throws InterruptedException {
+        PushLevel level = parseLevel(CORRIDOR);
+        PatternDatabase database = waitReady(PatternDatabase.request(level, null));
+        Assert.assertSame(PatternDatabase.request(level, null), database);
+
+        // 单行走廊中只能向目标点方向推动，靠墙的箱子无法推动
+        int target = level.targets[0];
+        Assert.assertEquals(database.lowerBound(new int[] {target}), 0);
+        Assert.assertEquals(database.lowerBound(new int[] {target - 1}), 1);
+        Assert.assertEquals(database.lowerBound(new int[] {target - 2}), 2);
+        Assert.assertEquals(database.lowerBound(new int[] {target - 3}), 3);
+        Assert.assertEquals(database.lowerBound(new int[] {target - 4}), PushLevel.UNREACHABLE);
+    }
+
+    @Test
+    public void admissibleTest() throws InterruptedException {
+        PushLevel level = parseLevel(ROOM);
+        PatternDatabase database = waitReady(PatternDatabase.request(level, null));
+
+        // 枚举所有三箱子布局，与推动数最优的 A* 结果比较
+        List<Integer> cells = new ArrayList<>();
+        for (int cell = 0; cell < level.cellNum; cell++) if (level.isFloor(cell) && cell != level.initialPlayer) cells.add(cell);
+        int checked = 0, exact = 0;
+        for (int a = 0; a < cells.size(); a++) {
+            for (int b = a + 1; b < cells.size(); b++) {
+                for (int c = b + 1; c < cells.size(); c++) {
+                    int[] boxes = {cells.get(a), cells.get(b), cells.get(c)};
+                    int bound = database.lowerBound(boxes);
+                    byte[] path = new PushAStar(level).solve(level.initialPlayer, boxes);
+                    if (path == null) continue;
+
+                    int pushes = countPushes(level, boxes, path);
+                    Assert.assertNotEquals(bound, PushLevel.UNREACHABLE, "solvable layout " + Arrays.toString(boxes) + " reported as dead");
+                    Assert.assertTrue(bound <= pushes, String.format("bound %d > %d pushes at %s", bound, pushes, Arrays.toString(boxes)));
+                    checked++;
+                    if (bound == pushes) exact++;
+                }
+            }
+        }
+        Assert.assertTrue(checked > 0);
+        Assert.assertTrue(exact > 0);
+    }
+
+    @Test
+    public void persistRoundTripTest() throws IOException, InterruptedException {
+        PushLevel level = parseLevel(ROOM);
+        Path directory = Files.createTempDirectory("pdb-test");
+        Path file = directory.resolve("room.pdb");
+        try {
+            PatternDatabase built = waitReady(PatternDatabase.request(level, file.toString()));
+            for (int i = 0; i < 100 && !Files.exists(file); i++) Thread.sleep(10);
+            Assert.assertTrue(Files.exists(file));
+            Thread.sleep(50); // 等待写入结束
+            FileTime marker = FileTime.fromMillis(0);
+            Files.setLastModifiedTime(file, marker);
+
+            // 释放后重新请求，从文件读取而不是重新构建
+            PatternDatabase.clear();
+            PatternDatabase loaded = waitReady(PatternDatabase.request(level, file.toString()));
+            Assert.assertNotSame(loaded, built);
+            Assert.assertEquals(Files.getLastModifiedTime(file), marker);
+
+            for (int a = 0; a < level.cellNum; a++) {
+                for (int b = a + 1; b < level.cellNum; b++) {
+                    if (!level.isFloor(a) || !level.isFloor(b)) continue;
+                    int[] boxes = {a, b};
+                    Assert.assertEquals(loaded.lowerBound(boxes), built.lowerBound(boxes));
+                }
+            }
+
+            // 其它关卡的文件不会被误读
+            PushLevel other = parseLevel(ROOM.replace("#  . #", "# .  #"));
+            PatternDatabase rebuilt = waitReady(PatternDatabase.request(other, file.toString()));
+            Assert.assertEquals(rebuilt.lowerBound(new int[] {other.targets[0], other.targets[1], other.targets[2]}), 0);
+        } finally {
+            PatternDatabase.clear();
+            Thread.sleep(50);
+            Files.deleteIfExists(file);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /** 沿路径模拟，统计推动数 */
+    private int countPushes(PushLevel level, int[] boxes, byte[] path) {
+        boolean[] occupied = new boolean[level.cellNum];
+        for (int box : boxes) occupied[box] = true;
+        int player = level.initialPlayer, pushes = 0;
+        for (byte direction : path) {
+            int next = level.neighbor(player, direction);
+            if (occupied[next]) {
+                occupied[next] = false;
+                occupied[level.neighbor(next, direction)] = true;
+                pushes++;
+            }
+            player = next;
+        }
+        for (int target : level.targets) Assert.assertTrue(occupied[target]);
+        return pushes;
+    }
+}
@@ -0,0 +1,85 @@
+package com.sokoban.core.algo;
+
+import java.util.List;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sokoban.algo.RoomDecompositionSolver;
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * 房间分解求解器测试，关卡由一格宽的走廊连接的小房间组成
+ */
+public class RoomDecompositionSolverTest {
+
+    /** 求解并通过逻辑核心重放校验 */
+    private RoomDecompositionSolver solveAndVerify(String mapString) {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), mapString);
+        RoomDecompositionSolver solver = new RoomDecompositionSolver(map.deepCopy());
+        List<Direction> moves = solver.solve();
+        Assert.assertNotNull(moves);
+
+        PlayerCore playerCore = new PlayerCore();
+        int subMapIndex = playerCore.setMap(map.deepCopy());
+        for (Direction direction : moves) Assert.assertTrue(playerCore.move(subMapIndex, direction));
+        Assert.assertTrue(playerCore.isGameWin());
+        return solver;
+    }
+
+    @Test
+    public void balancedRoomsTest() {
+        // 两个房间各自平衡，不需要传递箱子
+        RoomDecompositionSolver solver = solveAndVerify(
+            "##########\n" +
+            "#@   #   #\n" +
+            "# $.   $.#\n" +
+            "#    #   #\n" +
+            "##########"
+        );
+        Assert.assertEquals(solver.getTransferNum(), 0);
+    }
+
+    @Test
+    public void twoRoomTransferTest() {
+        // 左侧房间多一个箱子，右侧房间缺一个箱子，必须经走廊传递
+        RoomDecompositionSolver solver = solveAndVerify(
+            "##########\n" +
+            "#@   #   #\n" +
+            "# $     .#\n" +
+            "# $. #   #\n" +
+            "##########"
+        );
+        Assert.assertEquals(solver.getTransferNum(), 1);
+    }
+
+    @Test
+    public void threeRoomTransferTest() {
+        // 中间房间平衡，但它的箱子挡在走廊口，需要先把它推向右侧房间，再把左侧多出的箱子补进中间房间
+        RoomDecompositionSolver solver = solveAndVerify(
+            "################\n" +
+            "#@   #    #    #\n" +
+            "# $    $      .#\n" +
+            "# $. #  . #    #\n" +
+            "################"
+        );
+        Assert.assertEquals(solver.getTransferNum(), 2);
+    }
+
+    @Test
+    public void targetOnDoorFallbackTest() {
+        // 目标点在走廊上，无法分解，退回整图求解
+        RoomDecompositionSolver solver = solveAndVerify(
+            "##########\n" +
+            "#@   #   #\n" +
+            "# $$  .  #\n" +
+            "#  . #   #\n" +
+            "##########"
+        );
+        Assert.assertEquals(solver.getTransferNum(), -1);
+    }
+}
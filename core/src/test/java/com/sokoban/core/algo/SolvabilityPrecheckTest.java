@@ -0,0 +1,110 @@
+package com.sokoban.core.algo;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sokoban.algo.SolvabilityPrecheck;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+
+/**
+ * 静态无解检测测试
+ */
+public class SolvabilityPrecheckTest {
+
+    private SolvabilityPrecheck.Result check(String mapString) {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), mapString);
+        return SolvabilityPrecheck.check(map);
+    }
+
+    @Test
+    public void testSolvableMap() {
+        Assert.assertTrue(check(
+            "#######\n" +
+            "#@ .#.#\n" +
+            "#  $# #\n" +
+            "# $   #\n" +
+            "#  #  #\n" +
+            "#######"
+        ).solvable);
+    }
+
+    @Test
+    public void testCountMismatch() {
+        // 箱子少于目标点
+        Assert.assertFalse(check(
+            "######\n" +
+            "#@$..#\n" +
+            "######"
+        ).solvable);
+    }
+
+    @Test
+    public void testExtraBoxes() {
+        // 多余的箱子合法，即使它位于死格
+        Assert.assertTrue(check(
+            "#######\n" +
+            "#$ $ .#\n" +
+            "#  @  #\n" +
+            "#######"
+        ).solvable);
+
+        // 多余的箱子不能代替无法匹配的目标点
+        Assert.assertFalse(check(
+            "########\n" +
+            "###.####\n" +
+            "# $ $ .#\n" +
+            "#  #@ $#\n" +
+            "########"
+        ).solvable);
+    }
+
+    @Test
+    public void testBoxOnDeadSquare() {
+        Assert.assertFalse(check(
+            "######\n" +
+            "#$  .#\n" +
+            "#  @ #\n" +
+            "######"
+        ).solvable);
+    }
+
+    @Test
+    public void testMatchingFailure() {
+        // 两个箱子都只能被推到右侧的目标点，上方凹槽中的目标点无法推入
+        Assert.assertFalse(check(
+            "########\n" +
+            "###.####\n" +
+            "# $ $ .#\n" +
+            "#  #@  #\n" +
+            "########"
+        ).solvable);
+    }
+
+    @Test
+    public void testPlayerEnclosed() {
+        // 玩家四周的箱子后面都紧贴着另一个箱子
+        Assert.assertFalse(check(
+            "###########\n" +
+            "#.  ...  .#\n" +
+            "#    $    #\n" +
+            "#    $    #\n" +
+            "#  $$@$$  #\n" +
+            "#    $    #\n" +
+            "#    $    #\n" +
+            "#.   .   .#\n" +
+            "###########"
+        ).solvable);
+    }
+
+    @Test
+    public void testUnsolvedSubmapWithoutPlayer() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), "#####\n#@$.#\n#####");
+        Assert.assertTrue(SolvabilityPrecheck.check(map).solvable);
+
+        // 玩家无法进入的子地图未完成
+        map.allMaps.add(MapFileParser.parseMapDataChar(new MapFileInfo(), "#####\n#$ .#\n#####").allMaps.get(0));
+        Assert.assertFalse(SolvabilityPrecheck.check(map).solvable);
+    }
+}
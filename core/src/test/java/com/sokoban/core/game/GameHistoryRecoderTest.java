@@ -0,0 +1,88 @@
+package com.sokoban.core.game;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.MoveResult;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+import com.sokoban.core.state.GameHistoryRecoder;
+import com.sokoban.core.state.GameStateFrame;
+
+/**
+ * 增量历史记录测试
+ */
+public class GameHistoryRecoderTest {
+
+    @Test
+    public void rebuildTest() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(),
+            "########\n" +
+            "#      #\n" +
+            "# @ $ .#\n" +
+            "#   $ .#\n" +
+            "#      #\n" +
+            "########"
+        );
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map);
+
+        GameHistoryRecoder history = new GameHistoryRecoder();
+        GameStateFrame initFrame = new GameStateFrame();
+        initFrame.mapData = playerCore.getMap().deepCopy();
+        history.addNewFrame(initFrame);
+
+        // 随机移动，记录每一步的完整地图作为对照
+        List<MapData> expectedMaps = new ArrayList<>();
+        expectedMaps.add(playerCore.getMap().deepCopy());
+        Direction[] directions = {Direction.Up, Direction.Down, Direction.Left, Direction.Right};
+        Random random = new Random(20241019);
+        while (expectedMaps.size() < 3 * GameHistoryRecoder.KEYFRAME_INTERVAL) {
+            MoveResult result = playerCore.tryMove(0, directions[random.nextInt(directions.length)]);
+            if (!result.moved) continue;
+
+            GameStateFrame frame = new GameStateFrame();
+            frame.stepCount = history.getTotalFrameNum();
+            frame.action = result.direction;
+            frame.moves = result.events.deepCopy();
+            frame.positionHash = playerCore.getPositionHash();
+            history.addMoveFrame(frame, playerCore.getMap());
+            expectedMaps.add(playerCore.getMap().deepCopy());
+        }
+
+        // 任意一步都应能从关键帧重放得到
+        for (int step = 0; step < expectedMaps.size(); step++) {
+            Assert.assertEquals(history.getStepFrame(step).mapData, expectedMaps.get(step), "Rebuild failed at step " + step);
+        }
+
+        // 按局面哈希找到的是最早到达相同局面的帧
+        for (int step = 0; step < expectedMaps.size(); step++) {
+            int firstStep = expectedMaps.indexOf(expectedMaps.get(step));
+            Assert.assertEquals(history.findFrame(history.getStateFrame().get(step).positionHash), firstStep, "Find frame failed at step " + step);
+        }
+
+        // 只有关键帧保存完整地图
+        int keyframeNum = 0;
+        for (GameStateFrame frame : history.getStateFrame()) if (frame.hasFullMap()) keyframeNum++;
+        Assert.assertEquals(keyframeNum, 3);
+
+        // 撤销与重做都不复制地图，由逻辑核心原地恢复
+        int lastStep = expectedMaps.size() - 1;
+        for (int step = lastStep; step > lastStep - GameHistoryRecoder.KEYFRAME_INTERVAL; step--) {
+            Assert.assertNotNull(history.undo());
+            Assert.assertTrue(playerCore.undoMove());
+            Assert.assertEquals(playerCore.getMap(), expectedMaps.get(step - 1));
+            Assert.assertEquals(history.rebuildMap(history.getTotalFrameNum() - 1), expectedMaps.get(step - 1));
+        }
+        while (history.redo() != null) Assert.assertTrue(playerCore.redoMove());
+        Assert.assertEquals(playerCore.getMap(), expectedMaps.get(lastStep));
+        Assert.assertEquals(history.getStepFrame(lastStep).mapData, expectedMaps.get(lastStep));
+    }
+}
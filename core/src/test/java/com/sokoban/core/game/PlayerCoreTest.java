@@ -1,15 +1,21 @@
 package com.sokoban.core.game;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.testng.Assert;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import com.sokoban.core.logic.BoxPushPlanner;
 import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.MoveResult;
 import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.logic.WalkDistanceField;
+import com.sokoban.core.logic.ZobristHash;
 import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
 import com.sokoban.core.map.MapFileParser;
 import com.sokoban.core.map.MapFileReader;
 
@@ -160,4 +166,238 @@ public class PlayerCoreTest {
             }
         }
     }
+
+    @Test
+    public void undoTest() {
+        // 执行全部操作后逐步撤销，应回到初始地图
+        for (int testIndex = 0; testIndex < mapSequences.size(); testIndex++) {
+            MapData initialMap = mapSequences.get(testIndex).getFirst();
+            PlayerCore playerCore = new PlayerCore();
+            playerCore.setMap(initialMap.deepCopy());
+
+            int movedNum = 0;
+            for (List<Direction> operators : operatorSequences.get(testIndex)) {
+                for (Direction operator : operators) if (playerCore.move(0, operator)) movedNum++;
+            }
+            Assert.assertEquals(playerCore.getUndoableMoveNum(), movedNum);
+
+            while (playerCore.undoMove());
+            Assert.assertEquals(playerCore.getMap(), initialMap, String.format("Undo should restore initial map at testIndex = %d", testIndex));
+            Assert.assertEquals(playerCore.getPlayerPos(), playerCore.findPlayerPosition(0));
+        }
+    }
+
+    @Test
+    public void redoTest() {
+        // 全部撤销后再全部重做，应回到最终地图；重做后的移动可以再次撤销
+        for (int testIndex = 0; testIndex < mapSequences.size(); testIndex++) {
+            MapData initialMap = mapSequences.get(testIndex).getFirst();
+            PlayerCore playerCore = new PlayerCore();
+            playerCore.setMap(initialMap.deepCopy());
+
+            for (List<Direction> operators : operatorSequences.get(testIndex)) {
+                for (Direction operator : operators) playerCore.move(0, operator);
+            }
+            MapData finalMap = playerCore.getMap().deepCopy();
+            int movedNum = playerCore.getUndoableMoveNum();
+
+            while (playerCore.undoMove());
+            Assert.assertEquals(playerCore.getRedoableMoveNum(), movedNum);
+            while (playerCore.redoMove());
+            Assert.assertEquals(playerCore.getMap(), finalMap, String.format("Redo should restore final map at testIndex = %d", testIndex));
+            Assert.assertEquals(playerCore.getPlayerPos(), playerCore.findPlayerPosition(0));
+            Assert.assertEquals(playerCore.getUndoableMoveNum(), movedNum);
+
+            while (playerCore.undoMove());
+            Assert.assertEquals(playerCore.getMap(), initialMap);
+
+            // 新的移动会清空重做记录
+            for (Direction operator : Direction.values()) if (playerCore.move(0, operator)) break;
+            Assert.assertEquals(playerCore.getRedoableMoveNum(), 0);
+        }
+    }
+
+    @Test
+    public void progressTest() {
+        // 增量维护的目标点完成情况与箱子索引应与重新统计一致
+        for (int testIndex = 0; testIndex < mapSequences.size(); testIndex++) {
+            PlayerCore playerCore = new PlayerCore();
+            playerCore.setMap(mapSequences.get(testIndex).getFirst().deepCopy());
+
+            for (List<Direction> operators : operatorSequences.get(testIndex)) {
+                for (Direction operator : operators) {
+                    playerCore.move(0, operator);
+
+                    PlayerCore recounted = new PlayerCore();
+                    recounted.setMap(playerCore.getMap().deepCopy());
+                    Assert.assertEquals(playerCore.getBoxesOnTargets(), recounted.getBoxesOnTargets());
+                    Assert.assertEquals(playerCore.isGameWin(), recounted.isGameWin());
+
+                    // 增量维护的箱子索引应与重新扫描一致
+                    int[] boxCells = playerCore.getBoxCells(0), expectedBoxCells = recounted.getBoxCells(0);
+                    for (int boxId = 0; boxId < boxCells.length; boxId++) Assert.assertEquals(playerCore.boxAt(0, boxCells[boxId]), boxId);
+                    Arrays.sort(boxCells);
+                    Arrays.sort(expectedBoxCells);
+                    Assert.assertEquals(boxCells, expectedBoxCells);
+                    Assert.assertEquals(playerCore.getPlayerPos(), recounted.getPlayerPos());
+                }
+            }
+
+            while (playerCore.undoMove());
+            PlayerCore initial = new PlayerCore();
+            initial.setMap(mapSequences.get(testIndex).getFirst().deepCopy());
+            Assert.assertEquals(playerCore.getBoxesOnTargets(), initial.getBoxesOnTargets());
+        }
+    }
+
+    @Test
+    public void moveResultTest() {
+        // 变化描述应与整图比较得到的结论一致
+        for (int testIndex = 0; testIndex < mapSequences.size(); testIndex++) {
+            PlayerCore playerCore = new PlayerCore();
+            playerCore.setMap(mapSequences.get(testIndex).getFirst().deepCopy());
+
+            for (List<Direction> operators : operatorSequences.get(testIndex)) {
+                for (Direction operator : operators) {
+                    MapData before = playerCore.getMap().deepCopy();
+                    int boxesOnTargets = playerCore.getBoxesOnTargets();
+                    int[] boxCells = playerCore.getBoxCells(0);
+                    Arrays.sort(boxCells);
+
+                    MoveResult result = playerCore.tryMove(0, operator);
+                    int[] newBoxCells = playerCore.getBoxCells(0);
+                    Arrays.sort(newBoxCells);
+
+                    Assert.assertEquals(result.moved, !before.equals(playerCore.getMap()));
+                    Assert.assertEquals(result.isPush(), !Arrays.equals(boxCells, newBoxCells));
+                    Assert.assertEquals(result.targetDelta, playerCore.getBoxesOnTargets() - boxesOnTargets);
+                    Assert.assertEquals(result.win, result.moved && playerCore.isGameWin());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void positionHashTest() {
+        // 增量维护的哈希与完整计算一致，撤销回到初始局面时哈希也回到初始值
+        for (int testIndex = 0; testIndex < mapSequences.size(); testIndex++) {
+            PlayerCore playerCore = new PlayerCore();
+            playerCore.setMap(mapSequences.get(testIndex).getFirst().deepCopy());
+            long initialHash = playerCore.getPositionHash();
+            Assert.assertEquals(initialHash, ZobristHash.hash(playerCore.getMap()));
+
+            for (List<Direction> operators : operatorSequences.get(testIndex)) {
+                for (Direction operator : operators) {
+                    playerCore.move(0, operator);
+                    Assert.assertEquals(playerCore.getPositionHash(), ZobristHash.hash(playerCore.getMap()), String.format("Hash mismatch at testIndex = %d", testIndex));
+                }
+            }
+
+            boolean changed = playerCore.getPositionHash() != initialHash;
+            Assert.assertEquals(changed, !playerCore.getMap().equals(mapSequences.get(testIndex).getFirst()));
+            while (playerCore.undoMove());
+            Assert.assertEquals(playerCore.getPositionHash(), initialHash);
+            while (playerCore.redoMove());
+            Assert.assertEquals(playerCore.getPositionHash(), ZobristHash.hash(playerCore.getMap()));
+        }
+    }
+
+    @Test
+    public void multiSubmapTest() {
+        // 子地图 0 有玩家，子地图 1 没有玩家且未完成，子地图 2 没有目标点
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), "#####\n#@$.#\n#####");
+        map.allMaps.add(MapFileParser.parseMapDataChar(new MapFileInfo(), "#####\n#$ .#\n#####").allMaps.get(0));
+        map.allMaps.add(MapFileParser.parseMapDataChar(new MapFileInfo(), "####\n#  #\n####").allMaps.get(0));
+
+        PlayerCore playerCore = new PlayerCore();
+        Assert.assertEquals(playerCore.setMap(map), 0);
+        Assert.assertFalse(playerCore.isSubmapSolved(0));
+        Assert.assertFalse(playerCore.isSubmapSolved(1));
+        Assert.assertTrue(playerCore.isSubmapSolved(2));
+        Assert.assertEquals(playerCore.getUnsolvedSubmapNum(), 2);
+
+        long otherHash = playerCore.getSubmapHash(1);
+        Assert.assertTrue(playerCore.move(0, Direction.Right));
+        Assert.assertTrue(playerCore.isSubmapSolved(0));
+        Assert.assertEquals(playerCore.getUnsolvedSubmapNum(), 1);
+        Assert.assertFalse(playerCore.isGameWin());
+
+        // 子地图哈希互相独立，异或即为局面哈希
+        Assert.assertEquals(playerCore.getSubmapHash(1), otherHash);
+        Assert.assertEquals(playerCore.getSubmapHash(0) ^ playerCore.getSubmapHash(1) ^ playerCore.getSubmapHash(2), playerCore.getPositionHash());
+
+        Assert.assertTrue(playerCore.undoMove());
+        Assert.assertEquals(playerCore.getUnsolvedSubmapNum(), 2);
+    }
+
+    @Test
+    public void walkDistanceFieldTest() {
+        // 箱子挡住同一行，只能从下方绕过去
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), "#######\n#@  $ #\n# ##  #\n#     #\n#######");
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map);
+        int playerX = playerCore.getPlayerX(), playerY = playerCore.getPlayerY();
+
+        WalkDistanceField walkField = new WalkDistanceField();
+        Assert.assertTrue(walkField.update(playerCore));
+        Assert.assertFalse(walkField.update(playerCore)); // 局面未变化，直接复用
+        Assert.assertEquals(walkField.getDistance(playerX, playerY), 0);
+        Assert.assertEquals(walkField.getDistance(playerX + 1, playerY), 1);
+        Assert.assertEquals(walkField.getDistance(playerX + 3, playerY), WalkDistanceField.UNREACHABLE); // 箱子
+        Assert.assertEquals(walkField.getDistance(playerX - 1, playerY), WalkDistanceField.UNREACHABLE); // 墙
+        Assert.assertEquals(walkField.getDistance(-1, 0), WalkDistanceField.UNREACHABLE);
+        Assert.assertEquals(walkField.getReachableNum(), 12);
+
+        // 按路径行走不会推动箱子
+        Direction[] path = walkField.pathTo(playerX + 4, playerY);
+        Assert.assertEquals(path.length, 8);
+        Assert.assertEquals(walkField.pathTo(playerX, playerY).length, 0);
+        Assert.assertNull(walkField.pathTo(playerX + 3, playerY));
+        int[] boxCells = playerCore.getBoxCells(0);
+        for (Direction direction : path) {
+            MoveResult moveResult = playerCore.tryMove(0, direction);
+            Assert.assertTrue(moveResult.moved);
+            Assert.assertFalse(moveResult.isPush());
+        }
+        Assert.assertEquals(playerCore.getPlayerX(), playerX + 4);
+        Assert.assertEquals(playerCore.getPlayerY(), playerY);
+        Assert.assertEquals(playerCore.getBoxCells(0), boxCells);
+
+        // 玩家移动后重新计算
+        Assert.assertTrue(walkField.update(playerCore));
+        Assert.assertEquals(walkField.getDistance(playerX + 4, playerY), 0);
+    }
+
+    @Test
+    public void boxPushPlannerTest() {
+        MapData map = MapFileParser.parseMapDataChar(new MapFileInfo(), "########\n#      #\n#@$  # #\n#      #\n########");
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map);
+        int boxX = playerCore.getPlayerX() + 1, boxY = playerCore.getPlayerY();
+        BoxPushPlanner planner = new BoxPushPlanner();
+
+        // 直接向右推两格
+        Direction[] moves = planner.plan(playerCore, boxX, boxY, boxX + 2, boxY);
+        Assert.assertEquals(moves, new Direction[] {Direction.Right, Direction.Right});
+        Assert.assertEquals(planner.getPushNum(), 2);
+
+        // 需要先绕到箱子下方再向上推
+        moves = planner.plan(playerCore, boxX, boxY, boxX, boxY + 1);
+        Assert.assertEquals(planner.getPushNum(), 1);
+        Assert.assertEquals(moves.length, 3);
+        Assert.assertEquals(moves[moves.length - 1], Direction.Up);
+
+        // 墙后的格子推不到，空格子上没有箱子
+        Assert.assertNull(planner.plan(playerCore, boxX, boxY, boxX + 4, boxY));
+        Assert.assertNull(planner.plan(playerCore, boxX, boxY, boxX + 3, boxY));
+        Assert.assertNull(planner.plan(playerCore, boxX + 1, boxY, boxX + 2, boxY));
+        Assert.assertEquals(planner.plan(playerCore, boxX, boxY, boxX, boxY).length, 0);
+
+        // 绕过墙推到右上角，执行后箱子到达目标
+        moves = planner.plan(playerCore, boxX, boxY, boxX + 4, boxY + 1);
+        Assert.assertNotNull(moves);
+        for (Direction direction : moves) Assert.assertTrue(playerCore.move(0, direction));
+        Assert.assertEquals(playerCore.getBoxCells(0), new int[] {playerCore.getSubmap(0).index(boxX + 4, boxY + 1)});
+        Assert.assertEquals(playerCore.getUndoableMoveNum(), moves.length);
+    }
 }
@@ -3,6 +3,7 @@ package com.sokoban.core.game;
 import org.testng.Assert;
 import org.testng.annotations.Test;
 
+import com.sokoban.core.logic.Direction;
 import com.sokoban.core.logic.Pos;
 
 public class PosTest {
@@ -61,4 +62,20 @@ public class PosTest {
         Pos pos2 = new Pos(4, 5, 6);
         Assert.assertFalse(pos1.equals(pos2), "Objects with different x, y, z should not be equal");
     }
+
+    @Test
+    public void testHashCodeConsistentWithEquals() {
+        Pos pos1 = new Pos(1, 2, 3);
+        Pos pos2 = new Pos(1, 2, 3);
+        Assert.assertEquals(pos1.hashCode(), pos2.hashCode(), "Equal objects should have the same hash code");
+    }
+
+    @Test
+    public void testDirectionDelta() {
+        for (Direction direction : Direction.values()) {
+            Assert.assertEquals(Direction.fromDelta(direction.dx, direction.dy), direction, "fromDelta should invert dx, dy");
+        }
+        Assert.assertEquals(Direction.Up.cellOffset(5), 5, "Up should move one row forward");
+        Assert.assertEquals(Direction.fromDelta(1, 1), Direction.None, "Diagonal delta should map to None");
+    }
 }
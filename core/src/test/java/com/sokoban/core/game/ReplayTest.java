@@ -0,0 +1,194 @@
+package com.sokoban.core.game;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.MoveResult;
+import com.sokoban.core.logic.ObjectType;
+import com.sokoban.core.logic.PlayerCore;
+import com.sokoban.core.map.MapData;
+import com.sokoban.core.map.MapFileInfo;
+import com.sokoban.core.map.MapFileParser;
+import com.sokoban.core.map.MapLayer;
+import com.sokoban.core.map.SubMapData;
+import com.sokoban.core.state.ReplayFormat;
+import com.sokoban.core.state.ReplayReader;
+import com.sokoban.core.state.ReplayVerifier;
+import com.sokoban.core.state.ReplayWriter;
+
+/**
+ * 二进制回放读写测试
+ */
+public class ReplayTest {
+
+    /** 逐格计算的关卡哈希，作为对照 */
+    private static long naiveLevelHash(MapData map) {
+        long hash = 1469598103934665603L;
+        hash = (hash ^ map.allMaps.size()) * 1099511628211L;
+        for (SubMapData subMap : map.allMaps) {
+            hash = (hash ^ subMap.width) * 1099511628211L;
+            hash = (hash ^ subMap.height) * 1099511628211L;
+            for (int layer = 0; layer < SubMapData.LAYER_NUM; layer++) {
+                MapLayer mapLayer = subMap.getMapLayer(layer);
+                for (int cell = 0; cell < mapLayer.size(); cell++) hash = (hash ^ mapLayer.get(cell)) * 1099511628211L;
+            }
+        }
+        return hash;
+    }
+
+    @Test
+    public void levelHashTest() {
+        // 只遍历非空格子的哈希与逐格计算一致，已有回放文件中的关卡哈希仍然有效
+        MapData level = MapFileParser.parseMapDataChar(new MapFileInfo(),
+            "########\n" +
+            "#      #\n" +
+            "# @ $ .#\n" +
+            "#   $ .#\n" +
+            "########"
+        );
+        Assert.assertEquals(ReplayFormat.levelHash(level), naiveLevelHash(level));
+
+        SubMapData chunked = new SubMapData(600, 500);
+        Assert.assertTrue(chunked.isChunked());
+        chunked.setObject(0, 0, ObjectType.Wall);
+        chunked.setObject(300, 250, ObjectType.Player);
+        chunked.setObject(301, 250, ObjectType.Box);
+        chunked.setTarget(302, 250, ObjectType.BoxTarget);
+        chunked.setObject(599, 499, ObjectType.Wall);
+        MapData chunkedLevel = new MapData();
+        chunkedLevel.allMaps.add(chunked);
+        Assert.assertEquals(ReplayFormat.levelHash(chunkedLevel), naiveLevelHash(chunkedLevel));
+        Assert.assertNotEquals(ReplayFormat.levelHash(chunkedLevel), ReplayFormat.levelHash(level));
+    }
+
+    @Test
+    public void roundTripTest() throws IOException {
+        MapData level = MapFileParser.parseMapDataChar(new MapFileInfo(),
+            "########\n" +
+            "#      #\n" +
+            "# @ $ .#\n" +
+            "#   $ .#\n" +
+            "#      #\n" +
+            "########"
+        );
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(level.deepCopy());
+
+        Path path = Files.createTempFile("replay", ReplayFormat.FILE_EXTENSION);
+        List<MapData> expectedMaps = new ArrayList<>();
+        expectedMaps.add(playerCore.getMap().deepCopy());
+
+        // 随机移动与撤销，撤销记录被撤销移动的方向与推动箱子数
+        Direction[] directions = {Direction.Up, Direction.Down, Direction.Left, Direction.Right};
+        List<Direction> movedDirections = new ArrayList<>();
+        List<Integer> pushedBoxNums = new ArrayList<>();
+        Random random = new Random(20241019);
+        long nanoTime = 0;
+        try (ReplayWriter writer = new ReplayWriter(Files.newOutputStream(path), level, 0, nanoTime)) {
+            while (expectedMaps.size() <= 3 * ReplayFormat.KEYFRAME_INTERVAL) {
+                nanoTime += 1000000 + random.nextInt(1000000);
+                if (!movedDirections.isEmpty() && random.nextInt(5) == 0) {
+                    Assert.assertTrue(playerCore.undoMove());
+                    writer.writeUndo(0, movedDirections.removeLast(), pushedBoxNums.removeLast(), nanoTime, playerCore.getMap());
+                } else {
+                    MoveResult result = playerCore.tryMove(0, directions[random.nextInt(directions.length)]);
+                    if (!result.moved) continue;
+                    movedDirections.add(result.direction);
+                    pushedBoxNums.add(result.pushedBoxNum);
+                    writer.writeMove(0, result.direction, nanoTime, playerCore.getMap());
+                }
+                expectedMaps.add(playerCore.getMap().deepCopy());
+            }
+        }
+
+        // 顺序播放
+        try (ReplayReader reader = new ReplayReader(Files.newInputStream(path))) {
+            Assert.assertTrue(reader.matches(level));
+            PlayerCore replayCore = new PlayerCore();
+            replayCore.setMap(level.deepCopy());
+            ReplayReader.Event event;
+            while ((event = reader.next()) != null) {
+                Assert.assertTrue(ReplayReader.apply(event, replayCore), "Apply failed at " + event);
+                Assert.assertEquals(replayCore.getMap(), expectedMaps.get(event.frame));
+            }
+            Assert.assertEquals(reader.getFrame(), expectedMaps.size() - 1);
+        }
+
+        // 跳转到任意帧，包括关键帧前后
+        try (ReplayReader reader = ReplayReader.open(path)) {
+            int[] frames = {0, 1, ReplayFormat.KEYFRAME_INTERVAL - 1, ReplayFormat.KEYFRAME_INTERVAL, 2 * ReplayFormat.KEYFRAME_INTERVAL + 7, expectedMaps.size() - 1, 5};
+            for (int frame : frames) {
+                Assert.assertEquals(reader.seek(frame, level).getMap(), expectedMaps.get(frame), "Seek failed at frame " + frame);
+            }
+        }
+
+        // 每步约 2 bit 移动与 1~3 字节时间差
+        Assert.assertTrue(Files.size(path) < 8 * expectedMaps.size(), "Replay is too large: " + Files.size(path));
+        Files.delete(path);
+    }
+
+    @Test
+    public void verifyTest() throws IOException {
+        MapData level = MapFileParser.parseMapDataChar(new MapFileInfo(),
+            "#######\n" +
+            "#@$  .#\n" +
+            "#######"
+        );
+
+        // 推两步、退一步后撤销，再推一步胜利，净步数为 3
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(level.deepCopy());
+        Path path = Files.createTempFile("replay", ReplayFormat.FILE_EXTENSION);
+        Path unfinishedPath = Files.createTempFile("replay", ReplayFormat.FILE_EXTENSION);
+        try (ReplayWriter writer = new ReplayWriter(Files.newOutputStream(path), level, 0, 0);
+             ReplayWriter unfinishedWriter = new ReplayWriter(Files.newOutputStream(unfinishedPath), level, 0, 0)) {
+            Direction[] directions = {Direction.Right, Direction.Right, Direction.Left};
+            for (int i = 0; i < directions.length; i++) {
+                Assert.assertTrue(playerCore.move(0, directions[i]));
+                writer.writeMove(0, directions[i], (i + 1) * 1000000000L, playerCore.getMap());
+                unfinishedWriter.writeMove(0, directions[i], (i + 1) * 1000000000L, playerCore.getMap());
+            }
+            Assert.assertTrue(playerCore.undoMove());
+            writer.writeUndo(0, Direction.Left, 0, 4000000000L, playerCore.getMap());
+            Assert.assertTrue(playerCore.move(0, Direction.Right));
+            writer.writeMove(0, Direction.Right, 5000000000L, playerCore.getMap());
+            Assert.assertTrue(playerCore.isGameWin());
+        }
+
+        ReplayVerifier.Result result = ReplayVerifier.verify(new ReplayVerifier.Task(level, path, 3, 5000));
+        Assert.assertTrue(result.valid, result.toString());
+        Assert.assertEquals(result.frameNum, 5);
+        Assert.assertEquals(result.durationMillis, 5000);
+
+        // 步数或用时与回放不符、没有胜利、关卡不符均不能通过
+        Assert.assertFalse(ReplayVerifier.verify(new ReplayVerifier.Task(level, path, 2, 5000)).valid);
+        Assert.assertFalse(ReplayVerifier.verify(new ReplayVerifier.Task(level, path, 3, 3000)).valid);
+        Assert.assertFalse(ReplayVerifier.verify(new ReplayVerifier.Task(level, unfinishedPath, 2, -1)).valid);
+        MapData otherLevel = MapFileParser.parseMapDataChar(new MapFileInfo(),
+            "#######\n" +
+            "#@ $ .#\n" +
+            "#######"
+        );
+        Assert.assertFalse(ReplayVerifier.verify(new ReplayVerifier.Task(otherLevel, path, 3, -1)).valid);
+
+        // 批量并行校验，结果与任务一一对应
+        List<ReplayVerifier.Task> tasks = new ArrayList<>();
+        for (int i = 0; i < 200; i++) tasks.add(new ReplayVerifier.Task(level, i % 2 == 0 ? path : unfinishedPath, 3, -1));
+        try (ReplayVerifier verifier = new ReplayVerifier(4)) {
+            List<ReplayVerifier.Result> results = verifier.verifyAll(tasks);
+            Assert.assertEquals(results.size(), tasks.size());
+            for (int i = 0; i < results.size(); i++) Assert.assertEquals(results.get(i).valid, i % 2 == 0, "Task " + i);
+        }
+
+        Files.delete(path);
+        Files.delete(unfinishedPath);
+    }
+}
@@ -0,0 +1,118 @@
+package com.sokoban.core.map;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import com.sokoban.core.json.JsonManager;
+import com.sokoban.core.logic.Direction;
+import com.sokoban.core.logic.ObjectType;
+import com.sokoban.core.logic.PlayerCore;
+
+/**
+ * 子地图稀疏层与分块层测试
+ */
+public class SubMapDataTest {
+
+    @Test
+    public void sparseLayerTest() {
+        SubMapData subMap = new SubMapData(27, 48);
+        Assert.assertFalse(subMap.getMapLayer(SubMapData.LAYER_OBJECT).isSparse());
+        Assert.assertTrue(subMap.getMapLayer(SubMapData.LAYER_TARGET).isSparse());
+
+        // 少量目标点保持稀疏，按下标升序遍历
+        subMap.setTarget(7, 3, ObjectType.BoxTarget);
+        subMap.setTarget(2, 3, ObjectType.PlayerTarget);
+        subMap.setTarget(5, 20, ObjectType.BoxTarget);
+        MapLayer targetLayer = subMap.getMapLayer(SubMapData.LAYER_TARGET);
+        Assert.assertTrue(targetLayer.isSparse());
+        Assert.assertEquals(targetLayer.count(), 3);
+        Assert.assertEquals(subMap.getTarget(7, 3), ObjectType.BoxTarget);
+        Assert.assertEquals(subMap.getTarget(6, 3), ObjectType.Air);
+        int[] expectedCells = {subMap.index(2, 3), subMap.index(7, 3), subMap.index(5, 20)};
+        int found = 0;
+        for (int cell = targetLayer.nextCell(0); cell != -1; cell = targetLayer.nextCell(cell + 1)) Assert.assertEquals(cell, expectedCells[found++]);
+        Assert.assertEquals(found, expectedCells.length);
+
+        // 内容相同的稠密层与稀疏层相等
+        SubMapData denseCopy = subMap.deepCopy();
+        denseCopy.getLayerData(SubMapData.LAYER_TARGET);
+        Assert.assertFalse(denseCopy.getMapLayer(SubMapData.LAYER_TARGET).isSparse());
+        Assert.assertEquals(denseCopy, subMap);
+        Assert.assertEquals(denseCopy.hashCode(), subMap.hashCode());
+
+        // 过密时转为稠密层，清空后 compact 转回稀疏层
+        for (int x = 0; x < subMap.width; x++) {
+            for (int y = 0; y < subMap.height; y++) subMap.set(SubMapData.LAYER_DECORATION, x, y, ObjectType.Ground);
+        }
+        Assert.assertFalse(subMap.getMapLayer(SubMapData.LAYER_DECORATION).isSparse());
+        for (int x = 0; x < subMap.width; x++) {
+            for (int y = 0; y < subMap.height; y++) subMap.set(SubMapData.LAYER_DECORATION, x, y, ObjectType.Air);
+        }
+        subMap.compact();
+        Assert.assertTrue(subMap.getMapLayer(SubMapData.LAYER_DECORATION).isSparse());
+        Assert.assertEquals(subMap.getMapLayer(SubMapData.LAYER_DECORATION).count(), 0);
+
+        // 删除格子
+        subMap.setTarget(7, 3, ObjectType.Air);
+        Assert.assertEquals(subMap.getMapLayer(SubMapData.LAYER_TARGET).count(), 2);
+        Assert.assertNotEquals(subMap, denseCopy);
+    }
+
+    @Test
+    public void chunkedLayerTest() {
+        SubMapData subMap = new SubMapData(1000, 1000);
+        Assert.assertTrue(subMap.isChunked());
+        MapLayer objectLayer = subMap.getMapLayer(SubMapData.LAYER_OBJECT);
+        Assert.assertTrue(objectLayer instanceof ChunkedLayer);
+
+        // 只在远离原点的角落放置物体，只分配用到的块
+        subMap.setObject(900, 800, ObjectType.Wall);
+        subMap.setObject(901, 800, ObjectType.Player);
+        subMap.setObject(902, 800, ObjectType.Box);
+        subMap.setObject(5, 999, ObjectType.Wall);
+        subMap.setTarget(903, 800, ObjectType.BoxTarget);
+        Assert.assertEquals(((ChunkedLayer) objectLayer).getAllocatedChunkNum(), 2);
+        Assert.assertEquals(objectLayer.count(), 4);
+        Assert.assertEquals(subMap.getObject(902, 800), ObjectType.Box);
+        Assert.assertEquals(subMap.getObject(0, 0), ObjectType.Air);
+
+        int[] expectedCells = {subMap.index(900, 800), subMap.index(901, 800), subMap.index(902, 800), subMap.index(5, 999)};
+        int found = 0;
+        for (int cell = objectLayer.nextCell(0); cell != -1; cell = objectLayer.nextCell(cell + 1)) Assert.assertEquals(cell, expectedCells[found++]);
+        Assert.assertEquals(found, expectedCells.length);
+
+        // 与稠密存储内容相同即相等，compact 转回分块层
+        SubMapData copy = subMap.deepCopy();
+        copy.getLayerData(SubMapData.LAYER_OBJECT);
+        Assert.assertTrue(copy.getMapLayer(SubMapData.LAYER_OBJECT) instanceof DenseLayer);
+        Assert.assertEquals(copy, subMap);
+        copy.compact();
+        Assert.assertTrue(copy.getMapLayer(SubMapData.LAYER_OBJECT) instanceof ChunkedLayer);
+
+        // 稀疏格式序列化往返
+        JsonManager jsonManager = new JsonManager();
+        String json = jsonManager.getJsonString(subMap);
+        Assert.assertTrue(json.contains("sparseLayer"));
+        Assert.assertEquals(jsonManager.parseJsonToObject(json, SubMapData.class), subMap);
+
+        // 逻辑核心在分块存储上推动箱子
+        MapData map = new MapData();
+        map.allMaps.add(subMap);
+        PlayerCore playerCore = new PlayerCore();
+        playerCore.setMap(map);
+        Assert.assertEquals(playerCore.getBoxNum(0), 1);
+        Assert.assertTrue(playerCore.move(0, Direction.Right));
+        Assert.assertTrue(playerCore.isGameWin());
+        Assert.assertEquals(playerCore.boxAt(0, subMap.index(903, 800)), 0);
+        Assert.assertEquals(playerCore.boxAt(0, subMap.index(902, 800)), -1);
+        Assert.assertTrue(playerCore.undoMove());
+        Assert.assertEquals(playerCore.boxAt(0, subMap.index(902, 800)), 0);
+        Assert.assertEquals(playerCore.boxAt(0, subMap.index(903, 800)), -1);
+        Assert.assertEquals(playerCore.boxAt(0, subMap.index(0, 0)), -1);
+        Assert.assertTrue(playerCore.move(0, Direction.Right));
+
+        // 块内格子全部清空后释放
+        subMap.setObject(5, 999, ObjectType.Air);
+        Assert.assertEquals(((ChunkedLayer) objectLayer).getAllocatedChunkNum(), 1);
+    }
+}